@@ -18,10 +18,27 @@
 package com.agorapulse.micronaut.segment;
 
 import com.agorapulse.micronaut.segment.builder.*;
+import com.agorapulse.micronaut.segment.coalesce.IdentifyCoalescer;
+import com.agorapulse.micronaut.segment.http.SegmentRequestBuffer;
+import com.agorapulse.micronaut.segment.ingest.IngestionQueue;
+import com.agorapulse.micronaut.segment.plan.TrackingPlan;
+import com.agorapulse.micronaut.segment.priority.PriorityLanes;
+import com.agorapulse.micronaut.segment.rollup.EventRollup;
+import com.agorapulse.micronaut.segment.tracing.SegmentTracing;
+import com.agorapulse.micronaut.segment.util.MessageClock;
+import com.agorapulse.micronaut.segment.util.MessageIdGenerator;
+import com.agorapulse.micronaut.segment.util.Scrubber;
+import com.agorapulse.micronaut.segment.util.ValueConverter;
 import com.segment.analytics.Analytics;
+import com.segment.analytics.messages.IdentifyMessage;
+import com.segment.analytics.messages.Message;
+import com.segment.analytics.messages.TrackMessage;
+import io.micronaut.core.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -34,17 +51,104 @@ public class DefaultSegmentService implements SegmentService {
     private final SegmentConfiguration config;
     private final ExecutorService segmentNetworkExecutor;
     private final boolean blocking;
+    private final SegmentTracing tracing;
+    private final IngestionQueue ingestion;
+    private final ValueConverter converter;
+    private final PriorityLanes lanes;
+    private final MessageClock clock;
+    private final MessageIdGenerator idGenerator;
+    private final IdentifyCoalescer coalescer;
+    private final EventRollup rollup;
+    private final TrackingPlan plan;
+    private final Scrubber scrubber;
+    private final boolean requestBuffer;
+    private final Consumer<Message> consumer;
 
     public DefaultSegmentService(Analytics analytics, SegmentConfiguration config, ExecutorService segmentNetworkExecutor, boolean blocking) {
+        this(analytics, config, segmentNetworkExecutor, blocking, null, null, ValueConverter.DEFAULT, null, MessageClock.SYSTEM, MessageIdGenerator.DEFAULT, null, null, null, Scrubber.NONE, null);
+    }
+
+    /**
+     * Creates the service with the optional stages of the pipeline, used by the {@link SegmentFactory}.
+     *
+     * When the consumer is set, the built messages are passed to it instead of the analytics which might be <code>null</code>,
+     * e.g. when the messages are only recorded without the API key.
+     */
+    DefaultSegmentService(
+        @Nullable Analytics analytics,
+        SegmentConfiguration config,
+        ExecutorService segmentNetworkExecutor,
+        boolean blocking,
+        @Nullable SegmentTracing tracing,
+        @Nullable IngestionQueue ingestion,
+        ValueConverter converter,
+        @Nullable PriorityLanes lanes,
+        MessageClock clock,
+        MessageIdGenerator idGenerator,
+        @Nullable IdentifyCoalescer coalescer,
+        @Nullable EventRollup rollup,
+        @Nullable TrackingPlan plan,
+        Scrubber scrubber,
+        @Nullable Consumer<Message> consumer
+    ) {
         this.analytics = analytics;
         this.config = config;
         this.segmentNetworkExecutor = segmentNetworkExecutor;
         this.blocking = blocking;
+        this.tracing = tracing;
+        this.ingestion = ingestion;
+        this.converter = converter;
+        this.lanes = lanes;
+        this.clock = clock;
+        this.idGenerator = idGenerator;
+        this.coalescer = coalescer;
+        this.rollup = rollup;
+        this.plan = plan;
+        this.scrubber = scrubber;
+        this.requestBuffer = config.getRequestBuffer().isEnabled();
+        this.consumer = consumer;
     }
 
     @Override
     public void flush() {
-        analytics.flush();
+        SegmentTracing.Scope scope = tracing == null ? null : tracing.start("flush", null);
+        if (scope == null) {
+            doFlush();
+            return;
+        }
+        try {
+            doFlush();
+        } catch (RuntimeException e) {
+            scope.error(e);
+            throw e;
+        } finally {
+            scope.close();
+        }
+    }
+
+    private void doFlush() {
+        if (coalescer != null) {
+            coalescer.flush();
+        }
+        if (rollup != null) {
+            rollup.flush();
+        }
+        if (requestBuffer) {
+            // after the coalescer and the rollup which might have added their messages to the buffer
+            SegmentRequestBuffer buffer = SegmentRequestBuffer.current();
+            if (buffer != null) {
+                buffer.flush();
+            }
+        }
+        if (lanes != null) {
+            lanes.drain();
+        }
+        if (ingestion != null) {
+            ingestion.drain();
+        }
+        if (analytics != null) {
+            analytics.flush();
+        }
         if (blocking) {
             try {
                 LOGGER.debug("Waiting for messages being flushed");
@@ -60,32 +164,113 @@ public class DefaultSegmentService implements SegmentService {
 
     @Override
     public void alias(String from, String to, Consumer<SimpleMessageBuilder> builder) {
-        analytics.enqueue(builder(to, DefaultSimpleMessageBuilder::new, builder).buildAliasMessage(from));
+        DefaultSimpleMessageBuilder b = builder(to, () -> new DefaultSimpleMessageBuilder(converter, clock, idGenerator, scrubber), builder);
+        if (fits(b, "alias")) {
+            enqueue("alias", null, b.buildAliasMessage(from), b.getMessageId());
+        }
     }
 
     @Override
     public void group(String userId, String groupId, Consumer<MessageBuilderWithTraits> builder) {
-        analytics.enqueue(builder(userId, DefaultMessageBuilderWithTraits::new, builder).buildGroupMessage(groupId));
+        DefaultMessageBuilderWithTraits b = builder(userId, () -> new DefaultMessageBuilderWithTraits(converter, clock, idGenerator, scrubber), builder);
+        if (conforms("group", null, b.getTraits()) && fits(b, "group")) {
+            enqueue("group", null, b.buildGroupMessage(groupId), b.getMessageId());
+        }
     }
 
     @Override
     public void identify(String userId, Consumer<MessageBuilderWithTraits> builder) {
-        analytics.enqueue(builder(userId, DefaultMessageBuilderWithTraits::new, builder).buildIdentifyMessage());
+        DefaultMessageBuilderWithTraits b = builder(userId, () -> new DefaultMessageBuilderWithTraits(converter, clock, idGenerator, scrubber), builder);
+        if (!conforms("identify", null, b.getTraits()) || !fits(b, "identify")) {
+            return;
+        }
+        IdentifyMessage.Builder message = b.buildIdentifyMessage();
+        if (coalescer != null) {
+            IdentifyMessage identify = message.build();
+            // the anonymous messages cannot be merged
+            if (identify.userId() != null) {
+                coalescer.add(identify);
+                return;
+            }
+        }
+        enqueue("identify", null, message, b.getMessageId());
     }
 
     @Override
     public void page(String userId, String name, Consumer<MessageBuilderWithProperties> builder) {
-        analytics.enqueue(builder(userId, DefaultMessageBuilderWithProperties::new, builder).buildPageMessage(name));
+        DefaultMessageBuilderWithProperties b = builder(userId, () -> new DefaultMessageBuilderWithProperties(converter, clock, idGenerator, scrubber), builder);
+        if (conforms("page", name, b.getProperties()) && fits(b, name)) {
+            enqueue("page", name, b.buildPageMessage(name), b.getMessageId());
+        }
     }
 
     @Override
     public void screen(String userId, String name, Consumer<MessageBuilderWithProperties> builder) {
-        analytics.enqueue(builder(userId, DefaultMessageBuilderWithProperties::new, builder).buildScreenMessage(name));
+        DefaultMessageBuilderWithProperties b = builder(userId, () -> new DefaultMessageBuilderWithProperties(converter, clock, idGenerator, scrubber), builder);
+        if (conforms("screen", name, b.getProperties()) && fits(b, name)) {
+            enqueue("screen", name, b.buildScreenMessage(name), b.getMessageId());
+        }
     }
 
     @Override
     public void track(String userId, String event, Consumer<MessageBuilderWithProperties> builder) {
-        analytics.enqueue(builder(userId, DefaultMessageBuilderWithProperties::new, builder).buildTrackMessage(event));
+        DefaultMessageBuilderWithProperties b = builder(userId, () -> new DefaultMessageBuilderWithProperties(converter, clock, idGenerator, scrubber), builder);
+        if (!conforms("track", event, b.getProperties()) || !fits(b, event)) {
+            return;
+        }
+        TrackMessage.Builder message = b.buildTrackMessage(event);
+        if (rollup != null && rollup.isRolledUp(event) && rollup.add(message.build())) {
+            return;
+        }
+        enqueue("track", event, message, b.getMessageId());
+    }
+
+    private void enqueue(String operation, String name, com.segment.analytics.messages.MessageBuilder<?, ?> message, String messageId) {
+        // the span is started in the calling thread, the message may be handed over to another thread by the buffer, the lanes or the ingestion queue
+        SegmentTracing.Scope scope = tracing == null ? null : tracing.start(operation, name);
+        if (scope == null) {
+            send(operation, name, message);
+            return;
+        }
+        try {
+            scope.enqueued(messageId);
+            send(operation, name, message);
+        } catch (RuntimeException e) {
+            scope.error(e);
+            throw e;
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Sends the message through the request buffer, the lanes and the ingestion queue, also used for the messages
+     * merged by the {@link IdentifyCoalescer} and aggregated by the {@link EventRollup}.
+     *
+     * @param operation the type of the message
+     * @param name the name of the event, the page or the screen if any
+     * @param message the message to be sent
+     */
+    void send(String operation, String name, com.segment.analytics.messages.MessageBuilder<?, ?> message) {
+        if (requestBuffer) {
+            SegmentRequestBuffer buffer = SegmentRequestBuffer.current();
+            if (buffer != null && buffer.add(() -> dispatch(operation, name, message))) {
+                return;
+            }
+        }
+        dispatch(operation, name, message);
+    }
+
+    private void dispatch(String operation, String name, com.segment.analytics.messages.MessageBuilder<?, ?> message) {
+        if (consumer != null) {
+            consumer.accept(message.build());
+        } else if (lanes != null) {
+            lanes.offer(lanes.getPriority(operation, name), message);
+        } else if (ingestion != null) {
+            ingestion.offer(message);
+        } else {
+            analytics.enqueue(message);
+        }
     }
 
     private <B extends MessageBuilder<?>> B builder(String userId, Supplier<B> creator, Consumer<? super B> builder) {
@@ -98,4 +283,29 @@ public class DefaultSegmentService implements SegmentService {
         return b;
     }
 
+    private boolean conforms(String type, String name, Map<String, Object> values) {
+        // validated before the truncation so the removed values are not reported as missing
+        return plan == null || plan.accept(type, name, values);
+    }
+
+    private boolean fits(DefaultMessageBuilder<?> b, String name) {
+        SegmentConfiguration.MessageSizeConfiguration limits = config.getMessageSize();
+        int maxBytes = limits.getMaxMessageBytes();
+
+        if (limits.getPolicy() == MessageSizePolicy.NONE || b.getEstimatedSize() <= maxBytes) {
+            return true;
+        }
+
+        if (limits.getPolicy() == MessageSizePolicy.TRUNCATE) {
+            List<String> removed = b.truncate(maxBytes);
+            if (b.getEstimatedSize() <= maxBytes) {
+                LOGGER.warn("Message '{}' exceeded the limit of {} bytes, following keys were removed: {}", name, maxBytes, removed);
+                return true;
+            }
+        }
+
+        LOGGER.warn("Message '{}' of estimated size {} bytes exceeds the limit of {} bytes and it will not be sent", name, b.getEstimatedSize(), maxBytes);
+        return false;
+    }
+
 }
@@ -17,13 +17,22 @@
  */
 package com.agorapulse.micronaut.segment;
 
+import com.agorapulse.micronaut.segment.http.PageTrackingType;
+import com.agorapulse.micronaut.segment.plan.TrackingPlanPolicy;
+import com.agorapulse.micronaut.segment.sink.FsyncPolicy;
+import com.agorapulse.micronaut.segment.sink.SinkMode;
 import io.micronaut.context.annotation.ConfigurationProperties;
 import io.micronaut.context.annotation.Requires;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.Deflater;
 
 @ConfigurationProperties("segment")
 @Requires(property = "segment.api-key")
@@ -34,6 +43,46 @@ public class SegmentConfiguration {
 
     private Map<String, Object> options = new LinkedHashMap<>();
 
+    private String endpoint;
+
+    private Integer flushQueueSize;
+
+    private Duration flushInterval;
+
+    private AdaptiveConfiguration adaptive = new AdaptiveConfiguration();
+
+    private ResilienceConfiguration resilience = new ResilienceConfiguration();
+
+    private MessageSizeConfiguration messageSize = new MessageSizeConfiguration();
+
+    private ShutdownConfiguration shutdown = new ShutdownConfiguration();
+
+    private SpoolConfiguration spool = new SpoolConfiguration();
+
+    private HealthConfiguration health = new HealthConfiguration();
+
+    private TracingConfiguration tracing = new TracingConfiguration();
+
+    private UploadConfiguration upload = new UploadConfiguration();
+
+    private IngestionConfiguration ingestion = new IngestionConfiguration();
+
+    private SinkConfiguration sink = new SinkConfiguration();
+
+    private HttpConfiguration http = new HttpConfiguration();
+
+    private RequestBufferConfiguration requestBuffer = new RequestBufferConfiguration();
+
+    private PageTrackingConfiguration pageTracking = new PageTrackingConfiguration();
+
+    private PriorityConfiguration priority = new PriorityConfiguration();
+
+    private CoalescingConfiguration coalescing = new CoalescingConfiguration();
+
+    private RollupConfiguration rollup = new RollupConfiguration();
+
+    private TrackingPlanConfiguration trackingPlan = new TrackingPlanConfiguration();
+
     public String getApiKey() {
         return apiKey;
     }
@@ -42,6 +91,17 @@ public class SegmentConfiguration {
         this.apiKey = apiKey;
     }
 
+    /**
+     * @return the base URL of the Segment API, the default Segment endpoint is used if not set
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
     /**
      * @return the default options for the messages
      * @deprecated declare {@link com.segment.analytics.MessageTransformer} bean instead
@@ -60,4 +120,1222 @@ public class SegmentConfiguration {
         this.options = options;
     }
 
+    /**
+     * @return the number of messages in the queue which triggers the flush or <code>null</code> to use the library default
+     */
+    public Integer getFlushQueueSize() {
+        return flushQueueSize;
+    }
+
+    public void setFlushQueueSize(Integer flushQueueSize) {
+        this.flushQueueSize = flushQueueSize;
+    }
+
+    /**
+     * @return the interval of the periodic flush or <code>null</code> to use the library default, must not be less than one second
+     */
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public AdaptiveConfiguration getAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(AdaptiveConfiguration adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public ResilienceConfiguration getResilience() {
+        return resilience;
+    }
+
+    public void setResilience(ResilienceConfiguration resilience) {
+        this.resilience = resilience;
+    }
+
+    public MessageSizeConfiguration getMessageSize() {
+        return messageSize;
+    }
+
+    public void setMessageSize(MessageSizeConfiguration messageSize) {
+        this.messageSize = messageSize;
+    }
+
+    public ShutdownConfiguration getShutdown() {
+        return shutdown;
+    }
+
+    public void setShutdown(ShutdownConfiguration shutdown) {
+        this.shutdown = shutdown;
+    }
+
+    public SpoolConfiguration getSpool() {
+        return spool;
+    }
+
+    public void setSpool(SpoolConfiguration spool) {
+        this.spool = spool;
+    }
+
+    public HealthConfiguration getHealth() {
+        return health;
+    }
+
+    public void setHealth(HealthConfiguration health) {
+        this.health = health;
+    }
+
+    public TracingConfiguration getTracing() {
+        return tracing;
+    }
+
+    public void setTracing(TracingConfiguration tracing) {
+        this.tracing = tracing;
+    }
+
+    public UploadConfiguration getUpload() {
+        return upload;
+    }
+
+    public void setUpload(UploadConfiguration upload) {
+        this.upload = upload;
+    }
+
+    public IngestionConfiguration getIngestion() {
+        return ingestion;
+    }
+
+    public void setIngestion(IngestionConfiguration ingestion) {
+        this.ingestion = ingestion;
+    }
+
+    public SinkConfiguration getSink() {
+        return sink;
+    }
+
+    public void setSink(SinkConfiguration sink) {
+        this.sink = sink;
+    }
+
+    public HttpConfiguration getHttp() {
+        return http;
+    }
+
+    public void setHttp(HttpConfiguration http) {
+        this.http = http;
+    }
+
+    public RequestBufferConfiguration getRequestBuffer() {
+        return requestBuffer;
+    }
+
+    public void setRequestBuffer(RequestBufferConfiguration requestBuffer) {
+        this.requestBuffer = requestBuffer;
+    }
+
+    public PageTrackingConfiguration getPageTracking() {
+        return pageTracking;
+    }
+
+    public void setPageTracking(PageTrackingConfiguration pageTracking) {
+        this.pageTracking = pageTracking;
+    }
+
+    public PriorityConfiguration getPriority() {
+        return priority;
+    }
+
+    public void setPriority(PriorityConfiguration priority) {
+        this.priority = priority;
+    }
+
+    public CoalescingConfiguration getCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(CoalescingConfiguration coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public RollupConfiguration getRollup() {
+        return rollup;
+    }
+
+    public void setRollup(RollupConfiguration rollup) {
+        this.rollup = rollup;
+    }
+
+    public TrackingPlanConfiguration getTrackingPlan() {
+        return trackingPlan;
+    }
+
+    public void setTrackingPlan(TrackingPlanConfiguration trackingPlan) {
+        this.trackingPlan = trackingPlan;
+    }
+
+    /**
+     * Adaptive flushing resizes the batches and the flush interval based on the observed traffic.
+     */
+    @ConfigurationProperties("adaptive")
+    public static class AdaptiveConfiguration {
+
+        private static final int DEFAULT_MAX_BATCH_SIZE = 250;
+        private static final int DEFAULT_MAX_BATCH_BYTES = 450 * 1024;
+        private static final Duration DEFAULT_MIN_INTERVAL = Duration.ofMillis(500);
+        private static final Duration DEFAULT_MAX_INTERVAL = Duration.ofSeconds(30);
+        private static final Duration DEFAULT_TARGET_LATENCY = Duration.ofSeconds(1);
+
+        private boolean enabled;
+        private Duration targetLatency = DEFAULT_TARGET_LATENCY;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+        private Duration minInterval = DEFAULT_MIN_INTERVAL;
+        private Duration maxInterval = DEFAULT_MAX_INTERVAL;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the time after which the waiting messages are flushed if the batch does not fill up sooner
+         */
+        public Duration getTargetLatency() {
+            return targetLatency;
+        }
+
+        public void setTargetLatency(Duration targetLatency) {
+            this.targetLatency = targetLatency;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        /**
+         * @return the maximum size of the batch in bytes, must stay below Segment's 500 KB limit
+         */
+        public int getMaxBatchBytes() {
+            return maxBatchBytes;
+        }
+
+        public void setMaxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+        }
+
+        public Duration getMinInterval() {
+            return minInterval;
+        }
+
+        public void setMinInterval(Duration minInterval) {
+            this.minInterval = minInterval;
+        }
+
+        /**
+         * @return the maximum interval between the flushes, must not be less than one second
+         */
+        public Duration getMaxInterval() {
+            return maxInterval;
+        }
+
+        public void setMaxInterval(Duration maxInterval) {
+            this.maxInterval = maxInterval;
+        }
+
+    }
+
+    /**
+     * Retries the failed uploads and stops calling Segment during the outages.
+     */
+    @ConfigurationProperties("resilience")
+    public static class ResilienceConfiguration {
+
+        private static final int DEFAULT_MAX_ATTEMPTS = 3;
+        private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+        private static final long DEFAULT_SPILL_BUFFER_BYTES = 16L * 1024 * 1024;
+        private static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(200);
+        private static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(10);
+        private static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+        private boolean enabled;
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private Duration initialBackoff = DEFAULT_INITIAL_BACKOFF;
+        private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+        private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+        private Duration openDuration = DEFAULT_OPEN_DURATION;
+        private long spillBufferBytes = DEFAULT_SPILL_BUFFER_BYTES;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the maximum number of attempts to upload a single batch
+         */
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        /**
+         * @return the maximum delay between the attempts, batches asked to retry later than that are spilled immediately
+         */
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        /**
+         * @return the number of consecutive failures which opens the circuit
+         */
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        /**
+         * @return the time the circuit stays open before a probe request is sent
+         */
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+
+        /**
+         * @return the maximum size of the batches kept in memory while the circuit is open
+         */
+        public long getSpillBufferBytes() {
+            return spillBufferBytes;
+        }
+
+        public void setSpillBufferBytes(long spillBufferBytes) {
+            this.spillBufferBytes = spillBufferBytes;
+        }
+
+    }
+
+    /**
+     * Limits of the size of the messages and of the batches.
+     */
+    @ConfigurationProperties("message-size")
+    public static class MessageSizeConfiguration {
+
+        private static final int DEFAULT_MAX_MESSAGE_BYTES = 32 * 1024;
+        private static final int DEFAULT_MAX_BATCH_BYTES = 500 * 1024;
+
+        private MessageSizePolicy policy = MessageSizePolicy.REJECT;
+        private int maxMessageBytes = DEFAULT_MAX_MESSAGE_BYTES;
+        private int maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+        public MessageSizePolicy getPolicy() {
+            return policy;
+        }
+
+        public void setPolicy(MessageSizePolicy policy) {
+            this.policy = policy;
+        }
+
+        public int getMaxMessageBytes() {
+            return maxMessageBytes;
+        }
+
+        public void setMaxMessageBytes(int maxMessageBytes) {
+            this.maxMessageBytes = maxMessageBytes;
+        }
+
+        /**
+         * @return the maximal size of the uploaded batch, larger batches are split before the upload
+         */
+        public int getMaxBatchBytes() {
+            return maxBatchBytes;
+        }
+
+        public void setMaxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+        }
+
+    }
+
+    /**
+     * Draining of the pending messages when the application stops.
+     */
+    @ConfigurationProperties("shutdown")
+    public static class ShutdownConfiguration {
+
+        private static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(10);
+        private static final int DEFAULT_PARALLELISM = 4;
+
+        private Duration drainTimeout = DEFAULT_DRAIN_TIMEOUT;
+        private int parallelism = DEFAULT_PARALLELISM;
+
+        /**
+         * @return the maximal time spent uploading the pending messages when the application stops
+         */
+        public Duration getDrainTimeout() {
+            return drainTimeout;
+        }
+
+        public void setDrainTimeout(Duration drainTimeout) {
+            this.drainTimeout = drainTimeout;
+        }
+
+        /**
+         * @return the number of parallel uploads of the spilled batches when the application stops
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+    }
+
+    /**
+     * Persistence of the batches which could not be uploaded.
+     */
+    @ConfigurationProperties("spool")
+    public static class SpoolConfiguration {
+
+        private static final int DEFAULT_REPLAY_PARALLELISM = 4;
+        private static final int DEFAULT_REPLAY_RATE = 5000;
+
+        private boolean enabled;
+        private String directory = System.getProperty("java.io.tmpdir") + "/segment-spool";
+        private int replayParallelism = DEFAULT_REPLAY_PARALLELISM;
+        private int replayRate = DEFAULT_REPLAY_RATE;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * @return the number of batches uploaded in parallel when the spool is replayed
+         */
+        public int getReplayParallelism() {
+            return replayParallelism;
+        }
+
+        public void setReplayParallelism(int replayParallelism) {
+            this.replayParallelism = replayParallelism;
+        }
+
+        /**
+         * @return the maximal number of messages per second sent when the spool is replayed, zero for no limit
+         */
+        public int getReplayRate() {
+            return replayRate;
+        }
+
+        public void setReplayRate(int replayRate) {
+            this.replayRate = replayRate;
+        }
+
+    }
+
+    /**
+     * Health of the upload pipeline.
+     */
+    @ConfigurationProperties("health")
+    public static class HealthConfiguration {
+
+        private static final Duration DEFAULT_MAX_LAG = Duration.ofMinutes(5);
+
+        private boolean enabled = true;
+        private Duration maxLag = DEFAULT_MAX_LAG;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the maximal time the messages can wait for the upload before the service is reported as not ready
+         */
+        public Duration getMaxLag() {
+            return maxLag;
+        }
+
+        public void setMaxLag(Duration maxLag) {
+            this.maxLag = maxLag;
+        }
+
+    }
+
+    /**
+     * OpenTelemetry instrumentation of the enqueued messages and the batch uploads.
+     */
+    @ConfigurationProperties("tracing")
+    public static class TracingConfiguration {
+
+        private static final int DEFAULT_MAX_LINKS = 128;
+        private static final int DEFAULT_MAX_PENDING_LINKS = 10_000;
+
+        private boolean enabled;
+        private int maxLinks = DEFAULT_MAX_LINKS;
+        private int maxPendingLinks = DEFAULT_MAX_PENDING_LINKS;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the maximal number of the links from the upload span to the spans which enqueued the messages
+         */
+        public int getMaxLinks() {
+            return maxLinks;
+        }
+
+        public void setMaxLinks(int maxLinks) {
+            this.maxLinks = maxLinks;
+        }
+
+        /**
+         * @return the maximal number of the messages waiting for the upload whose span contexts are remembered
+         */
+        public int getMaxPendingLinks() {
+            return maxPendingLinks;
+        }
+
+        public void setMaxPendingLinks(int maxPendingLinks) {
+            this.maxPendingLinks = maxPendingLinks;
+        }
+
+    }
+
+    /**
+     * Parallel upload of the batches.
+     */
+    @ConfigurationProperties("upload")
+    public static class UploadConfiguration {
+
+        private int parallelism = 1;
+
+        /**
+         * @return the number of concurrent uploads, the messages of the same user are always uploaded by the same worker
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+    }
+
+    /**
+     * Striped ingestion queue in front of the library queue.
+     */
+    @ConfigurationProperties("ingestion")
+    public static class IngestionConfiguration {
+
+        private static final int DEFAULT_CAPACITY = 1024;
+
+        private boolean enabled;
+        private int stripes = Runtime.getRuntime().availableProcessors();
+        private int capacity = DEFAULT_CAPACITY;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the number of the ring buffers, rounded up to the power of two
+         */
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        /**
+         * @return the capacity of each ring buffer, rounded up to the power of two
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+    }
+
+    /**
+     * Local copy of the batches written as gzipped newline-delimited JSON.
+     */
+    @ConfigurationProperties("sink")
+    public static class SinkConfiguration {
+
+        private static final long DEFAULT_MAX_FILE_BYTES = 64L * 1024 * 1024;
+        private static final Duration DEFAULT_ROTATE_INTERVAL = Duration.ofHours(1);
+        private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+        private boolean enabled;
+        private SinkMode mode = SinkMode.COPY;
+        private String directory = System.getProperty("java.io.tmpdir") + "/segment-sink";
+        private long maxFileBytes = DEFAULT_MAX_FILE_BYTES;
+        private Duration rotateInterval = DEFAULT_ROTATE_INTERVAL;
+        private FsyncPolicy fsync = FsyncPolicy.ROTATE;
+        private int compressionLevel = Deflater.BEST_SPEED;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return whether the batches are also uploaded to Segment
+         */
+        public SinkMode getMode() {
+            return mode;
+        }
+
+        public void setMode(SinkMode mode) {
+            this.mode = mode;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * @return the size of the uncompressed data after which a new file is started
+         */
+        public long getMaxFileBytes() {
+            return maxFileBytes;
+        }
+
+        public void setMaxFileBytes(long maxFileBytes) {
+            this.maxFileBytes = maxFileBytes;
+        }
+
+        /**
+         * @return the time after which a new file is started
+         */
+        public Duration getRotateInterval() {
+            return rotateInterval;
+        }
+
+        public void setRotateInterval(Duration rotateInterval) {
+            this.rotateInterval = rotateInterval;
+        }
+
+        public FsyncPolicy getFsync() {
+            return fsync;
+        }
+
+        public void setFsync(FsyncPolicy fsync) {
+            this.fsync = fsync;
+        }
+
+        /**
+         * @return the gzip compression level from 0 to 9
+         */
+        public int getCompressionLevel() {
+            return compressionLevel;
+        }
+
+        public void setCompressionLevel(int compressionLevel) {
+            this.compressionLevel = compressionLevel;
+        }
+
+        /**
+         * @return the number of batches waiting for the writer before the upload is blocked
+         */
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+    }
+
+    /**
+     * HTTP transport used to upload the batches.
+     */
+    @ConfigurationProperties("http")
+    public static class HttpConfiguration {
+
+        private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(15);
+        private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+        private static final Duration DEFAULT_KEEP_ALIVE = Duration.ofMinutes(5);
+
+        private Duration connectTimeout = DEFAULT_TIMEOUT;
+        private Duration readTimeout = DEFAULT_TIMEOUT;
+        private Duration writeTimeout = DEFAULT_TIMEOUT;
+        private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+        private Duration keepAlive = DEFAULT_KEEP_ALIVE;
+        private boolean http2 = true;
+        private boolean tcpNoDelay = true;
+        private boolean prewarm;
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public Duration getWriteTimeout() {
+            return writeTimeout;
+        }
+
+        public void setWriteTimeout(Duration writeTimeout) {
+            this.writeTimeout = writeTimeout;
+        }
+
+        /**
+         * @return the number of the idle connections kept in the pool
+         */
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        public void setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+        }
+
+        /**
+         * @return the time after which an idle connection is closed
+         */
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        /**
+         * @return whether HTTP/2 is preferred if the server supports it
+         */
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+
+        /**
+         * @return whether Nagle's algorithm is disabled for the sockets
+         */
+        public boolean isTcpNoDelay() {
+            return tcpNoDelay;
+        }
+
+        public void setTcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+        }
+
+        /**
+         * @return whether the connection to the endpoint is opened at the startup
+         */
+        public boolean isPrewarm() {
+            return prewarm;
+        }
+
+        public void setPrewarm(boolean prewarm) {
+            this.prewarm = prewarm;
+        }
+
+    }
+
+    /**
+     * Buffering of the messages sent while handling the HTTP request.
+     */
+    @ConfigurationProperties("request-buffer")
+    public static class RequestBufferConfiguration {
+
+        private static final int DEFAULT_MAX_MESSAGES = 100;
+
+        private boolean enabled;
+        private int maxMessages = DEFAULT_MAX_MESSAGES;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the number of the messages buffered for a single request, the other messages are enqueued immediately
+         */
+        public int getMaxMessages() {
+            return maxMessages;
+        }
+
+        public void setMaxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+        }
+
+    }
+
+    /**
+     * Automatic tracking of the handled HTTP requests as page or screen messages.
+     */
+    @ConfigurationProperties("page-tracking")
+    public static class PageTrackingConfiguration {
+
+        private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+        private boolean enabled;
+        private PageTrackingType type = PageTrackingType.PAGE;
+        private List<String> attributes = new ArrayList<>();
+        private List<String> excludes = new ArrayList<>();
+        private String userIdAttribute;
+        private String anonymousIdHeader;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public PageTrackingType getType() {
+            return type;
+        }
+
+        public void setType(PageTrackingType type) {
+            this.type = type;
+        }
+
+        /**
+         * @return the names of the request attributes sent as the properties of the message
+         */
+        public List<String> getAttributes() {
+            return attributes;
+        }
+
+        public void setAttributes(List<String> attributes) {
+            this.attributes = attributes;
+        }
+
+        /**
+         * @return the patterns of the route templates which are not tracked
+         */
+        public List<String> getExcludes() {
+            return excludes;
+        }
+
+        public void setExcludes(List<String> excludes) {
+            this.excludes = excludes;
+        }
+
+        /**
+         * @return the name of the request attribute holding the user id, the name of the principal is used if not set
+         */
+        public String getUserIdAttribute() {
+            return userIdAttribute;
+        }
+
+        public void setUserIdAttribute(String userIdAttribute) {
+            this.userIdAttribute = userIdAttribute;
+        }
+
+        /**
+         * @return the name of the header holding the anonymous id
+         */
+        public String getAnonymousIdHeader() {
+            return anonymousIdHeader;
+        }
+
+        public void setAnonymousIdHeader(String anonymousIdHeader) {
+            this.anonymousIdHeader = anonymousIdHeader;
+        }
+
+        /**
+         * @return the number of the requests waiting to be tracked, the other requests are not tracked
+         */
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+    }
+
+    /**
+     * Priority lanes letting the important messages overtake the bulk traffic.
+     */
+    @ConfigurationProperties("priority")
+    public static class PriorityConfiguration {
+
+        private static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+        private static final int DEFAULT_CAPACITY = 10000;
+        private static final int DEFAULT_HIGH_WEIGHT = 8;
+        private static final int DEFAULT_NORMAL_WEIGHT = 4;
+        private static final int DEFAULT_LOW_WEIGHT = 1;
+
+        private boolean enabled;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private int capacity = DEFAULT_CAPACITY;
+        private int highWeight = DEFAULT_HIGH_WEIGHT;
+        private int normalWeight = DEFAULT_NORMAL_WEIGHT;
+        private int lowWeight = DEFAULT_LOW_WEIGHT;
+        private List<String> highTypes = new ArrayList<>(Arrays.asList("identify", "alias", "group"));
+        private List<String> lowTypes = new ArrayList<>();
+        private List<String> highEvents = new ArrayList<>();
+        private List<String> lowEvents = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the number of the messages handed over to the library and not yet uploaded, the other messages wait in the lanes
+         */
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        /**
+         * @return the number of the messages waiting in all the lanes, the lowest priority messages are shed when exceeded
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getHighWeight() {
+            return highWeight;
+        }
+
+        public void setHighWeight(int highWeight) {
+            this.highWeight = highWeight;
+        }
+
+        public int getNormalWeight() {
+            return normalWeight;
+        }
+
+        public void setNormalWeight(int normalWeight) {
+            this.normalWeight = normalWeight;
+        }
+
+        public int getLowWeight() {
+            return lowWeight;
+        }
+
+        public void setLowWeight(int lowWeight) {
+            this.lowWeight = lowWeight;
+        }
+
+        /**
+         * @return the message types such as <code>identify</code> sent with the high priority
+         */
+        public List<String> getHighTypes() {
+            return highTypes;
+        }
+
+        public void setHighTypes(List<String> highTypes) {
+            this.highTypes = highTypes;
+        }
+
+        /**
+         * @return the message types such as <code>page</code> sent with the low priority
+         */
+        public List<String> getLowTypes() {
+            return lowTypes;
+        }
+
+        public void setLowTypes(List<String> lowTypes) {
+            this.lowTypes = lowTypes;
+        }
+
+        /**
+         * @return the event, page or screen names sent with the high priority regardless of the message type
+         */
+        public List<String> getHighEvents() {
+            return highEvents;
+        }
+
+        public void setHighEvents(List<String> highEvents) {
+            this.highEvents = highEvents;
+        }
+
+        /**
+         * @return the event, page or screen names sent with the low priority regardless of the message type
+         */
+        public List<String> getLowEvents() {
+            return lowEvents;
+        }
+
+        public void setLowEvents(List<String> lowEvents) {
+            this.lowEvents = lowEvents;
+        }
+
+    }
+
+    /**
+     * Merging of the identify messages of the same user sent within a short time window.
+     */
+    @ConfigurationProperties("coalescing")
+    public static class CoalescingConfiguration {
+
+        private static final Duration DEFAULT_WINDOW = Duration.ofSeconds(2);
+        private static final int DEFAULT_MAX_USERS = 10000;
+
+        private boolean enabled;
+        private Duration window = DEFAULT_WINDOW;
+        private int maxUsers = DEFAULT_MAX_USERS;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the time since the first identify message of the user after which the merged message is sent
+         */
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        /**
+         * @return the number of the users with the pending messages, the messages of the other users are sent immediately
+         */
+        public int getMaxUsers() {
+            return maxUsers;
+        }
+
+        public void setMaxUsers(int maxUsers) {
+            this.maxUsers = maxUsers;
+        }
+
+    }
+
+    /**
+     * Local aggregation of the frequent events into a single track message per interval.
+     */
+    @ConfigurationProperties("rollup")
+    public static class RollupConfiguration {
+
+        private static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+        private static final int DEFAULT_MAX_KEYS = 100000;
+
+        private boolean enabled;
+        private Duration interval = DEFAULT_INTERVAL;
+        private List<String> events = new ArrayList<>();
+        private List<String> properties = new ArrayList<>();
+        private int maxKeys = DEFAULT_MAX_KEYS;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the interval after which the aggregated messages are sent
+         */
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        /**
+         * @return the names of the events which are counted instead of being sent one by one
+         */
+        public List<String> getEvents() {
+            return events;
+        }
+
+        public void setEvents(List<String> events) {
+            this.events = events;
+        }
+
+        /**
+         * @return the names of the properties whose values are counted separately and sent with the aggregated message
+         */
+        public List<String> getProperties() {
+            return properties;
+        }
+
+        public void setProperties(List<String> properties) {
+            this.properties = properties;
+        }
+
+        /**
+         * @return the number of the distinct counters, the events which would need a new counter are sent immediately
+         */
+        public int getMaxKeys() {
+            return maxKeys;
+        }
+
+        public void setMaxKeys(int maxKeys) {
+            this.maxKeys = maxKeys;
+        }
+
+    }
+
+    /**
+     * Validation of the properties and traits against the tracking plan before the messages are sent.
+     */
+    @ConfigurationProperties("tracking-plan")
+    public static class TrackingPlanConfiguration {
+
+        private static final String DEFAULT_LOCATION = "classpath:tracking-plan.json";
+
+        private boolean enabled;
+        private String location = DEFAULT_LOCATION;
+        private TrackingPlanPolicy policy = TrackingPlanPolicy.FLAG;
+        private boolean allowUnplanned = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the location of the JSON or YAML tracking plan, e.g. <code>classpath:tracking-plan.json</code> or <code>file:/etc/app/plan.yml</code>
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        public void setLocation(String location) {
+            this.location = location;
+        }
+
+        /**
+         * @return what happens to the messages violating the tracking plan
+         */
+        public TrackingPlanPolicy getPolicy() {
+            return policy;
+        }
+
+        public void setPolicy(TrackingPlanPolicy policy) {
+            this.policy = policy;
+        }
+
+        /**
+         * @return <code>true</code> if the events and pages not mentioned in the tracking plan are sent without validation
+         */
+        public boolean isAllowUnplanned() {
+            return allowUnplanned;
+        }
+
+        public void setAllowUnplanned(boolean allowUnplanned) {
+            this.allowUnplanned = allowUnplanned;
+        }
+
+    }
+
 }
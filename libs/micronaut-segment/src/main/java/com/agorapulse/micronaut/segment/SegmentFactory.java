@@ -17,24 +17,65 @@
  */
 package com.agorapulse.micronaut.segment;
 
+import com.agorapulse.micronaut.segment.client.ConnectionPrewarmer;
+import com.agorapulse.micronaut.segment.coalesce.IdentifyCoalescer;
+import com.agorapulse.micronaut.segment.client.SegmentClientDecorator;
+import com.agorapulse.micronaut.segment.client.SequencedExecutorService;
+import com.agorapulse.micronaut.segment.client.TcpNoDelaySocketFactory;
+import com.agorapulse.micronaut.segment.client.UploadSequencer;
+import com.agorapulse.micronaut.segment.ingest.IngestionQueue;
+import com.agorapulse.micronaut.segment.plan.TrackingPlan;
+import com.agorapulse.micronaut.segment.priority.PriorityLanes;
+import com.agorapulse.micronaut.segment.recording.MessageRecorder;
+import com.agorapulse.micronaut.segment.recording.RecordingConfiguration;
+import com.agorapulse.micronaut.segment.recording.RecordingSegmentService;
+import com.agorapulse.micronaut.segment.rollup.EventRollup;
+import com.agorapulse.micronaut.segment.tracing.SegmentTracing;
+import com.agorapulse.micronaut.segment.util.CoarseClock;
+import com.agorapulse.micronaut.segment.util.MessageClock;
+import com.agorapulse.micronaut.segment.util.MessageIdGenerator;
+import com.agorapulse.micronaut.segment.util.Scrubber;
+import com.agorapulse.micronaut.segment.util.ScrubbingConfiguration;
 import com.agorapulse.micronaut.segment.util.Slf4jSegmentLog;
+import com.agorapulse.micronaut.segment.util.ValueConverter;
 import com.jakewharton.retrofit.Ok3Client;
 import com.segment.analytics.*;
+import io.micronaut.context.BeanContext;
+import io.micronaut.context.BeanProvider;
 import io.micronaut.context.annotation.Bean;
 import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Property;
 import io.micronaut.context.annotation.Requires;
 import io.micronaut.context.env.Environment;
+import io.micronaut.core.convert.TypeConverter;
+import io.micronaut.core.io.ResourceResolver;
+import io.micronaut.core.type.Argument;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.inject.BeanDefinition;
+import io.micronaut.inject.qualifiers.Qualifiers;
+import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import retrofit.client.Client;
 
 import io.micronaut.core.annotation.Nullable;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
+import javax.net.SocketFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static java.lang.Thread.MIN_PRIORITY;
 
@@ -51,6 +92,10 @@ public class SegmentFactory {
         List<MessageInterceptor> messageInterceptor,
         List<MessageTransformer> messageTransformers,
         List<Callback> callbacks,
+        List<SegmentClientDecorator> clientDecorators,
+        SegmentStatistics statistics,
+        @Nullable RecordingConfiguration recording,
+        @Nullable MessageRecorder recorder,
         @Named("segment") Client client,
         @Named("segment") ThreadFactory threadFactory,
         @Named("segmentNetworkExecutor") ExecutorService segmentNetworkExecutor
@@ -59,51 +104,317 @@ public class SegmentFactory {
 
         messageInterceptor.forEach(builder::messageInterceptor);
 
+        if (recorder != null) {
+            // the messages are recorded after the whole pipeline and only dropped afterwards without the pass through
+            builder.messageInterceptor(recording.isPassThrough() ? recorder : message -> {
+                recorder.record(message);
+                return null;
+            });
+        }
+
+        // must be the last interceptor to only count the messages which are really enqueued
+        builder.messageInterceptor(statistics);
+
         messageTransformers.forEach(builder::messageTransformer);
 
         callbacks.forEach(builder::callback);
 
+        builder.callback(statistics);
+
+        SegmentConfiguration.AdaptiveConfiguration adaptive = configuration.getAdaptive();
+        if (adaptive.isEnabled()) {
+            // the adaptive controller flushes the messages, the library only enforces the upper bounds
+            builder.flushQueueSize(adaptive.getMaxBatchSize());
+            builder.flushInterval(adaptive.getMaxInterval().toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            if (configuration.getFlushQueueSize() != null) {
+                builder.flushQueueSize(configuration.getFlushQueueSize());
+            }
+            if (configuration.getFlushInterval() != null) {
+                builder.flushInterval(configuration.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (configuration.getEndpoint() != null) {
+            builder.endpoint(configuration.getEndpoint());
+        }
+
         builder.log(new Slf4jSegmentLog())
             .threadFactory(threadFactory)
             .networkExecutor(segmentNetworkExecutor)
-            .client(client);
+            .client(SegmentClientDecorator.decorateAll(statistics.monitor(client), clientDecorators));
 
         return builder.build();
     }
 
-    @Bean
+    @Bean(typed = DefaultSegmentService.class)
     @Singleton
-    public SegmentService segmentService(
-        @Nullable Analytics analytics,
-        @Nullable SegmentConfiguration configuration,
-        @Nullable @Named("segmentNetworkExecutor") ExecutorService segmentNetworkExecutor,
+    @Requires(beans = Analytics.class)
+    DefaultSegmentService defaultSegmentService(
+        Analytics analytics,
+        SegmentConfiguration configuration,
+        @Named("segmentNetworkExecutor") ExecutorService segmentNetworkExecutor,
+        @Nullable SegmentTracing tracing,
+        @Nullable IngestionQueue ingestion,
+        @Nullable PriorityLanes lanes,
+        @Nullable IdentifyCoalescer coalescer,
+        @Nullable EventRollup rollup,
+        @Nullable TrackingPlan plan,
+        @Nullable Scrubber scrubber,
+        ValueConverter converter,
+        MessageClock clock,
+        MessageIdGenerator idGenerator,
         Environment environment
     ) {
-        if (analytics != null) {
-            return new DefaultSegmentService(analytics, configuration, segmentNetworkExecutor, environment.getActiveNames().contains(Environment.FUNCTION));
+        return new DefaultSegmentService(
+            analytics,
+            configuration,
+            segmentNetworkExecutor,
+            environment.getActiveNames().contains(Environment.FUNCTION),
+            tracing,
+            ingestion,
+            converter,
+            lanes,
+            clock,
+            idGenerator,
+            coalescer,
+            rollup,
+            plan,
+            scrubber == null ? Scrubber.NONE : scrubber,
+            null
+        );
+    }
+
+    @Bean(typed = RecordingSegmentService.class)
+    @Singleton
+    @Requires(beans = RecordingConfiguration.class)
+    RecordingSegmentService recordingSegmentService(
+        RecordingConfiguration recording,
+        MessageRecorder recorder,
+        @Nullable DefaultSegmentService service,
+        ValueConverter converter,
+        MessageClock clock,
+        MessageIdGenerator idGenerator,
+        @Nullable Scrubber scrubber
+    ) {
+        if (service != null) {
+            return new RecordingSegmentService(service, recorder, recording.isPassThrough());
+        }
+        // without the api key, the messages are built the same way but passed straight to the recorder
+        DefaultSegmentService local = new DefaultSegmentService(
+            null,
+            new SegmentConfiguration(),
+            null,
+            false,
+            null,
+            null,
+            converter,
+            null,
+            clock,
+            idGenerator,
+            null,
+            null,
+            null,
+            scrubber == null ? Scrubber.NONE : scrubber,
+            recorder::record
+        );
+        return new RecordingSegmentService(local, recorder, false);
+    }
+
+    @Bean
+    @Singleton
+    public SegmentService segmentService(@Nullable RecordingSegmentService recording, @Nullable DefaultSegmentService service) {
+        // the recording service is a bean of its own so the application can still replace this one
+        if (recording != null) {
+            return recording;
+        }
+        return service == null ? new NoOpSegmentService() : service;
+    }
+
+    @Bean
+    @Singleton
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    ValueConverter valueConverter(BeanContext context) {
+        Map<Class<?>, Function<Object, Object>> custom = new LinkedHashMap<>();
+
+        // only the converters named "segment" are created, the framework registers many converters the messages never need,
+        // and only those from the custom types to the types natively supported by JSON are used
+        for (BeanDefinition<TypeConverter> definition : context.getBeanDefinitions(TypeConverter.class, Qualifiers.byName("segment"))) {
+            List<Argument<?>> arguments = definition.getTypeArguments(TypeConverter.class);
+            if (arguments.size() != 2) {
+                continue;
+            }
+
+            Class<?> source = arguments.get(0).getType();
+            Class<Object> target = (Class<Object>) arguments.get(1).getType();
+
+            if (source != Object.class && !isJsonType(source) && isJsonType(target)) {
+                TypeConverter<Object, Object> converter = context.getBean(definition);
+                custom.put(source, value -> converter.convert(value, target).orElse(value));
+            }
+        }
+
+        return new ValueConverter(custom);
+    }
+
+    @Bean
+    @Singleton
+    @Requires(missingProperty = "segment.clock-resolution")
+    MessageClock messageClock() {
+        return MessageClock.SYSTEM;
+    }
+
+    @Bean(preDestroy = "close")
+    @Singleton
+    @Requires(property = "segment.clock-resolution")
+    CoarseClock coarseClock(@Property(name = "segment.clock-resolution") Duration resolution) {
+        // read directly from the property so the clock is also available to the recording without the api key
+        return new CoarseClock(resolution);
+    }
+
+    @Bean
+    @Singleton
+    MessageIdGenerator messageIdGenerator() {
+        return MessageIdGenerator.DEFAULT;
+    }
+
+    @Bean(typed = MessageRecorder.class)
+    @Singleton
+    @Requires(beans = RecordingConfiguration.class)
+    MessageRecorder messageRecorder(RecordingConfiguration configuration) {
+        return new MessageRecorder(configuration.getCapacity());
+    }
+
+    @Bean(preDestroy = "close")
+    @Singleton
+    @Requires(beans = SegmentConfiguration.class)
+    @Requires(property = "segment.ingestion.enabled", value = StringUtils.TRUE)
+    IngestionQueue ingestionQueue(Analytics analytics, SegmentConfiguration configuration, @Named("segment") ThreadFactory threadFactory) {
+        SegmentConfiguration.IngestionConfiguration ingestion = configuration.getIngestion();
+        return new IngestionQueue(analytics, ingestion.getStripes(), ingestion.getCapacity(), threadFactory);
+    }
+
+    @Bean(preDestroy = "close")
+    @Singleton
+    @Requires(beans = SegmentConfiguration.class)
+    @Requires(property = "segment.priority.enabled", value = StringUtils.TRUE)
+    PriorityLanes priorityLanes(
+        Analytics analytics,
+        SegmentConfiguration configuration,
+        SegmentStatistics statistics,
+        @Named("segment") ThreadFactory threadFactory
+    ) {
+        return new PriorityLanes(analytics::enqueue, statistics::getInFlight, configuration.getPriority(), threadFactory);
+    }
+
+    @Bean(preDestroy = "close")
+    @Singleton
+    @Requires(beans = SegmentConfiguration.class)
+    @Requires(property = "segment.coalescing.enabled", value = StringUtils.TRUE)
+    IdentifyCoalescer identifyCoalescer(
+        SegmentConfiguration configuration,
+        BeanProvider<DefaultSegmentService> service,
+        @Named("segment") ThreadFactory threadFactory
+    ) {
+        // the merged messages go through the lanes and the ingestion queue like any other message
+        Consumer<com.segment.analytics.messages.MessageBuilder<?, ?>> target = message -> service.get().send("identify", null, message);
+        return new IdentifyCoalescer(configuration.getCoalescing(), target, threadFactory);
+    }
+
+    @Bean(preDestroy = "close")
+    @Singleton
+    @Requires(beans = SegmentConfiguration.class)
+    @Requires(property = "segment.rollup.enabled", value = StringUtils.TRUE)
+    EventRollup eventRollup(
+        SegmentConfiguration configuration,
+        BeanProvider<DefaultSegmentService> service,
+        MessageClock clock,
+        MessageIdGenerator idGenerator,
+        @Named("segment") ThreadFactory threadFactory
+    ) {
+        // the aggregated messages go through the lanes and the ingestion queue like any other message
+        BiConsumer<String, com.segment.analytics.messages.MessageBuilder<?, ?>> target = (event, message) -> service.get().send("track", event, message);
+        return new EventRollup(configuration.getRollup(), target, clock, idGenerator, threadFactory);
+    }
+
+    @Bean
+    @Singleton
+    @Requires(beans = SegmentConfiguration.class)
+    @Requires(property = "segment.tracking-plan.enabled", value = StringUtils.TRUE)
+    TrackingPlan trackingPlan(SegmentConfiguration configuration, ResourceResolver resolver) {
+        // compiled eagerly with the segment service so the invalid plan fails the startup
+        return TrackingPlan.load(configuration.getTrackingPlan(), resolver);
+    }
+
+    @Bean
+    @Singleton
+    @Requires(beans = ScrubbingConfiguration.class)
+    Scrubber scrubber(ScrubbingConfiguration configuration) {
+        return new Scrubber(configuration.getKeys(), configuration.getPatterns(), configuration.getReplacement());
+    }
+
+    @Bean(typed = SegmentStatistics.class)
+    @Singleton
+    @Requires(beans = SegmentConfiguration.class)
+    SegmentStatistics segmentStatistics() {
+        return new SegmentStatistics();
+    }
+
+    @Bean
+    @Singleton
+    @Named("segment")
+    @Requires(beans = SegmentConfiguration.class)
+    OkHttpClient defaultHttpClient(SegmentConfiguration configuration) {
+        SegmentConfiguration.HttpConfiguration http = configuration.getHttp();
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectTimeout(http.getConnectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+            .readTimeout(http.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)
+            .writeTimeout(http.getWriteTimeout().toMillis(), TimeUnit.MILLISECONDS)
+            .connectionPool(new ConnectionPool(http.getMaxIdleConnections(), http.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS))
+            .protocols(http.isHttp2() ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Collections.singletonList(Protocol.HTTP_1_1));
+
+        if (http.isTcpNoDelay()) {
+            builder.socketFactory(new TcpNoDelaySocketFactory(SocketFactory.getDefault()));
         }
-        return new NoOpSegmentService();
+
+        return builder.build();
     }
 
     @Bean
     @Singleton
     @Named("segment")
     @Requires(beans = SegmentConfiguration.class)
-    Client defaultClient() {
-        OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(15, TimeUnit.SECONDS)
-            .readTimeout(15, TimeUnit.SECONDS)
-            .writeTimeout(15, TimeUnit.SECONDS)
-            .build();
-        return new Ok3Client(client);
+    Client defaultClient(
+        SegmentConfiguration configuration,
+        @Named("segment") OkHttpClient httpClient,
+        @Named("segment") ThreadFactory threadFactory
+    ) {
+        if (configuration.getHttp().isPrewarm()) {
+            String endpoint = configuration.getEndpoint() == null ? ConnectionPrewarmer.DEFAULT_ENDPOINT : configuration.getEndpoint();
+            ConnectionPrewarmer.prewarm(httpClient, endpoint, threadFactory);
+        }
+        return new Ok3Client(httpClient);
     }
 
     @Bean
     @Singleton
     @Named("segmentNetworkExecutor")
     @Requires(beans = SegmentConfiguration.class)
-    ExecutorService defaultNetworkExecutor(@Named("segment") ThreadFactory threadFactory) {
-        return Executors.newSingleThreadExecutor(threadFactory);
+    ExecutorService defaultNetworkExecutor(
+        @Named("segment") ThreadFactory threadFactory,
+        SegmentConfiguration configuration,
+        UploadSequencer sequencer,
+        Environment environment
+    ) {
+        int parallelism = configuration.getUpload().getParallelism();
+
+        // the blocking flush in functions relies on the single network thread
+        if (parallelism <= 1 || environment.getActiveNames().contains(Environment.FUNCTION)) {
+            return Executors.newSingleThreadExecutor(threadFactory);
+        }
+
+        return new SequencedExecutorService(Executors.newFixedThreadPool(parallelism, threadFactory), sequencer);
     }
 
     @Bean
@@ -117,4 +428,12 @@ public class SegmentFactory {
         }, THREAD_NAME);
     }
 
+    private static boolean isJsonType(Class<?> type) {
+        return CharSequence.class.isAssignableFrom(type)
+            || Number.class.isAssignableFrom(type)
+            || Boolean.class == type
+            || Map.class.isAssignableFrom(type)
+            || Collection.class.isAssignableFrom(type);
+    }
+
 }
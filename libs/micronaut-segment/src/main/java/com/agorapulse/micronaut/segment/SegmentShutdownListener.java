@@ -0,0 +1,191 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment;
+
+import com.agorapulse.micronaut.segment.client.ResilientClientDecorator;
+import com.agorapulse.micronaut.segment.client.SpillBuffer;
+import com.agorapulse.micronaut.segment.spool.SegmentSpool;
+import com.segment.analytics.Analytics;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.event.BeanPreDestroyEvent;
+import io.micronaut.context.event.BeanPreDestroyEventListener;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drains the pending messages before the {@link Analytics} instance is shut down.
+ *
+ * The library discards the queued messages on shutdown so they are flushed first and the spilled batches are uploaded
+ * in parallel, all within <code>segment.shutdown.drain-timeout</code>. The spilled batches which could not be uploaded
+ * in time are written to the spool if enabled. The messages still waiting in the library queue when the timeout elapses
+ * cannot be taken out of the library so they are not spooled and they are reported as lost.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+public class SegmentShutdownListener implements BeanPreDestroyEventListener<Analytics> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentShutdownListener.class);
+
+    private static final long POLL_MILLIS = 10;
+    private static final long FLUSH_MILLIS = 500;
+
+    private final SegmentConfiguration.ShutdownConfiguration configuration;
+    private final SegmentStatistics statistics;
+    private final ResilientClientDecorator resilientClientDecorator;
+    private final SegmentSpool spool;
+
+    public SegmentShutdownListener(
+        SegmentConfiguration configuration,
+        SegmentStatistics statistics,
+        @Nullable ResilientClientDecorator resilientClientDecorator,
+        @Nullable SegmentSpool spool
+    ) {
+        this.configuration = configuration.getShutdown();
+        this.statistics = statistics;
+        this.resilientClientDecorator = resilientClientDecorator;
+        this.spool = spool;
+    }
+
+    @Override
+    public Analytics onPreDestroy(BeanPreDestroyEvent<Analytics> event) {
+        Analytics analytics = event.getBean();
+        long deadline = System.nanoTime() + configuration.getDrainTimeout().toNanos();
+
+        statistics.stopAccepting();
+
+        awaitQueue(analytics, deadline);
+
+        long spilled = 0;
+        long spooled = 0;
+        long dropped = 0;
+
+        if (resilientClientDecorator != null) {
+            SpillBuffer spillBuffer = resilientClientDecorator.getSpillBuffer();
+            drainSpillBuffer(spillBuffer, deadline);
+
+            List<SpillBuffer.SpilledBatch> leftovers = spillBuffer.drain();
+            spilled = leftovers.stream().mapToLong(SpillBuffer.SpilledBatch::getMessages).sum();
+            dropped = spillBuffer.getDroppedMessages();
+
+            if (!leftovers.isEmpty() && spool != null) {
+                try {
+                    spool.write(leftovers);
+                    spooled = spilled;
+                } catch (IOException e) {
+                    LOGGER.error("Exception writing {} spilled batches to the spool", leftovers.size(), e);
+                }
+            }
+        }
+
+        long inFlight = statistics.getInFlight();
+        long lost = inFlight + statistics.getRejected() + dropped + (spilled - spooled);
+        long delivered = statistics.getDelivered();
+
+        if (lost > 0) {
+            LOGGER.warn(
+                "Segment drained: {} messages delivered, {} spooled, {} lost ({} still queued, {} rejected during shutdown, {} dropped from the full spill buffer, {} spilled)",
+                delivered, spooled, lost, inFlight, statistics.getRejected(), dropped, spilled - spooled
+            );
+        } else {
+            LOGGER.info("Segment drained: {} messages delivered, {} spooled", delivered, spooled);
+        }
+
+        return analytics;
+    }
+
+    private void awaitQueue(Analytics analytics, long deadline) {
+        long lastFlush = 0;
+        while (statistics.getInFlight() > 0 && System.nanoTime() < deadline) {
+            long now = System.nanoTime();
+            if (now - lastFlush > TimeUnit.MILLISECONDS.toNanos(FLUSH_MILLIS)) {
+                analytics.flush();
+                lastFlush = now;
+            }
+            if (!sleep()) {
+                return;
+            }
+        }
+    }
+
+    private void drainSpillBuffer(SpillBuffer spillBuffer, long deadline) {
+        if (spillBuffer.size() == 0) {
+            return;
+        }
+
+        int parallelism = Math.max(1, configuration.getParallelism());
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "SegmentDrain-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        LongAdder replayed = new LongAdder();
+        List<Runnable> workers = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            workers.add(() -> {
+                SpillBuffer.SpilledBatch batch;
+                while (System.nanoTime() < deadline && (batch = spillBuffer.poll()) != null) {
+                    if (resilientClientDecorator.replay(batch)) {
+                        replayed.increment();
+                    } else {
+                        // Segment is still failing, keep the batch for the spool
+                        spillBuffer.restore(batch);
+                        return;
+                    }
+                }
+            });
+        }
+
+        try {
+            workers.forEach(executor::execute);
+            executor.shutdown();
+            if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                LOGGER.warn("Spilled batches were not uploaded within the drain timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOGGER.debug("{} spilled batches uploaded during shutdown", replayed.sum());
+    }
+
+    private static boolean sleep() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+}
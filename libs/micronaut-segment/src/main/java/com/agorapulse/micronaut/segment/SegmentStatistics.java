@@ -0,0 +1,184 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment;
+
+import com.agorapulse.micronaut.segment.client.ClientSupport;
+import com.segment.analytics.Callback;
+import com.segment.analytics.MessageInterceptor;
+import com.segment.analytics.messages.Message;
+import retrofit.client.Client;
+import retrofit.client.Response;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters of the messages passing through the pipeline.
+ *
+ * Registered as the last interceptor and as a callback by {@link SegmentFactory} which also lets the statistics
+ * {@link #monitor(Client)} the client calling Segment to count the messages which were really delivered.
+ */
+public class SegmentStatistics implements MessageInterceptor, Callback {
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private final AtomicLong consecutiveFailures = new AtomicLong();
+
+    // the time the oldest message enqueued since the last successful upload was enqueued or zero if there is none
+    private final AtomicLong oldestEnqueuedAt = new AtomicLong();
+
+    private volatile boolean accepting = true;
+    private volatile long lastSuccessAt;
+    private volatile long lastUploadMillis = -1;
+
+    @Override
+    public Message intercept(Message message) {
+        if (!accepting) {
+            rejected.increment();
+            return null;
+        }
+        enqueued.increment();
+        // only the first message after the upload writes, the others just read
+        if (oldestEnqueuedAt.get() == 0) {
+            oldestEnqueuedAt.compareAndSet(0, System.currentTimeMillis());
+        }
+        return message;
+    }
+
+    @Override
+    public void success(Message message) {
+        succeeded.increment();
+        consecutiveFailures.set(0);
+        lastSuccessAt = System.currentTimeMillis();
+    }
+
+    @Override
+    public void failure(Message message, Throwable throwable) {
+        failed.increment();
+        consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * Wraps the client calling Segment directly, below all the decorators, so the batches spilled or written to the sink
+     * are not counted as delivered.
+     *
+     * @param client the client calling Segment
+     * @return the client counting the messages in the batches accepted by Segment, measuring the duration of the calls
+     *          and resetting the lag after each successful upload
+     */
+    public Client monitor(Client client) {
+        return request -> {
+            byte[] body = ClientSupport.readBody(request.getBody());
+            long startedAt = System.currentTimeMillis();
+            long start = System.nanoTime();
+            Response response = client.execute(ClientSupport.withBody(request, body));
+            lastUploadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (ClientSupport.isSuccessful(response.getStatus())) {
+                delivered.add(ClientSupport.countMessages(body));
+                // the messages enqueued during the upload are still waiting for the next one
+                oldestEnqueuedAt.getAndUpdate(oldest -> oldest <= startedAt ? 0 : oldest);
+            }
+            return response;
+        };
+    }
+
+    /**
+     * Rejects all the messages enqueued from now on.
+     */
+    public void stopAccepting() {
+        accepting = false;
+    }
+
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    /**
+     * @return the number of messages reported as successfully uploaded by the library, including the spilled ones
+     */
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    /**
+     * @return the number of messages accepted by Segment, including the replayed ones
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the number of messages rejected after the pipeline stopped accepting them
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the number of messages enqueued but not yet uploaded
+     */
+    public long getInFlight() {
+        return Math.max(0, getEnqueued() - getSucceeded() - getFailed());
+    }
+
+    /**
+     * @return the time of the last successful upload in milliseconds since the epoch or zero if nothing has been uploaded yet
+     */
+    public long getLastSuccessAt() {
+        return lastSuccessAt;
+    }
+
+    /**
+     * @return the duration of the last call to Segment, including the failed ones, or -1 if Segment has not been called yet
+     */
+    public long getLastUploadMillis() {
+        return lastUploadMillis;
+    }
+
+    /**
+     * @return the number of messages which failed to be uploaded since the last success
+     */
+    public long getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * The lag is reset by every batch accepted by Segment, so the messages dropped by the library without any callback
+     * do not keep it growing. The spilled batches only reset the lag once they are replayed.
+     *
+     * @return for how long the oldest message enqueued since the last successful upload is waiting or zero if there is none
+     */
+    public long getLagMillis() {
+        long oldest = oldestEnqueuedAt.get();
+        return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.annotation;
+
+import io.micronaut.aop.Around;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Tracks an event after the annotated method returns successfully.
+ *
+ * The user and the properties are referenced by the argument names. Nested values can be accessed using the dot notation
+ * as long as the argument type is introspected, e.g. <code>order.customer.id</code>. The value returned from the method
+ * is available as <code>result</code>. The properties can be renamed using <code>key=path</code> syntax.
+ */
+@Around
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Track {
+
+    /**
+     * @return the name of the event you’re tracking
+     */
+    String value();
+
+    /**
+     * @return the path to the ID of the user
+     */
+    String userId() default "";
+
+    /**
+     * @return the path to the anonymous ID of the user
+     */
+    String anonymousId() default "";
+
+    /**
+     * @return the paths to the properties of the event
+     */
+    String[] properties() default {};
+
+}
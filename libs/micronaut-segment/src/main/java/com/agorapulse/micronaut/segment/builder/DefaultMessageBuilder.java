@@ -17,13 +17,24 @@
  */
 package com.agorapulse.micronaut.segment.builder;
 
+import com.agorapulse.micronaut.segment.util.FrozenMap;
+import com.agorapulse.micronaut.segment.util.MessageClock;
+import com.agorapulse.micronaut.segment.util.MessageIdGenerator;
+import com.agorapulse.micronaut.segment.util.MessageSize;
 import com.agorapulse.micronaut.segment.util.SafeMap;
+import com.agorapulse.micronaut.segment.util.Scrubber;
+import com.agorapulse.micronaut.segment.util.ValueConverter;
 import io.micronaut.core.util.StringUtils;
 
 import java.util.*;
 
 public abstract class DefaultMessageBuilder<V extends MessageBuilder<V>> implements MessageBuilder<V> {
 
+    // type, messageId, timestamp, sentAt and the library context added to every message
+    private static final int ENVELOPE_SIZE = 320;
+
+    private int payloadSize;
+
     private String messageId;
     private Date timestamp;
     private String anonymousId;
@@ -33,6 +44,29 @@ public abstract class DefaultMessageBuilder<V extends MessageBuilder<V>> impleme
     private final Map<String, Boolean> integrationsEnabled = new LinkedHashMap<>();
     private final Map<String, Map<String, ?>> integrationsOptions = new LinkedHashMap<>();
 
+    protected final ValueConverter converter;
+    protected final Scrubber scrubber;
+
+    private final MessageClock clock;
+    private final MessageIdGenerator idGenerator;
+
+    protected DefaultMessageBuilder() {
+        this(ValueConverter.DEFAULT, MessageClock.SYSTEM, MessageIdGenerator.DEFAULT, Scrubber.NONE);
+    }
+
+    /**
+     * @param converter the converter applied to the values of the context, properties and traits
+     * @param clock the clock providing the timestamp if none is set
+     * @param idGenerator the generator of the message ID if none is set
+     * @param scrubber the scrubber of the sensitive values in the context, properties and traits
+     */
+    protected DefaultMessageBuilder(ValueConverter converter, MessageClock clock, MessageIdGenerator idGenerator, Scrubber scrubber) {
+        this.converter = converter;
+        this.clock = clock;
+        this.idGenerator = idGenerator;
+        this.scrubber = scrubber;
+    }
+
     @Override
     public V messageId(String messageId) {
         this.messageId = messageId;
@@ -50,7 +84,8 @@ public abstract class DefaultMessageBuilder<V extends MessageBuilder<V>> impleme
         if (value == null) {
             return self();
         }
-        this.context.put(key, value);
+        Object converted = converter.convert(value);
+        updateEstimatedSize(key, this.context.put(key, converted), converted);
         return self();
     }
 
@@ -68,13 +103,14 @@ public abstract class DefaultMessageBuilder<V extends MessageBuilder<V>> impleme
 
     @Override
     public V enableIntegration(String key, boolean enable) {
-        integrationsEnabled.put(key, enable);
+        updateEstimatedSize(key, integrationsEnabled.put(key, enable), enable);
         return self();
     }
 
     @Override
     public V integrationOptions(String key, Map<String, ?> options) {
-        integrationsOptions.put(key, SafeMap.safe(options));
+        Map<String, ?> safe = FrozenMap.of(options);
+        updateEstimatedSize(key, integrationsOptions.put(key, safe), safe);
         return self();
     }
 
@@ -84,17 +120,76 @@ public abstract class DefaultMessageBuilder<V extends MessageBuilder<V>> impleme
         return (V) this;
     }
 
-    protected void buildMessage(com.segment.analytics.messages.MessageBuilder<?, ?> builder) {
-        if (StringUtils.isNotEmpty(messageId)) {
-            builder.messageId(messageId);
+    /**
+     * @return the ID of the message, generated by the first build if none was set
+     */
+    public String getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @return the estimated size of the message serialized into JSON in bytes
+     */
+    public int getEstimatedSize() {
+        return ENVELOPE_SIZE + payloadSize + MessageSize.string(messageId) + MessageSize.string(anonymousId) + MessageSize.string(userId);
+    }
+
+    /**
+     * Removes the largest entries from the payload of the message until the estimated size fits into the limit.
+     *
+     * @param maxBytes the maximal size of the message
+     * @return the keys of the entries removed
+     */
+    public List<String> truncate(int maxBytes) {
+        return Collections.emptyList();
+    }
+
+    protected void addEstimatedSize(int bytes) {
+        payloadSize += bytes;
+    }
+
+    protected void updateEstimatedSize(Object key, Object previous, Object value) {
+        if (previous != null) {
+            payloadSize -= MessageSize.entry(key, previous);
+        }
+        if (value != null) {
+            payloadSize += MessageSize.entry(key, value);
+        }
+    }
+
+    protected List<String> truncateLargest(Map<String, Object> values, int maxBytes) {
+        if (getEstimatedSize() <= maxBytes) {
+            return Collections.emptyList();
         }
 
-        if (timestamp != null) {
-            builder.timestamp(timestamp);
+        List<Map.Entry<String, Object>> entries = new ArrayList<>(values.entrySet());
+        entries.sort(Comparator.comparingInt((Map.Entry<String, Object> e) -> MessageSize.entry(e.getKey(), e.getValue())).reversed());
+
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : entries) {
+            if (getEstimatedSize() <= maxBytes) {
+                break;
+            }
+            values.remove(entry.getKey());
+            updateEstimatedSize(entry.getKey(), entry.getValue(), null);
+            removed.add(entry.getKey());
         }
+        return removed;
+    }
+
+    protected void buildMessage(com.segment.analytics.messages.MessageBuilder<?, ?> builder) {
+        // generated here so the library does not fall back to the contended random UUID and the system time
+        long now = clock.currentTimeMillis();
+
+        if (StringUtils.isEmpty(messageId)) {
+            messageId = idGenerator.generate(now);
+        }
+
+        builder.messageId(messageId);
+        builder.timestamp(timestamp != null ? timestamp : new Date(now));
 
         if (!context.isEmpty()) {
-            builder.context(SafeMap.safe(context));
+            builder.context(SafeMap.safe(context, scrubber));
         }
 
         if (StringUtils.isNotEmpty(anonymousId)) {
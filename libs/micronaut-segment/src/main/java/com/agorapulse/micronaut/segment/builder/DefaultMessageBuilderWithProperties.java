@@ -17,31 +17,66 @@
  */
 package com.agorapulse.micronaut.segment.builder;
 
-import com.agorapulse.micronaut.segment.util.SafeMap;
+import com.agorapulse.micronaut.segment.util.FrozenMap;
+import com.agorapulse.micronaut.segment.util.MessageClock;
+import com.agorapulse.micronaut.segment.util.MessageIdGenerator;
+import com.agorapulse.micronaut.segment.util.Scrubber;
+import com.agorapulse.micronaut.segment.util.ValueConverter;
 import com.segment.analytics.messages.PageMessage;
 import com.segment.analytics.messages.ScreenMessage;
 import com.segment.analytics.messages.TrackMessage;
 
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class DefaultMessageBuilderWithProperties extends DefaultMessageBuilder<MessageBuilderWithProperties> implements MessageBuilderWithProperties {
 
-    private final Map<String, Object> properties = new LinkedHashMap<>();
+    private final SharedValues properties = new SharedValues();
+
+    public DefaultMessageBuilderWithProperties() {
+        super();
+    }
+
+    public DefaultMessageBuilderWithProperties(ValueConverter converter, MessageClock clock, MessageIdGenerator idGenerator, Scrubber scrubber) {
+        super(converter, clock, idGenerator, scrubber);
+    }
 
     @Override
     public MessageBuilderWithProperties properties(String key, Object value) {
         if (value == null) {
             return self();
         }
-        properties.put(key, value);
+        Object converted = converter.convert(value);
+        updateEstimatedSize(key, properties.mutable().put(key, converted), converted);
         return self();
     }
 
+    @Override
+    public MessageBuilderWithProperties properties(Map<String, ?> properties) {
+        if (properties instanceof FrozenMap && this.properties.share((FrozenMap<String, ?>) properties)) {
+            // the frozen map is referenced without copying until the builder modifies it
+            addEstimatedSize(((FrozenMap<String, ?>) properties).getEstimatedSize() - 2);
+            return self();
+        }
+        return MessageBuilderWithProperties.super.properties(properties);
+    }
+
+    /**
+     * @return read-only view of the properties collected so far
+     */
+    public Map<String, Object> getProperties() {
+        return properties.view();
+    }
+
+    @Override
+    public List<String> truncate(int maxBytes) {
+        return truncateLargest(properties.mutable(), maxBytes);
+    }
+
     public PageMessage.Builder buildPageMessage(String name) {
         PageMessage.Builder builder = PageMessage.builder(name);
         if (!properties.isEmpty()) {
-            builder.properties(SafeMap.safe(properties));
+            builder.properties(properties.build(scrubber));
         }
         buildMessage(builder);
         return builder;
@@ -50,7 +85,7 @@ public class DefaultMessageBuilderWithProperties extends DefaultMessageBuilder<M
     public ScreenMessage.Builder buildScreenMessage(String name) {
         ScreenMessage.Builder builder = ScreenMessage.builder(name);
         if (!properties.isEmpty()) {
-            builder.properties(SafeMap.safe(properties));
+            builder.properties(properties.build(scrubber));
         }
         buildMessage(builder);
         return builder;
@@ -59,7 +94,7 @@ public class DefaultMessageBuilderWithProperties extends DefaultMessageBuilder<M
     public TrackMessage.Builder buildTrackMessage(String event) {
         TrackMessage.Builder builder = TrackMessage.builder(event);
         if (!properties.isEmpty()) {
-            builder.properties(SafeMap.safe(properties));
+            builder.properties(properties.build(scrubber));
         }
         buildMessage(builder);
         return builder;
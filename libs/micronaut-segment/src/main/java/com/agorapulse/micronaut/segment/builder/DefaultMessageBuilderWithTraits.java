@@ -17,30 +17,65 @@
  */
 package com.agorapulse.micronaut.segment.builder;
 
-import com.agorapulse.micronaut.segment.util.SafeMap;
+import com.agorapulse.micronaut.segment.util.FrozenMap;
+import com.agorapulse.micronaut.segment.util.MessageClock;
+import com.agorapulse.micronaut.segment.util.MessageIdGenerator;
+import com.agorapulse.micronaut.segment.util.Scrubber;
+import com.agorapulse.micronaut.segment.util.ValueConverter;
 import com.segment.analytics.messages.GroupMessage;
 import com.segment.analytics.messages.IdentifyMessage;
 
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class DefaultMessageBuilderWithTraits extends DefaultMessageBuilder<MessageBuilderWithTraits> implements MessageBuilderWithTraits {
 
-    private final Map<String, Object> traits = new LinkedHashMap<>();
+    private final SharedValues traits = new SharedValues();
+
+    public DefaultMessageBuilderWithTraits() {
+        super();
+    }
+
+    public DefaultMessageBuilderWithTraits(ValueConverter converter, MessageClock clock, MessageIdGenerator idGenerator, Scrubber scrubber) {
+        super(converter, clock, idGenerator, scrubber);
+    }
 
     @Override
     public MessageBuilderWithTraits traits(String key, Object value) {
         if (value == null) {
             return self();
         }
-        traits.put(key, value);
+        Object converted = converter.convert(value);
+        updateEstimatedSize(key, traits.mutable().put(key, converted), converted);
         return self();
     }
 
+    @Override
+    public MessageBuilderWithTraits traits(Map<String, ?> traits) {
+        if (traits instanceof FrozenMap && this.traits.share((FrozenMap<String, ?>) traits)) {
+            // the frozen map is referenced without copying until the builder modifies it
+            addEstimatedSize(((FrozenMap<String, ?>) traits).getEstimatedSize() - 2);
+            return self();
+        }
+        return MessageBuilderWithTraits.super.traits(traits);
+    }
+
+    /**
+     * @return read-only view of the traits collected so far
+     */
+    public Map<String, Object> getTraits() {
+        return traits.view();
+    }
+
+    @Override
+    public List<String> truncate(int maxBytes) {
+        return truncateLargest(traits.mutable(), maxBytes);
+    }
+
     public GroupMessage.Builder buildGroupMessage(String groupId) {
         GroupMessage.Builder builder = GroupMessage.builder(groupId);
         if (!traits.isEmpty()) {
-            builder.traits(SafeMap.safe(traits));
+            builder.traits(traits.build(scrubber));
         }
         buildMessage(builder);
         return builder;
@@ -49,7 +84,7 @@ public class DefaultMessageBuilderWithTraits extends DefaultMessageBuilder<Messa
     public IdentifyMessage.Builder buildIdentifyMessage() {
         IdentifyMessage.Builder builder = IdentifyMessage.builder();
         if (!traits.isEmpty()) {
-            builder.traits(SafeMap.safe(traits));
+            builder.traits(traits.build(scrubber));
         }
         buildMessage(builder);
         return builder;
@@ -17,10 +17,22 @@
  */
 package com.agorapulse.micronaut.segment.builder;
 
+import com.agorapulse.micronaut.segment.util.MessageClock;
+import com.agorapulse.micronaut.segment.util.MessageIdGenerator;
+import com.agorapulse.micronaut.segment.util.Scrubber;
+import com.agorapulse.micronaut.segment.util.ValueConverter;
 import com.segment.analytics.messages.AliasMessage;
 
 public class DefaultSimpleMessageBuilder extends DefaultMessageBuilder<SimpleMessageBuilder> implements SimpleMessageBuilder {
 
+    public DefaultSimpleMessageBuilder() {
+        super();
+    }
+
+    public DefaultSimpleMessageBuilder(ValueConverter converter, MessageClock clock, MessageIdGenerator idGenerator, Scrubber scrubber) {
+        super(converter, clock, idGenerator, scrubber);
+    }
+
     public AliasMessage.Builder buildAliasMessage(String from) {
         AliasMessage.Builder builder = AliasMessage.builder(from);
         buildMessage(builder);
@@ -0,0 +1,78 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.builder;
+
+import com.agorapulse.micronaut.segment.util.FrozenMap;
+import com.agorapulse.micronaut.segment.util.SafeMap;
+import com.agorapulse.micronaut.segment.util.Scrubber;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Properties or traits of the builder which reference the frozen map of the caller until they are modified.
+ */
+final class SharedValues {
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    private FrozenMap<String, Object> shared;
+
+    /**
+     * References the frozen map without copying it if there are no values yet.
+     *
+     * @param map the frozen map
+     * @return <code>true</code> if the map is now referenced, <code>false</code> if the entries must be added one by one
+     */
+    @SuppressWarnings("unchecked")
+    boolean share(FrozenMap<String, ?> map) {
+        if (shared != null || !values.isEmpty()) {
+            return false;
+        }
+        shared = (FrozenMap<String, Object>) map;
+        return true;
+    }
+
+    /**
+     * @return the values which can be modified, copying the shared map if there is one
+     */
+    Map<String, Object> mutable() {
+        if (shared != null) {
+            values.putAll(shared);
+            shared = null;
+        }
+        return values;
+    }
+
+    /**
+     * @return read-only view of the current values without copying them
+     */
+    Map<String, Object> view() {
+        return shared == null ? Collections.unmodifiableMap(values) : shared;
+    }
+
+    boolean isEmpty() {
+        return shared == null ? values.isEmpty() : shared.isEmpty();
+    }
+
+    Map<String, Object> build(Scrubber scrubber) {
+        return SafeMap.safe(shared == null ? values : shared, scrubber);
+    }
+
+}
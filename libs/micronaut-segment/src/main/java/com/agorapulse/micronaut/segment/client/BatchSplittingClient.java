@@ -0,0 +1,168 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.util.MessageSize;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedOutput;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Splits the batches exceeding the maximal size into smaller ones and drops the messages which can never be accepted.
+ *
+ * The batches within the limit are passed to the delegate without parsing. The smaller batches are uploaded one by one
+ * and the upload stops at the first failure which is reported so the library retries the whole batch. The smaller batches
+ * which were already accepted are uploaded again by the retry and deduplicated by Segment using the message ID.
+ */
+public class BatchSplittingClient implements Client {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchSplittingClient.class);
+
+    private static final String BATCH = "batch";
+    private static final String MESSAGE_ID = "messageId";
+
+    // the estimated sizes do not count the escaped HTML characters
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    private final Client delegate;
+    private final SegmentConfiguration.MessageSizeConfiguration configuration;
+
+    public BatchSplittingClient(Client delegate, SegmentConfiguration.MessageSizeConfiguration configuration) {
+        this.delegate = delegate;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        TypedOutput body = request.getBody();
+        if (body == null || body.length() >= 0 && body.length() <= configuration.getMaxBatchBytes()) {
+            return delegate.execute(request);
+        }
+
+        JsonObject batch;
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(ClientSupport.readBody(body)), StandardCharsets.UTF_8)) {
+            batch = gson.fromJson(reader, JsonObject.class);
+        }
+
+        if (batch == null || !batch.has(BATCH) || !batch.get(BATCH).isJsonArray()) {
+            return delegate.execute(request);
+        }
+
+        JsonObject envelope = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : batch.entrySet()) {
+            if (!BATCH.equals(entry.getKey())) {
+                envelope.add(entry.getKey(), entry.getValue());
+            }
+        }
+
+        int envelopeSize = size(envelope) + BATCH.length() + 2 + 2 + 1;
+        int maxBytes = configuration.getMaxBatchBytes() - envelopeSize;
+
+        Response last = null;
+        JsonArray chunk = new JsonArray();
+        int chunkSize = 0;
+
+        for (JsonElement message : batch.getAsJsonArray(BATCH)) {
+            int messageSize = size(message) + 1;
+
+            if (messageSize > configuration.getMaxMessageBytes()) {
+                LOGGER.warn("Message {} of {} bytes exceeds the limit of {} bytes and it will not be sent", messageId(message), messageSize, configuration.getMaxMessageBytes());
+                continue;
+            }
+
+            if (chunkSize + messageSize > maxBytes && chunk.size() > 0) {
+                last = delegate.execute(withBody(request, envelope, chunk));
+                if (!ClientSupport.isSuccessful(last.getStatus())) {
+                    // the rest of the batch is uploaded by the retry
+                    return last;
+                }
+                chunk = new JsonArray();
+                chunkSize = 0;
+            }
+
+            chunk.add(message);
+            chunkSize += messageSize;
+        }
+
+        if (chunk.size() > 0) {
+            last = delegate.execute(withBody(request, envelope, chunk));
+        }
+
+        if (last == null) {
+            // all the messages were dropped, there is nothing to retry
+            return ClientSupport.accepted(request, "Dropped");
+        }
+
+        return last;
+    }
+
+    private Request withBody(Request request, JsonObject envelope, JsonArray chunk) {
+        JsonObject batch = new JsonObject();
+        batch.add(BATCH, chunk);
+        for (Map.Entry<String, JsonElement> entry : envelope.entrySet()) {
+            batch.add(entry.getKey(), entry.getValue());
+        }
+        return ClientSupport.withBody(request, gson.toJson(batch).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int size(JsonElement element) {
+        if (element.isJsonObject()) {
+            int size = 2;
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                size += MessageSize.string(entry.getKey()) + 2 + size(entry.getValue());
+            }
+            return size;
+        }
+        if (element.isJsonArray()) {
+            int size = 2;
+            for (JsonElement item : element.getAsJsonArray()) {
+                size += size(item) + 1;
+            }
+            return size;
+        }
+        if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            return primitive.isString() ? MessageSize.string(primitive.getAsString()) : primitive.getAsString().length();
+        }
+        return MessageSize.estimate(null);
+    }
+
+    private static String messageId(JsonElement message) {
+        if (message.isJsonObject() && message.getAsJsonObject().has(MESSAGE_ID)) {
+            return message.getAsJsonObject().get(MESSAGE_ID).getAsString();
+        }
+        return "<unknown>";
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import io.micronaut.context.annotation.Requires;
+import jakarta.inject.Singleton;
+import retrofit.client.Client;
+
+/**
+ * Wraps the Segment client with {@link BatchSplittingClient}.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+public class BatchSplittingClientDecorator implements SegmentClientDecorator {
+
+    public static final int ORDER = 200;
+
+    private final SegmentConfiguration.MessageSizeConfiguration configuration;
+
+    public BatchSplittingClientDecorator(SegmentConfiguration configuration) {
+        this.configuration = configuration.getMessageSize();
+    }
+
+    @Override
+    public Client decorate(Client client) {
+        return new BatchSplittingClient(client, configuration);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+}
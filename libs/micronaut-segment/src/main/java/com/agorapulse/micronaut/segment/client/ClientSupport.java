@@ -0,0 +1,218 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedOutput;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helper methods shared by the client decorators.
+ */
+public final class ClientSupport {
+
+    public static final String JSON = "application/json; charset=utf-8";
+
+    private static final String BATCH = "batch";
+    private static final String MESSAGE_ID = "messageId";
+
+    private static final int OK = 200;
+    private static final int REDIRECT = 300;
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final byte[] SUCCESS = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+
+    private ClientSupport() { }
+
+    /**
+     * Creates the response reporting the batch as accepted to the library.
+     *
+     * @param request the original request
+     * @param reason the reason why the batch was not sent to Segment
+     * @return the response reporting the batch as accepted
+     */
+    public static Response accepted(Request request, String reason) {
+        return new Response(request.getUrl(), OK, reason, Collections.<Header>emptyList(), new TypedByteArray(JSON, SUCCESS));
+    }
+
+    public static boolean isSuccessful(int status) {
+        return status >= OK && status < REDIRECT;
+    }
+
+    public static Request withBody(Request request, byte[] body) {
+        String mimeType = request.getBody() != null ? request.getBody().mimeType() : JSON;
+        return new Request(request.getMethod(), request.getUrl(), request.getHeaders(), new TypedByteArray(mimeType, body));
+    }
+
+    public static byte[] readBody(TypedOutput body) throws IOException {
+        if (body == null) {
+            return new byte[0];
+        }
+        if (body instanceof TypedByteArray) {
+            return ((TypedByteArray) body).getBytes();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length() > 0 ? (int) body.length() : DEFAULT_BUFFER_SIZE);
+        body.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Counts the messages in the serialized batch without parsing them.
+     *
+     * @param body the serialized batch
+     * @return the number of the messages in the batch or zero if the batch cannot be read
+     */
+    public static int countMessages(byte[] body) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (BATCH.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    int count = 0;
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                        count++;
+                    }
+                    return count;
+                }
+                reader.skipValue();
+            }
+            return 0;
+        } catch (IOException | IllegalStateException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the IDs of the messages in the serialized batch without parsing the rest of the messages.
+     *
+     * @param body the serialized batch
+     * @return the IDs of the messages in the batch or empty list if the batch cannot be read
+     */
+    public static List<String> messageIds(byte[] body) {
+        List<String> ids = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (BATCH.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readMessageId(reader, ids);
+                    }
+                    return ids;
+                }
+                reader.skipValue();
+            }
+            return ids;
+        } catch (IOException | IllegalStateException e) {
+            return ids;
+        }
+    }
+
+    /**
+     * Copies the next value of the reader as the JSON string without building its tree.
+     *
+     * @param reader the reader positioned before the value
+     * @return the value as the JSON string
+     */
+    public static String copy(JsonReader reader) throws IOException {
+        StringWriter value = new StringWriter();
+        JsonWriter writer = new JsonWriter(value);
+        // allows the top-level primitive values
+        writer.setLenient(true);
+        copy(reader, writer);
+        return value.toString();
+    }
+
+    /**
+     * Copies the next value of the reader token by token into the writer.
+     *
+     * @param reader the reader positioned before the value
+     * @param writer the writer receiving the value
+     */
+    public static void copy(JsonReader reader, JsonWriter writer) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    copy(reader, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                writer.beginObject();
+                while (reader.hasNext()) {
+                    writer.name(reader.nextName());
+                    copy(reader, writer);
+                }
+                reader.endObject();
+                writer.endObject();
+                break;
+            case STRING:
+                writer.value(reader.nextString());
+                break;
+            case NUMBER:
+                // keeps the original representation of the number
+                writer.jsonValue(reader.nextString());
+                break;
+            case BOOLEAN:
+                writer.value(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                throw new IllegalStateException("Unexpected token " + reader.peek());
+        }
+    }
+
+    private static void readMessageId(JsonReader reader, List<String> ids) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (MESSAGE_ID.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                ids.add(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opens the connection to the Segment endpoint in the background so the first batch does not pay for the TCP and TLS
+ * handshakes.
+ *
+ * The connection stays in the pool of the client until it is used by the upload or closed after the keep-alive period.
+ */
+public final class ConnectionPrewarmer {
+
+    /**
+     * The endpoint used by the Segment library if none is configured.
+     */
+    public static final String DEFAULT_ENDPOINT = "https://api.segment.io";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPrewarmer.class);
+
+    private ConnectionPrewarmer() { }
+
+    public static void prewarm(OkHttpClient client, String endpoint, ThreadFactory threadFactory) {
+        threadFactory.newThread(() -> prewarm(client, endpoint)).start();
+    }
+
+    static void prewarm(OkHttpClient client, String endpoint) {
+        long start = System.nanoTime();
+        Request request = new Request.Builder().url(endpoint).head().build();
+        try {
+            Response response = client.newCall(request).execute();
+            // the body must be closed to return the connection back to the pool
+            response.body().close();
+            LOGGER.debug(
+                "Connection to {} opened in {} ms using {}, status {}",
+                endpoint,
+                (System.nanoTime() - start) / 1_000_000,
+                response.protocol(),
+                response.code()
+            );
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Exception opening the connection to {}, the first upload will open a new connection", endpoint, e);
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Splits the batch into the partitions by the hash of the user ID or the anonymous ID and uploads the partitions
+ * in parallel.
+ *
+ * The batch is read as a stream, each message is copied into its partition without building the tree of the whole batch.
+ * Each partition is uploaded by its own single-threaded worker so the messages of the same user are always uploaded
+ * in the order they were enqueued.
+ *
+ * The partitions are passed to the delegate one by one, so when the {@link ResilientClient} is enabled, each failed partition
+ * is retried and spilled on its own and the partitions already accepted are never uploaded again. Without it, the first failure
+ * of any partition is reported and the library retries the whole batch. The partitions which were already accepted are then
+ * deduplicated by Segment using the message ID, but the retried messages may arrive after the messages of the same user
+ * enqueued later.
+ */
+public class PartitionedUploadClient implements Client {
+
+    private static final String BATCH = "batch";
+    private static final String USER_ID = "userId";
+    private static final String ANONYMOUS_ID = "anonymousId";
+    private static final String MESSAGE_ID = "messageId";
+
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+    private final Client delegate;
+    private final ExecutorService[] workers;
+    private final UploadSequencer sequencer;
+
+    public PartitionedUploadClient(Client delegate, ExecutorService[] workers, UploadSequencer sequencer) {
+        this.delegate = delegate;
+        this.workers = workers;
+        this.sequencer = sequencer;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        byte[] body = ClientSupport.readBody(request.getBody());
+
+        // the envelope keeps the order of the fields, the batch field only marks the position of the messages
+        Map<String, String> envelope = new LinkedHashMap<>();
+        List<List<String>> partitions = new ArrayList<>(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+
+        try {
+            if (!read(body, envelope, partitions)) {
+                return delegate.execute(ClientSupport.withBody(request, body));
+            }
+        } catch (IOException | IllegalStateException e) {
+            // not a valid batch, let the delegate deal with it
+            return delegate.execute(ClientSupport.withBody(request, body));
+        }
+
+        List<Future<Response>> responses = new ArrayList<>(workers.length);
+
+        try {
+            sequencer.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the previous batches");
+        }
+
+        try {
+            for (int i = 0; i < workers.length; i++) {
+                if (!partitions.get(i).isEmpty()) {
+                    Request partitionRequest = ClientSupport.withBody(request, write(envelope, partitions.get(i)));
+                    responses.add(workers[i].submit(() -> delegate.execute(partitionRequest)));
+                }
+            }
+        } finally {
+            sequencer.release();
+        }
+
+        return collect(request, responses);
+    }
+
+    private Response collect(Request request, List<Future<Response>> responses) throws IOException {
+        Response result = null;
+        IOException error = null;
+
+        for (Future<Response> future : responses) {
+            try {
+                Response response = future.get();
+                if (result == null || ClientSupport.isSuccessful(result.getStatus()) && !ClientSupport.isSuccessful(response.getStatus())) {
+                    // report the first failure so the library can retry the batch
+                    result = response;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the partitions to be uploaded");
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+        }
+
+        if (error != null && (result == null || ClientSupport.isSuccessful(result.getStatus()))) {
+            throw error;
+        }
+
+        return result == null ? ClientSupport.accepted(request, "Empty") : result;
+    }
+
+    /**
+     * @return <code>false</code> if the body does not contain the batch of the messages
+     */
+    private boolean read(byte[] body, Map<String, String> envelope, List<List<String>> partitions) throws IOException {
+        boolean batch = false;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (BATCH.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    batch = true;
+                    envelope.put(name, null);
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readMessage(reader, partitions);
+                    }
+                    reader.endArray();
+                } else {
+                    envelope.put(name, ClientSupport.copy(reader));
+                }
+            }
+            reader.endObject();
+        }
+        return batch;
+    }
+
+    private void readMessage(JsonReader reader, List<List<String>> partitions) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            partitions.get(0).add(ClientSupport.copy(reader));
+            return;
+        }
+
+        String userId = null;
+        String anonymousId = null;
+        String messageId = null;
+
+        StringWriter message = new StringWriter();
+        JsonWriter writer = new JsonWriter(message);
+
+        reader.beginObject();
+        writer.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            writer.name(name);
+            JsonToken token = reader.peek();
+            if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+                ClientSupport.copy(reader, writer);
+                continue;
+            }
+            String value = reader.nextString();
+            if (token == JsonToken.STRING) {
+                writer.value(value);
+            } else {
+                writer.jsonValue(value);
+            }
+            if (USER_ID.equals(name)) {
+                userId = value;
+            } else if (ANONYMOUS_ID.equals(name)) {
+                anonymousId = value;
+            } else if (MESSAGE_ID.equals(name)) {
+                messageId = value;
+            }
+        }
+        reader.endObject();
+        writer.endObject();
+
+        String key = userId != null ? userId : anonymousId != null ? anonymousId : messageId;
+        partitions.get(partition(key)).add(message.toString());
+    }
+
+    private int partition(String key) {
+        if (key == null) {
+            return 0;
+        }
+        return Math.floorMod(key.hashCode() * GOLDEN_RATIO, workers.length);
+    }
+
+    private static byte[] write(Map<String, String> envelope, List<String> messages) throws IOException {
+        StringWriter batch = new StringWriter();
+        JsonWriter writer = new JsonWriter(batch);
+        writer.beginObject();
+        for (Map.Entry<String, String> entry : envelope.entrySet()) {
+            writer.name(entry.getKey());
+            if (entry.getValue() != null) {
+                writer.jsonValue(entry.getValue());
+                continue;
+            }
+            writer.beginArray();
+            for (String message : messages) {
+                writer.jsonValue(message);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+        return batch.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
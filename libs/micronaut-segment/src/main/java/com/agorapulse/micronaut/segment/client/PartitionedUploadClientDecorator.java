@@ -0,0 +1,78 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import io.micronaut.context.annotation.Requires;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import retrofit.client.Client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Wraps the Segment client with {@link PartitionedUploadClient} if <code>segment.upload.parallelism</code> is greater than one.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+public class PartitionedUploadClientDecorator implements SegmentClientDecorator, AutoCloseable {
+
+    public static final int ORDER = 300;
+
+    private final ExecutorService[] workers;
+    private final UploadSequencer sequencer;
+
+    public PartitionedUploadClientDecorator(
+        SegmentConfiguration configuration,
+        UploadSequencer sequencer,
+        @Named("segment") ThreadFactory threadFactory
+    ) {
+        this.sequencer = sequencer;
+
+        int parallelism = configuration.getUpload().getParallelism();
+        this.workers = new ExecutorService[parallelism > 1 ? parallelism : 0];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    @Override
+    public Client decorate(Client client) {
+        if (workers.length == 0) {
+            return client;
+        }
+        return new PartitionedUploadClient(client, workers, sequencer);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Retries the uploads with the jittered exponential backoff, honors <code>Retry-After</code> header and stops calling
+ * the delegate while the circuit is open.
+ *
+ * The batches which cannot be uploaded are spilled to the {@link SpillBuffer} and reported as successful to the library
+ * so the network thread is not blocked by the library retries, the library callbacks therefore report the spilled messages
+ * as successful. The spilled batches are replayed as soon as an upload succeeds or when {@link #recover()} finds out
+ * that Segment is reachable again.
+ */
+public class ResilientClient implements Client {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResilientClient.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int REQUEST_TIMEOUT = 408;
+    private static final int SERVER_ERROR = 500;
+
+    private static final int MAX_SHIFT = 20;
+
+    private static final String RETRY_AFTER = "Retry-After";
+
+    private final Client delegate;
+    private final SegmentConfiguration.ResilienceConfiguration configuration;
+    private final CircuitBreaker circuitBreaker;
+    private final SpillBuffer spillBuffer;
+
+    private final AtomicBoolean replaying = new AtomicBoolean();
+
+    private volatile Request lastRequest;
+
+    public ResilientClient(
+        Client delegate,
+        SegmentConfiguration.ResilienceConfiguration configuration,
+        CircuitBreaker circuitBreaker,
+        SpillBuffer spillBuffer
+    ) {
+        this.delegate = delegate;
+        this.configuration = configuration;
+        this.circuitBreaker = circuitBreaker;
+        this.spillBuffer = spillBuffer;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        byte[] body = ClientSupport.readBody(request.getBody());
+
+        // keep the url and the headers for replaying the spilled batches
+        lastRequest = ClientSupport.withBody(request, new byte[0]);
+
+        if (!circuitBreaker.allowRequest()) {
+            return spill(request, body);
+        }
+
+        Request replayable = ClientSupport.withBody(request, body);
+        int maxAttempts = circuitBreaker.getState() == CircuitBreaker.State.HALF_OPEN ? 1 : configuration.getMaxAttempts();
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            long delay;
+            try {
+                Response response = delegate.execute(replayable);
+
+                if (!isRetryable(response.getStatus())) {
+                    // client errors are not caused by the outage, retrying would not help
+                    circuitBreaker.onSuccess();
+                    if (ClientSupport.isSuccessful(response.getStatus())) {
+                        replaySpilled();
+                    }
+                    return response;
+                }
+
+                LOGGER.debug("Segment responded with status {} to attempt {} of {}", response.getStatus(), attempt, maxAttempts);
+
+                delay = retryAfter(response);
+                if (delay < 0) {
+                    delay = backoff(attempt);
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Exception uploading the batch to Segment in attempt {} of {}", attempt, maxAttempts, e);
+                delay = backoff(attempt);
+            }
+
+            circuitBreaker.onFailure();
+
+            if (circuitBreaker.isOpen() || attempt == maxAttempts || delay > configuration.getMaxBackoff().toNanos()) {
+                break;
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return spill(request, body);
+    }
+
+    /**
+     * Probes Segment with the first spilled batch once the circuit allows it and replays the rest of the buffer if the probe
+     * succeeds. Called periodically so the spilled batches are not stuck in the memory when no new uploads arrive.
+     */
+    public void recover() {
+        if (spillBuffer.size() == 0 || lastRequest == null || !circuitBreaker.allowRequest()) {
+            return;
+        }
+
+        SpillBuffer.SpilledBatch probe = spillBuffer.poll();
+        if (probe == null) {
+            // drained concurrently, the probe was not sent so the breaker must not stay half-open
+            circuitBreaker.onSuccess();
+            return;
+        }
+
+        if (!replay(probe)) {
+            spillBuffer.restore(probe);
+            circuitBreaker.onFailure();
+            return;
+        }
+
+        circuitBreaker.onSuccess();
+        replaySpilled();
+    }
+
+    /**
+     * Tries to upload the spilled batch once using the last request as the template.
+     *
+     * @param batch the spilled batch
+     * @return <code>true</code> if the batch was accepted by Segment
+     */
+    public boolean replay(SpillBuffer.SpilledBatch batch) {
+        Request template = lastRequest;
+        if (template == null) {
+            return false;
+        }
+        try {
+            Response response = delegate.execute(ClientSupport.withBody(template, batch.getBody()));
+            if (isRetryable(response.getStatus())) {
+                return false;
+            }
+            if (!ClientSupport.isSuccessful(response.getStatus())) {
+                LOGGER.warn("Spilled batch of {} bytes rejected by Segment with status {}", batch.getBody().length, response.getStatus());
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.debug("Exception replaying the spilled batch", e);
+            return false;
+        }
+    }
+
+    private Response spill(Request request, byte[] body) {
+        if (spillBuffer.offer(new SpillBuffer.SpilledBatch(body, ClientSupport.countMessages(body)))) {
+            LOGGER.debug("Batch of {} bytes spilled, {} batches waiting for Segment to recover", body.length, spillBuffer.size());
+        } else {
+            LOGGER.warn("Batch of {} bytes dropped as it does not fit into the spill buffer", body.length);
+        }
+        return ClientSupport.accepted(request, "Spilled");
+    }
+
+    private void replaySpilled() {
+        if (!replaying.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            SpillBuffer.SpilledBatch batch;
+            while ((batch = spillBuffer.poll()) != null) {
+                if (!replay(batch)) {
+                    spillBuffer.restore(batch);
+                    circuitBreaker.onFailure();
+                    return;
+                }
+            }
+        } finally {
+            replaying.set(false);
+        }
+    }
+
+    private long backoff(int attempt) {
+        long initial = configuration.getInitialBackoff().toNanos();
+        long max = configuration.getMaxBackoff().toNanos();
+        long exponential = Math.min(max, initial << Math.min(attempt - 1, MAX_SHIFT));
+        // full jitter to avoid all the instances retrying at the same time
+        return ThreadLocalRandom.current().nextLong(exponential + 1);
+    }
+
+    private static long retryAfter(Response response) {
+        if (response.getHeaders() == null) {
+            return -1;
+        }
+        for (Header header : response.getHeaders()) {
+            if (RETRY_AFTER.equalsIgnoreCase(header.getName()) && header.getValue() != null) {
+                return parseRetryAfter(header.getValue().trim());
+            }
+        }
+        return -1;
+    }
+
+    static long parseRetryAfter(String value) {
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException ignored) {
+            // not a number of seconds, let's try the date
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+        } catch (DateTimeParseException ignored) {
+            return -1;
+        }
+    }
+
+    private static boolean isRetryable(int status) {
+        return status >= SERVER_ERROR || status == TOO_MANY_REQUESTS || status == REQUEST_TIMEOUT;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit.client.Client;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps the Segment client with {@link ResilientClient}.
+ *
+ * Every <code>segment.resilience.open-duration</code> the decorator lets the client probe Segment with a spilled batch
+ * so the circuit closes and the spilled batches are uploaded even if the application stops sending new messages.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+@Requires(property = "segment.resilience.enabled", value = StringUtils.TRUE)
+public class ResilientClientDecorator implements SegmentClientDecorator, AutoCloseable {
+
+    public static final int ORDER = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResilientClientDecorator.class);
+
+    private final SegmentConfiguration.ResilienceConfiguration configuration;
+    private final CircuitBreaker circuitBreaker;
+    private final SpillBuffer spillBuffer;
+    private final ScheduledExecutorService recovery;
+
+    private volatile ResilientClient client;
+
+    public ResilientClientDecorator(SegmentConfiguration configuration, @Named("segment") ThreadFactory threadFactory) {
+        this.configuration = configuration.getResilience();
+        this.circuitBreaker = new CircuitBreaker(this.configuration.getFailureThreshold(), this.configuration.getOpenDuration());
+        this.spillBuffer = new SpillBuffer(this.configuration.getSpillBufferBytes());
+
+        long period = Math.max(1, this.configuration.getOpenDuration().toMillis());
+        this.recovery = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.recovery.scheduleWithFixedDelay(this::recover, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Client decorate(Client client) {
+        this.client = new ResilientClient(client, configuration, circuitBreaker, spillBuffer);
+        return this.client;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public SpillBuffer getSpillBuffer() {
+        return spillBuffer;
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        recovery.shutdownNow();
+    }
+
+    /**
+     * @param batch the spilled batch
+     * @return <code>true</code> if the batch was accepted by Segment
+     */
+    public boolean replay(SpillBuffer.SpilledBatch batch) {
+        ResilientClient current = client;
+        return current != null && current.replay(batch);
+    }
+
+    private void recover() {
+        ResilientClient current = client;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.recover();
+        } catch (RuntimeException e) {
+            // must not cancel the periodic task
+            LOGGER.warn("Exception replaying the spilled batches", e);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import io.micronaut.core.order.OrderUtil;
+import io.micronaut.core.order.Ordered;
+import retrofit.client.Client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decorates the {@link Client} used to upload the batches to Segment.
+ *
+ * The decorators are applied in the order given by {@link #getOrder()} so the decorator with the lowest order is the closest one to the network.
+ */
+public interface SegmentClientDecorator extends Ordered {
+
+    /**
+     * @param client the client to be decorated
+     * @return the decorated client
+     */
+    Client decorate(Client client);
+
+    /**
+     * @param client the client closest to the network
+     * @param decorators the decorators in any order
+     * @return the client decorated by all the decorators in their order
+     */
+    static Client decorateAll(Client client, Collection<? extends SegmentClientDecorator> decorators) {
+        List<SegmentClientDecorator> sorted = new ArrayList<>(decorators);
+        OrderUtil.sort(sorted);
+
+        Client decorated = client;
+        for (SegmentClientDecorator decorator : sorted) {
+            decorated = decorator.decorate(decorated);
+        }
+        return decorated;
+    }
+
+}
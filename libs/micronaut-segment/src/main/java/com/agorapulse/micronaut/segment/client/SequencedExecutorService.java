@@ -0,0 +1,82 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Network executor issuing the {@link UploadSequencer} ticket for every submitted task.
+ */
+public class SequencedExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final UploadSequencer sequencer;
+
+    public SequencedExecutorService(ExecutorService delegate, UploadSequencer sequencer) {
+        this.delegate = delegate;
+        this.sequencer = sequencer;
+    }
+
+    @Override
+    public synchronized void execute(Runnable command) {
+        long ticket = sequencer.issue();
+        try {
+            delegate.execute(() -> {
+                sequencer.enter(ticket);
+                try {
+                    command.run();
+                } finally {
+                    sequencer.exit(ticket);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sequencer.release(ticket);
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the serialized batches which could not be uploaded, bounded by their total size in bytes.
+ *
+ * When the buffer is full, the oldest batches are dropped.
+ */
+public class SpillBuffer {
+
+    /**
+     * Serialized batch with the number of messages it contains.
+     */
+    public static final class SpilledBatch {
+
+        private final byte[] body;
+        private final int messages;
+
+        public SpilledBatch(byte[] body, int messages) {
+            this.body = body;
+            this.messages = messages;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public int getMessages() {
+            return messages;
+        }
+
+    }
+
+    private final long maxBytes;
+    private final Deque<SpilledBatch> batches = new ArrayDeque<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+
+    private long bytes;
+    private long messages;
+
+    public SpillBuffer(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param batch the serialized batch
+     * @return <code>false</code> if the batch alone does not fit into the buffer
+     */
+    public synchronized boolean offer(SpilledBatch batch) {
+        if (batch.body.length > maxBytes) {
+            drop(batch);
+            return false;
+        }
+        while (bytes + batch.body.length > maxBytes) {
+            drop(remove(batches.removeFirst()));
+        }
+        add(batch);
+        batches.addLast(batch);
+        return true;
+    }
+
+    /**
+     * Returns the batch which failed to be replayed back to the head of the buffer.
+     * @param batch the serialized batch
+     */
+    public synchronized void restore(SpilledBatch batch) {
+        add(batch);
+        batches.addFirst(batch);
+        while (bytes > maxBytes) {
+            drop(remove(batches.removeLast()));
+        }
+    }
+
+    public synchronized SpilledBatch poll() {
+        SpilledBatch batch = batches.pollFirst();
+        if (batch != null) {
+            remove(batch);
+        }
+        return batch;
+    }
+
+    public synchronized List<SpilledBatch> drain() {
+        List<SpilledBatch> result = new ArrayList<>(batches);
+        batches.clear();
+        bytes = 0;
+        messages = 0;
+        return result;
+    }
+
+    public synchronized int size() {
+        return batches.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of messages in the spilled batches
+     */
+    public synchronized long getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return the number of batches dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of messages in the batches dropped because the buffer was full
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.sum();
+    }
+
+    private void add(SpilledBatch batch) {
+        bytes += batch.body.length;
+        messages += batch.messages;
+    }
+
+    private SpilledBatch remove(SpilledBatch batch) {
+        bytes -= batch.body.length;
+        messages -= batch.messages;
+        return batch;
+    }
+
+    private void drop(SpilledBatch batch) {
+        dropped.increment();
+        droppedMessages.add(batch.messages);
+    }
+
+}
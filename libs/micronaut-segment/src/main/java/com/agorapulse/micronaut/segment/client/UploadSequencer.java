@@ -0,0 +1,94 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import io.micronaut.context.annotation.Requires;
+import jakarta.inject.Singleton;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps the order in which the batches are handed over to the partition workers the same as the order in which
+ * the library created them, even when the batches are uploaded by multiple network threads.
+ *
+ * Each task submitted to the network executor gets a ticket. The ticket is released either when the batch is handed over
+ * or when the task finishes without uploading anything.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+public class UploadSequencer {
+
+    private final ThreadLocal<Long> current = new ThreadLocal<>();
+    private final Set<Long> released = new HashSet<>();
+
+    private long issued;
+    private long next;
+
+    synchronized long issue() {
+        return issued++;
+    }
+
+    void enter(long ticket) {
+        current.set(ticket);
+    }
+
+    void exit(long ticket) {
+        current.remove();
+        release(ticket);
+    }
+
+    /**
+     * Waits until all the batches created before the one being uploaded by the current thread are handed over.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void await() throws InterruptedException {
+        Long ticket = current.get();
+        if (ticket == null) {
+            return;
+        }
+        synchronized (this) {
+            while (ticket > next) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Lets the next batch to be handed over.
+     */
+    void release() {
+        Long ticket = current.get();
+        if (ticket != null) {
+            release(ticket);
+        }
+    }
+
+    synchronized void release(long ticket) {
+        if (ticket < next || !released.add(ticket)) {
+            return;
+        }
+        while (released.remove(next)) {
+            next++;
+        }
+        notifyAll();
+    }
+
+}
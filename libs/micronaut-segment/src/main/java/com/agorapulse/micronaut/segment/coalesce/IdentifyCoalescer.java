@@ -0,0 +1,252 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.coalesce;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.segment.analytics.messages.IdentifyMessage;
+import com.segment.analytics.messages.MessageBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Merges the identify messages of the same user sent within the time window into a single message.
+ *
+ * The traits are merged keeping the latest value of each key, the other fields come from the latest message.
+ * The merged message is sent when the window started by the first message of the user ends or on {@link #flush()}.
+ * The windows are expired by the hashed time wheel so the expiry does not need to scan all the pending users.
+ * When the number of the users with the pending messages reaches the limit, the messages of the other users are sent
+ * immediately.
+ */
+public class IdentifyCoalescer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdentifyCoalescer.class);
+
+    private static final int TICKS_PER_WINDOW = 16;
+    private static final long MIN_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long JOIN_MILLIS = 1000;
+
+    private final Consumer<MessageBuilder<?, ?>> target;
+    private final int maxUsers;
+    private final long tickNanos;
+    private final long ticksPerWindow;
+    private final Queue<Pending>[] wheel;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final Thread ticker;
+
+    private volatile long tick;
+    private volatile boolean closed;
+
+    @SuppressWarnings("unchecked")
+    public IdentifyCoalescer(
+        SegmentConfiguration.CoalescingConfiguration configuration,
+        Consumer<MessageBuilder<?, ?>> target,
+        ThreadFactory threadFactory
+    ) {
+        long windowNanos = Math.max(MIN_TICK_NANOS, configuration.getWindow().toNanos());
+
+        this.target = target;
+        this.maxUsers = Math.max(1, configuration.getMaxUsers());
+        this.tickNanos = Math.max(MIN_TICK_NANOS, windowNanos / TICKS_PER_WINDOW);
+        this.ticksPerWindow = (windowNanos + tickNanos - 1) / tickNanos;
+
+        // two more slots so the slot of a new window is never the one being expired
+        this.wheel = new Queue[(int) ticksPerWindow + 2];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+
+        this.ticker = threadFactory.newThread(this::run);
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * @param message the identify message with the user id
+     */
+    public void add(IdentifyMessage message) {
+        String userId = message.userId();
+
+        if (closed || userId == null || pending.size() >= maxUsers && !pending.containsKey(userId)) {
+            emit(message, message.traits());
+            return;
+        }
+
+        boolean[] created = new boolean[1];
+        Pending entry = pending.compute(userId, (key, existing) -> {
+            if (existing != null) {
+                coalesced.increment();
+                return existing.merge(message);
+            }
+            created[0] = true;
+            return new Pending(userId, tick + ticksPerWindow).merge(message);
+        });
+
+        if (created[0]) {
+            wheel[slot(entry.deadline)].add(entry);
+        }
+
+        if (closed) {
+            // the final flush might have missed the entry, sent at most once as the entry is removed before sending
+            expire(entry);
+        }
+    }
+
+    /**
+     * Sends all the pending merged messages immediately.
+     */
+    public void flush() {
+        for (Pending entry : pending.values()) {
+            expire(entry);
+        }
+    }
+
+    /**
+     * @return the number of the users with the pending messages
+     */
+    public int getPendingUsers() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of the messages merged into the previous messages of the same user
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(ticker);
+        try {
+            ticker.join(JOIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        while (!closed) {
+            long current = (System.nanoTime() - start) / tickNanos;
+            while (tick < current) {
+                long next = tick + 1;
+                expireSlot(next);
+                tick = next;
+            }
+            LockSupport.parkNanos(this, tickNanos);
+        }
+    }
+
+    private void expireSlot(long currentTick) {
+        Queue<Pending> slot = wheel[slot(currentTick)];
+        int size = slot.size();
+        for (int i = 0; i < size; i++) {
+            Pending entry = slot.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entry.deadline > currentTick) {
+                slot.add(entry);
+            } else {
+                expire(entry);
+            }
+        }
+    }
+
+    private void expire(Pending entry) {
+        // the entry may have been already sent by the flush
+        if (pending.remove(entry.userId, entry)) {
+            emit(entry.latest, entry.traits);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emit(IdentifyMessage latest, Map<String, ?> traits) {
+        try {
+            IdentifyMessage.Builder builder = IdentifyMessage.builder()
+                .userId(latest.userId())
+                .messageId(latest.messageId())
+                .timestamp(latest.timestamp());
+
+            if (latest.anonymousId() != null) {
+                builder.anonymousId(latest.anonymousId());
+            }
+            if (latest.context() != null) {
+                builder.context(latest.context());
+            }
+            if (traits != null && !traits.isEmpty()) {
+                builder.traits(traits);
+            }
+            if (latest.integrations() != null) {
+                latest.integrations().forEach((key, value) -> {
+                    if (value instanceof Boolean) {
+                        builder.enableIntegration(key, (Boolean) value);
+                    } else if (value instanceof Map) {
+                        builder.integrationOptions(key, (Map<String, Object>) value);
+                    }
+                });
+            }
+
+            target.accept(builder);
+        } catch (RuntimeException e) {
+            LOGGER.error("Exception sending the identify message of user {}", latest.userId(), e);
+        }
+    }
+
+    private int slot(long deadline) {
+        return (int) (deadline % wheel.length);
+    }
+
+    private static final class Pending {
+
+        private final String userId;
+        private final long deadline;
+        private final Map<String, Object> traits = new LinkedHashMap<>();
+
+        private IdentifyMessage latest;
+
+        Pending(String userId, long deadline) {
+            this.userId = userId;
+            this.deadline = deadline;
+        }
+
+        Pending merge(IdentifyMessage message) {
+            if (message.traits() != null) {
+                traits.putAll(message.traits());
+            }
+            latest = message;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.flush;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.client.SegmentClientDecorator;
+import com.segment.analytics.Analytics;
+import com.segment.analytics.MessageInterceptor;
+import com.segment.analytics.messages.Message;
+import io.micronaut.context.BeanProvider;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit.client.Client;
+import retrofit.mime.TypedOutput;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flushes the messages based on the observed enqueue rate and the upload latency.
+ *
+ * When the traffic is light and the batch would not fill up within the target latency, the messages are flushed after
+ * the target latency. When the traffic is heavy, the batches are filled up to the size bounded by the number of messages
+ * and by their estimated size in bytes to send as few requests as possible.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+@Requires(property = "segment.adaptive.enabled", value = StringUtils.TRUE)
+public class AdaptiveFlushController implements MessageInterceptor, SegmentClientDecorator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveFlushController.class);
+
+    private static final double SMOOTHING = 0.2;
+    private static final long MIN_TICK_MILLIS = 10;
+    private static final long MAX_TICK_MILLIS = 1000;
+    private static final int TICKS_PER_INTERVAL = 4;
+    private static final int NANOS_PER_MILLI = 1_000_000;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    // the sentAt, context, writeKey and the batch field itself wrapping the messages of the uploaded batch
+    static final int BATCH_ENVELOPE_BYTES = 200;
+
+    private final SegmentConfiguration.AdaptiveConfiguration configuration;
+    private final BeanProvider<Analytics> analytics;
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private volatile double enqueueRate;
+    private volatile double uploadLatencyMillis;
+    private volatile double bytesPerMessage;
+    private volatile int lastFlushedCount;
+
+    private volatile int batchSize;
+    private volatile long intervalNanos;
+
+    private volatile long lastFlush = System.nanoTime();
+    private long lastTick = System.nanoTime();
+    private long lastEnqueued;
+
+    public AdaptiveFlushController(
+        SegmentConfiguration configuration,
+        BeanProvider<Analytics> analytics,
+        @Named("segment") ThreadFactory threadFactory
+    ) {
+        this.configuration = configuration.getAdaptive();
+        this.analytics = analytics;
+        this.batchSize = this.configuration.getMaxBatchSize();
+        this.intervalNanos = this.configuration.getMinInterval().toNanos();
+
+        long tick = Math.max(MIN_TICK_MILLIS, Math.min(MAX_TICK_MILLIS, this.configuration.getMinInterval().toMillis() / TICKS_PER_INTERVAL));
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Message intercept(Message message) {
+        enqueued.increment();
+        if (pending.incrementAndGet() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            // flush from the scheduler thread so the message is already in the queue
+            scheduler.execute(this::flush);
+        }
+        return message;
+    }
+
+    @Override
+    public int getOrder() {
+        return HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Client decorate(Client client) {
+        return request -> {
+            long start = System.nanoTime();
+            try {
+                return client.execute(request);
+            } finally {
+                recordUpload(System.nanoTime() - start, request.getBody());
+            }
+        };
+    }
+
+    /**
+     * @return the current number of messages which triggers the flush
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the current maximal interval between the flushes in milliseconds
+     */
+    public long getIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    void adapt(double rate, double latencyMillis, double messageBytes) {
+        int byteBound = messageBytes > 0 ? (int) Math.max(1, configuration.getMaxBatchBytes() / messageBytes) : Integer.MAX_VALUE;
+        int size = Math.max(1, Math.min(configuration.getMaxBatchSize(), byteBound));
+
+        long minInterval = configuration.getMinInterval().toNanos();
+        long maxInterval = configuration.getMaxInterval().toNanos();
+
+        long targetLatency = Math.max(minInterval, Math.min(maxInterval, configuration.getTargetLatency().toNanos()));
+        long fillTime = rate > 0 ? (long) Math.min(Long.MAX_VALUE, size / rate * NANOS_PER_SECOND) : Long.MAX_VALUE;
+
+        long interval;
+        if (fillTime > targetLatency) {
+            // light traffic, the batch would not fill up in time so send whatever is waiting after the target latency
+            interval = targetLatency;
+        } else {
+            // heavy traffic, the full batches are flushed by the size, but do not flush more often than they can be uploaded
+            interval = Math.max(minInterval, Math.min(maxInterval, Math.max(fillTime, (long) (latencyMillis * NANOS_PER_MILLI))));
+        }
+
+        this.batchSize = size;
+        this.intervalNanos = interval;
+    }
+
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            long total = enqueued.sum();
+
+            double elapsed = (now - lastTick) / NANOS_PER_SECOND;
+            if (elapsed > 0) {
+                double currentRate = (total - lastEnqueued) / elapsed;
+                enqueueRate = smooth(enqueueRate, currentRate);
+            }
+
+            lastTick = now;
+            lastEnqueued = total;
+
+            adapt(enqueueRate, uploadLatencyMillis, bytesPerMessage);
+
+            if (pending.get() > 0 && now - lastFlush >= intervalNanos) {
+                flush();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Exception adapting the flush of the Segment messages", e);
+        }
+    }
+
+    private void flush() {
+        lastFlushedCount = pending.getAndSet(0);
+        lastFlush = System.nanoTime();
+        flushScheduled.set(false);
+        analytics.get().flush();
+    }
+
+    private void recordUpload(long durationNanos, TypedOutput body) {
+        uploadLatencyMillis = smooth(uploadLatencyMillis, (double) durationNanos / NANOS_PER_MILLI);
+
+        int messages = lastFlushedCount;
+        if (body != null && body.length() > 0 && messages > 0) {
+            bytesPerMessage = smooth(bytesPerMessage, estimateMessageBytes(body.length(), messages));
+        }
+    }
+
+    static double estimateMessageBytes(long bodyBytes, int messages) {
+        // the envelope and the commas separating the messages would overestimate the small batches
+        return Math.max(1, (double) (bodyBytes - BATCH_ENVELOPE_BYTES - (messages - 1)) / messages);
+    }
+
+    private static double smooth(double current, double sample) {
+        if (current == 0) {
+            return sample;
+        }
+        return current + SMOOTHING * (sample - current);
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.groovy;
+
+import org.codehaus.groovy.transform.GroovyASTTransformationClass;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Compiles the closures passed to the {@link com.agorapulse.micronaut.segment.SegmentService} methods within the annotated class
+ * or method into the lambdas calling the builder directly.
+ *
+ * The calls such as <code>segmentService.track(userId, event) { properties('key', value) }</code> then call
+ * {@link com.agorapulse.micronaut.segment.SegmentService#track(String, String, java.util.function.Consumer)} without wrapping
+ * the closure and, combined with <code>@CompileStatic</code>, without the dynamic dispatch. The closures must only call
+ * the builder methods without the explicit receiver or on the closure parameter.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE, ElementType.METHOD, ElementType.CONSTRUCTOR})
+@GroovyASTTransformationClass("com.agorapulse.micronaut.segment.groovy.SegmentDslTransformation")
+public @interface SegmentDsl {
+}
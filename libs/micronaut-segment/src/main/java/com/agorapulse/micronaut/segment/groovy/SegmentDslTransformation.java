@@ -0,0 +1,289 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.groovy;
+
+import com.agorapulse.micronaut.segment.SegmentService;
+import com.agorapulse.micronaut.segment.builder.MessageBuilderWithProperties;
+import com.agorapulse.micronaut.segment.builder.MessageBuilderWithTraits;
+import com.agorapulse.micronaut.segment.builder.SimpleMessageBuilder;
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.AnnotatedNode;
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.GenericsType;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.Variable;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.CastExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.LambdaExpression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.TupleExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.classgen.VariableScopeVisitor;
+import org.codehaus.groovy.control.CompilePhase;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.transform.AbstractASTTransformation;
+import org.codehaus.groovy.transform.GroovyASTTransformation;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Rewrites the closures passed to the {@link com.agorapulse.micronaut.segment.SegmentService} methods into the lambdas cast to
+ * {@link Consumer} of the particular builder.
+ *
+ * @see SegmentDsl
+ */
+@GroovyASTTransformation(phase = CompilePhase.CANONICALIZATION)
+public class SegmentDslTransformation extends AbstractASTTransformation {
+
+    private static final String BUILDER = "$segmentBuilder";
+    private static final String IT = "it";
+
+    private static final ClassNode SEGMENT_SERVICE = ClassHelper.make(SegmentService.class);
+
+    private static final Map<String, DslMethod> METHODS = new HashMap<>();
+
+    static {
+        METHODS.put("alias", new DslMethod(3, SimpleMessageBuilder.class));
+        METHODS.put("group", new DslMethod(3, MessageBuilderWithTraits.class));
+        METHODS.put("identify", new DslMethod(2, MessageBuilderWithTraits.class));
+        METHODS.put("page", new DslMethod(3, MessageBuilderWithProperties.class));
+        METHODS.put("screen", new DslMethod(3, MessageBuilderWithProperties.class));
+        METHODS.put("track", new DslMethod(3, MessageBuilderWithProperties.class));
+    }
+
+    @Override
+    public void visit(ASTNode[] nodes, SourceUnit source) {
+        init(nodes, source);
+
+        AnnotatedNode parent = (AnnotatedNode) nodes[1];
+        ClassNode classNode = parent instanceof ClassNode ? (ClassNode) parent : parent.getDeclaringClass();
+
+        CallTransformer transformer = new CallTransformer(source);
+        if (parent instanceof MethodNode) {
+            transformer.visitMethod((MethodNode) parent);
+        } else {
+            transformer.visitClass(classNode);
+        }
+
+        if (transformer.changed) {
+            // the lambda parameters must be resolved again
+            new VariableScopeVisitor(source, true).visitClass(classNode);
+        }
+    }
+
+    private static final class DslMethod {
+
+        private final int arguments;
+        private final ClassNode builderType;
+        private final Set<String> builderMethods = new HashSet<>();
+
+        DslMethod(int arguments, Class<?> builderType) {
+            this.arguments = arguments;
+            this.builderType = ClassHelper.make(builderType);
+            for (Method method : builderType.getMethods()) {
+                builderMethods.add(method.getName());
+            }
+        }
+
+    }
+
+    private static final class CallTransformer extends ClassCodeExpressionTransformer {
+
+        private final SourceUnit source;
+        private boolean changed;
+
+        CallTransformer(SourceUnit source) {
+            this.source = source;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return source;
+        }
+
+        @Override
+        public Expression transform(Expression expression) {
+            if (expression instanceof ClosureExpression) {
+                ClosureExpression closure = (ClosureExpression) expression;
+                closure.getCode().visit(this);
+                return closure;
+            }
+
+            Expression transformed = super.transform(expression);
+
+            if (!(transformed instanceof MethodCallExpression)) {
+                return transformed;
+            }
+
+            MethodCallExpression call = (MethodCallExpression) transformed;
+            DslMethod method = METHODS.get(call.getMethodAsString());
+
+            if (method == null || call.isImplicitThis() || !(call.getArguments() instanceof TupleExpression) || !isSegmentService(call.getObjectExpression())) {
+                return call;
+            }
+
+            List<Expression> arguments = ((TupleExpression) call.getArguments()).getExpressions();
+            if (arguments.size() != method.arguments || !(arguments.get(arguments.size() - 1) instanceof ClosureExpression)) {
+                return call;
+            }
+
+            ClosureExpression closure = (ClosureExpression) arguments.get(arguments.size() - 1);
+            Parameter[] parameters = closure.getParameters();
+            if (parameters != null && parameters.length > 1) {
+                return call;
+            }
+
+            List<Expression> newArguments = new ArrayList<>(arguments.subList(0, arguments.size() - 1));
+            newArguments.add(lambda(closure, method));
+
+            MethodCallExpression newCall = new MethodCallExpression(call.getObjectExpression(), call.getMethod(), new ArgumentListExpression(newArguments));
+            newCall.setSafe(call.isSafe());
+            newCall.setSpreadSafe(call.isSpreadSafe());
+            newCall.setImplicitThis(false);
+            newCall.setSourcePosition(call);
+
+            changed = true;
+
+            return newCall;
+        }
+
+        /**
+         * @return <code>false</code> only if the receiver is statically typed as something else than the segment service,
+         *          the receivers whose type is not known at this phase, such as the properties, are still transformed
+         */
+        private static boolean isSegmentService(Expression receiver) {
+            ClassNode type = receiver.getType();
+            if (receiver instanceof VariableExpression) {
+                Variable variable = ((VariableExpression) receiver).getAccessedVariable();
+                if (variable != null) {
+                    type = variable.getOriginType();
+                }
+            }
+            if (type == null || ClassHelper.isDynamicTyped(type) || ClassHelper.OBJECT_TYPE.equals(type)) {
+                return true;
+            }
+            return type.equals(SEGMENT_SERVICE) || type.implementsInterface(SEGMENT_SERVICE);
+        }
+
+        private Expression lambda(ClosureExpression closure, DslMethod method) {
+            boolean implicit = closure.getParameters() == null || closure.getParameters().length == 0;
+            String name = implicit ? BUILDER : closure.getParameters()[0].getName();
+
+            Parameter parameter = new Parameter(method.builderType.getPlainNodeReference(), name);
+
+            new BuilderCallTransformer(source, method, name, implicit).transformCode(closure);
+
+            LambdaExpression lambda = new LambdaExpression(new Parameter[] {parameter}, closure.getCode());
+            lambda.setVariableScope(closure.getVariableScope());
+            lambda.setSourcePosition(closure);
+
+            ClassNode consumer = ClassHelper.make(Consumer.class).getPlainNodeReference();
+            consumer.setGenericsTypes(new GenericsType[] {new GenericsType(method.builderType.getPlainNodeReference())});
+
+            CastExpression cast = new CastExpression(consumer, lambda);
+            cast.setSourcePosition(closure);
+            return cast;
+        }
+
+    }
+
+    /**
+     * Points the calls of the builder methods without the receiver and the references to the implicit parameter to the lambda parameter.
+     */
+    private static final class BuilderCallTransformer extends ClassCodeExpressionTransformer {
+
+        private final SourceUnit source;
+        private final DslMethod method;
+        private final String name;
+        private final boolean implicit;
+
+        BuilderCallTransformer(SourceUnit source, DslMethod method, String name, boolean implicit) {
+            this.source = source;
+            this.method = method;
+            this.name = name;
+            this.implicit = implicit;
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return source;
+        }
+
+        void transformCode(ClosureExpression closure) {
+            closure.getCode().visit(this);
+        }
+
+        @Override
+        public Expression transform(Expression expression) {
+            if (expression instanceof ClosureExpression) {
+                // nested closures keep their own implicit parameter
+                ClosureExpression nested = (ClosureExpression) expression;
+                boolean shadowed = nested.getParameters() == null || nested.getParameters().length == 0 || hasParameter(nested, IT);
+                if (!shadowed || !implicit) {
+                    nested.getCode().visit(this);
+                } else {
+                    nested.getCode().visit(new BuilderCallTransformer(source, method, name, false));
+                }
+                return nested;
+            }
+
+            if (implicit && expression instanceof VariableExpression && IT.equals(((VariableExpression) expression).getName())) {
+                VariableExpression variable = new VariableExpression(name);
+                variable.setSourcePosition(expression);
+                return variable;
+            }
+
+            Expression transformed = super.transform(expression);
+
+            if (transformed instanceof MethodCallExpression) {
+                MethodCallExpression call = (MethodCallExpression) transformed;
+                if (call.isImplicitThis() && method.builderMethods.contains(call.getMethodAsString())) {
+                    MethodCallExpression builderCall = new MethodCallExpression(new VariableExpression(name), call.getMethod(), call.getArguments());
+                    builderCall.setImplicitThis(false);
+                    builderCall.setSourcePosition(call);
+                    return builderCall;
+                }
+            }
+
+            return transformed;
+        }
+
+        private static boolean hasParameter(ClosureExpression closure, String parameter) {
+            for (Parameter p : closure.getParameters()) {
+                if (parameter.equals(p.getName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.health;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.SegmentStatistics;
+import com.agorapulse.micronaut.segment.client.ResilientClientDecorator;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.health.HealthStatus;
+import io.micronaut.management.health.indicator.AbstractHealthIndicator;
+import io.micronaut.management.health.indicator.HealthIndicator;
+import io.micronaut.management.health.indicator.annotation.Readiness;
+import jakarta.inject.Singleton;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports whether the upload pipeline keeps up with the enqueued messages.
+ *
+ * The service is reported as not ready only when the oldest message in flight is waiting for the upload longer than
+ * <code>segment.health.max-lag</code>.
+ */
+@Singleton
+@Readiness
+@Requires(classes = HealthIndicator.class)
+@Requires(beans = SegmentConfiguration.class)
+@Requires(property = "segment.health.enabled", notEquals = StringUtils.FALSE)
+public class SegmentHealthIndicator extends AbstractHealthIndicator<Map<String, Object>> {
+
+    private static final String NAME = "segment";
+
+    private final SegmentStatistics statistics;
+    private final SegmentConfiguration.HealthConfiguration configuration;
+    private final ResilientClientDecorator resilientClientDecorator;
+
+    public SegmentHealthIndicator(
+        SegmentConfiguration configuration,
+        SegmentStatistics statistics,
+        @Nullable ResilientClientDecorator resilientClientDecorator
+    ) {
+        this.configuration = configuration.getHealth();
+        this.statistics = statistics;
+        this.resilientClientDecorator = resilientClientDecorator;
+    }
+
+    @Override
+    protected Map<String, Object> getHealthInformation() {
+        long lagMillis = statistics.getLagMillis();
+
+        healthStatus = lagMillis > configuration.getMaxLag().toMillis() ? HealthStatus.DOWN : HealthStatus.UP;
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("inFlight", statistics.getInFlight());
+        details.put("lagMillis", lagMillis);
+
+        long lastSuccessAt = statistics.getLastSuccessAt();
+        if (lastSuccessAt > 0) {
+            details.put("lastSuccess", Instant.ofEpochMilli(lastSuccessAt).toString());
+            details.put("millisSinceLastSuccess", System.currentTimeMillis() - lastSuccessAt);
+        }
+
+        long lastUploadMillis = statistics.getLastUploadMillis();
+        if (lastUploadMillis >= 0) {
+            details.put("lastUploadMillis", lastUploadMillis);
+        }
+
+        details.put("consecutiveFailures", statistics.getConsecutiveFailures());
+        details.put("circuitOpen", resilientClientDecorator != null && resilientClientDecorator.getCircuitBreaker().isOpen());
+
+        return details;
+    }
+
+    @Override
+    protected String getName() {
+        return NAME;
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.http;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.SegmentService;
+import com.agorapulse.micronaut.segment.builder.MessageBuilderWithProperties;
+import com.agorapulse.micronaut.segment.util.MessageClock;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.PathMatcher;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.http.BasicHttpAttributes;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.annotation.ResponseFilter;
+import io.micronaut.http.annotation.ServerFilter;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.Principal;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the handled HTTP requests as page or screen messages named after the route template.
+ *
+ * The filter only captures the values needed for the message when the response is ready. The message is built
+ * and enqueued on a background thread so the tracking does not delay the response. The requests which do not match
+ * any route or which are not associated with any user are not tracked.
+ */
+@ServerFilter(ServerFilter.MATCH_ALL_PATTERN)
+@Requires(classes = ServerFilter.class)
+@Requires(beans = SegmentConfiguration.class)
+@Requires(property = "segment.page-tracking.enabled", value = StringUtils.TRUE)
+public class PageTrackingFilter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageTrackingFilter.class);
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final SegmentService segmentService;
+    private final SegmentConfiguration.PageTrackingConfiguration configuration;
+    private final MessageClock clock;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder dropped = new LongAdder();
+
+    public PageTrackingFilter(
+        SegmentService segmentService,
+        SegmentConfiguration configuration,
+        MessageClock clock,
+        @Named("segment") ThreadFactory threadFactory
+    ) {
+        this.segmentService = segmentService;
+        this.configuration = configuration.getPageTracking();
+        this.clock = clock;
+        this.executor = new ThreadPoolExecutor(
+            1,
+            1,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, this.configuration.getQueueCapacity())),
+            threadFactory,
+            (task, executor) -> dropped.increment()
+        );
+    }
+
+    @ResponseFilter
+    public void trackRequest(HttpRequest<?> request, HttpResponse<?> response) {
+        Optional<String> template = BasicHttpAttributes.getUriTemplate(request);
+        if (!template.isPresent() || isExcluded(template.get())) {
+            return;
+        }
+
+        String userId = userId(request);
+        String anonymousId = configuration.getAnonymousIdHeader() == null ? null : request.getHeaders().get(configuration.getAnonymousIdHeader());
+        if (StringUtils.isEmpty(userId) && StringUtils.isEmpty(anonymousId)) {
+            return;
+        }
+
+        // only the raw values are captured here, the conversion happens on the background thread
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("method", request.getMethodName());
+        properties.put("status", response.code());
+        for (String attribute : configuration.getAttributes()) {
+            request.getAttribute(attribute).ifPresent(value -> properties.put(attribute, value));
+        }
+
+        Date timestamp = new Date(clock.currentTimeMillis());
+        String name = template.get();
+
+        executor.execute(() -> track(userId, anonymousId, name, properties, timestamp));
+    }
+
+    /**
+     * @return the number of the requests which were not tracked because the queue was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("{} requests were not tracked before the shutdown", executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void track(String userId, String anonymousId, String name, Map<String, Object> properties, Date timestamp) {
+        Consumer<MessageBuilderWithProperties> builder = b -> {
+            if (anonymousId != null) {
+                b.anonymousId(anonymousId);
+            }
+            b.properties(properties).timestamp(timestamp);
+        };
+
+        try {
+            if (configuration.getType() == PageTrackingType.SCREEN) {
+                segmentService.screen(userId, name, builder);
+            } else {
+                segmentService.page(userId, name, builder);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Exception tracking the request to {}", name, e);
+        }
+    }
+
+    private String userId(HttpRequest<?> request) {
+        if (configuration.getUserIdAttribute() != null) {
+            return request.getAttribute(configuration.getUserIdAttribute()).map(Object::toString).orElse(null);
+        }
+        return request.getUserPrincipal().map(Principal::getName).orElse(null);
+    }
+
+    private boolean isExcluded(String template) {
+        List<String> excludes = configuration.getExcludes();
+        for (String exclude : excludes) {
+            if (PathMatcher.ANT.matches(exclude, template)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.http;
+
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.propagation.PropagatedContext;
+import io.micronaut.core.propagation.PropagatedContextElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Collects the messages sent while handling a single HTTP request so they are enqueued together by a single background
+ * task once the response is ready.
+ *
+ * The buffer is available in the propagated context so it also collects the messages sent from the reactive handlers
+ * running on other threads. The messages sent after the buffer is flushed or above the limit are enqueued immediately.
+ */
+public final class SegmentRequestBuffer implements PropagatedContextElement {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentRequestBuffer.class);
+
+    private final int maxMessages;
+    private final List<Runnable> messages = new ArrayList<>();
+
+    private boolean flushed;
+
+    public SegmentRequestBuffer(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * @return the buffer of the current request or <code>null</code> if there is none
+     */
+    public static @Nullable SegmentRequestBuffer current() {
+        return PropagatedContext.getOrEmpty().find(SegmentRequestBuffer.class).orElse(null);
+    }
+
+    /**
+     * @param message the action enqueueing the message
+     * @return <code>true</code> if the message was buffered, <code>false</code> if it must be enqueued immediately
+     */
+    public synchronized boolean add(Runnable message) {
+        if (flushed || messages.size() >= maxMessages) {
+            return false;
+        }
+        messages.add(message);
+        return true;
+    }
+
+    /**
+     * Enqueues all the buffered messages in the order they were sent in the calling thread.
+     */
+    public void flush() {
+        flush(Runnable::run);
+    }
+
+    /**
+     * Hands all the buffered messages over to the executor as a single task which enqueues them in the order they were sent.
+     *
+     * The messages are dropped if the executor rejects the task so they are never enqueued on the response thread.
+     *
+     * @param executor the executor of the task
+     * @return the number of the messages dropped because the executor rejected the task
+     */
+    public int flush(Executor executor) {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (flushed) {
+                return 0;
+            }
+            flushed = true;
+            if (messages.isEmpty()) {
+                return 0;
+            }
+            pending = new ArrayList<>(messages);
+            messages.clear();
+        }
+
+        try {
+            executor.execute(() -> enqueue(pending));
+            return 0;
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Dropping {} buffered messages, the task was rejected", pending.size(), e);
+            return pending.size();
+        }
+    }
+
+    private static void enqueue(List<Runnable> pending) {
+        for (Runnable message : pending) {
+            try {
+                message.run();
+            } catch (RuntimeException e) {
+                // one failing message must not prevent enqueueing the others
+                LOGGER.warn("Exception enqueueing the buffered message", e);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return messages.size();
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.http;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.propagation.MutablePropagatedContext;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.annotation.RequestFilter;
+import io.micronaut.http.annotation.ResponseFilter;
+import io.micronaut.http.annotation.ServerFilter;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buffers the messages sent while handling the HTTP request and enqueues them once the response is ready
+ * or the request fails.
+ *
+ * The buffer of each request is handed over to a background thread as a single task so neither the request thread
+ * nor the event loop run the message interceptors. The messages are dropped and counted if the tasks of too many
+ * requests are waiting.
+ */
+@ServerFilter(ServerFilter.MATCH_ALL_PATTERN)
+@Requires(classes = ServerFilter.class)
+@Requires(beans = SegmentConfiguration.class)
+@Requires(property = "segment.request-buffer.enabled", value = StringUtils.TRUE)
+public class SegmentRequestBufferFilter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentRequestBufferFilter.class);
+
+    private static final String BUFFER_ATTRIBUTE = SegmentRequestBuffer.class.getName();
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final int maxMessages;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder dropped = new LongAdder();
+
+    public SegmentRequestBufferFilter(SegmentConfiguration configuration, @Named("segment") ThreadFactory threadFactory) {
+        this.maxMessages = configuration.getRequestBuffer().getMaxMessages();
+        this.executor = new ThreadPoolExecutor(
+            1,
+            1,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            threadFactory
+        );
+    }
+
+    @RequestFilter
+    public void startBuffering(HttpRequest<?> request, MutablePropagatedContext context) {
+        SegmentRequestBuffer buffer = new SegmentRequestBuffer(maxMessages);
+        request.setAttribute(BUFFER_ATTRIBUTE, buffer);
+        context.add(buffer);
+    }
+
+    // the failure is declared so the filter is also called when the request fails
+    @ResponseFilter
+    public void flushBuffer(HttpRequest<?> request, @Nullable Throwable failure) {
+        request.getAttribute(BUFFER_ATTRIBUTE, SegmentRequestBuffer.class).ifPresent(buffer -> dropped.add(buffer.flush(executor)));
+    }
+
+    /**
+     * @return the number of the messages dropped because the tasks of too many requests were waiting
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("Messages of {} requests were not enqueued before the shutdown", executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
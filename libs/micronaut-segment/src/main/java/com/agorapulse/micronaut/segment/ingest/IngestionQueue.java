@@ -0,0 +1,198 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.ingest;
+
+import com.segment.analytics.Analytics;
+import com.segment.analytics.messages.MessageBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Striped lock-free ingestion layer in front of {@link Analytics#enqueue(MessageBuilder)}.
+ *
+ * The calling threads publish the messages into the ring buffer selected by the thread ID so they rarely compete with each other.
+ * A single drainer thread moves the messages into the library queue. When the ring buffer is full or the queue has been closed,
+ * the calling thread drains the ring buffers itself and enqueues the message directly, so no message is ever dropped or reordered.
+ *
+ * The drainer parks without a timeout once all the ring buffers are empty and the calling threads only unpark it
+ * when they see it parked, so an idle queue does not wake up at all.
+ *
+ * The message transformers and interceptors run on the drainer thread.
+ */
+public class IngestionQueue implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestionQueue.class);
+
+    private static final int SPINS = 64;
+    private static final long BUSY_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long JOIN_MILLIS = 1000;
+
+    private final Analytics analytics;
+    private final Consumer<MessageBuilder<?, ?>> enqueue;
+    private final RingBuffer<MessageBuilder<?, ?>>[] stripes;
+    private final int stripeMask;
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Thread drainer;
+
+    private volatile boolean closed;
+    private volatile boolean parked;
+
+    @SuppressWarnings("unchecked")
+    public IngestionQueue(Analytics analytics, int stripes, int capacity, ThreadFactory threadFactory) {
+        this.analytics = analytics;
+        this.enqueue = analytics::enqueue;
+
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new RingBuffer[size];
+        this.stripeMask = size - 1;
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new RingBuffer<>(capacity);
+        }
+
+        this.drainer = threadFactory.newThread(this::run);
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * @param message the message to be enqueued
+     */
+    public void offer(MessageBuilder<?, ?> message) {
+        if (!closed && stripes[stripe()].offer(message)) {
+            // the flag is read after the message is published, the drainer sets it before checking the stripes
+            if (parked) {
+                LockSupport.unpark(drainer);
+            }
+        } else {
+            // the messages published earlier must be enqueued first to keep the order
+            drainLock.lock();
+            try {
+                drainStripes();
+                analytics.enqueue(message);
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Moves all the pending messages into the library queue.
+     */
+    public void drain() {
+        drainLock.lock();
+        try {
+            drainStripes();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        drainer.interrupt();
+        try {
+            drainer.join(JOIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    private void run() {
+        int idle = 0;
+
+        while (!closed) {
+            int drained = 0;
+            if (!drainLock.tryLock()) {
+                // another thread is draining the stripes
+                LockSupport.parkNanos(this, BUSY_PARK_NANOS);
+                continue;
+            }
+            try {
+                drained = drainStripes();
+            } catch (RuntimeException e) {
+                LOGGER.error("Exception moving the messages into the Segment queue", e);
+            } finally {
+                drainLock.unlock();
+            }
+
+            if (drained > 0) {
+                idle = 0;
+            } else if (++idle < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                idle = 0;
+                parkUntilOffered();
+            }
+        }
+    }
+
+    private void parkUntilOffered() {
+        parked = true;
+        try {
+            if (isEmpty() && !closed) {
+                // woken up by the first message published while parked or by close
+                LockSupport.park(this);
+            }
+        } finally {
+            parked = false;
+        }
+    }
+
+    private boolean isEmpty() {
+        // the head of the stripes is only stable while holding the drain lock
+        if (!drainLock.tryLock()) {
+            return false;
+        }
+        try {
+            for (RingBuffer<MessageBuilder<?, ?>> stripe : stripes) {
+                if (!stripe.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private int drainStripes() {
+        int drained = 0;
+        for (RingBuffer<MessageBuilder<?, ?>> stripe : stripes) {
+            drained += stripe.drain(enqueue);
+        }
+        return drained;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().threadId();
+        return (int) ((id ^ (id >>> 16)) * 0x9E3779B97F4A7C15L >>> 32) & stripeMask;
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.interceptor;
+
+import com.agorapulse.micronaut.segment.SegmentService;
+import io.micronaut.aop.MethodInterceptor;
+import io.micronaut.aop.MethodInvocationContext;
+import io.micronaut.inject.ExecutableMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base class for the interceptors sending the messages after the method returns.
+ *
+ * @param <P> the type of the plan compiled for each intercepted method
+ */
+abstract class AbstractSegmentInterceptor<P> implements MethodInterceptor<Object, Object> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractSegmentInterceptor.class);
+
+    // the methods whose annotations cannot be compiled are cached as empty so the error is only logged once
+    private final Map<ExecutableMethod<?, ?>, Optional<P>> plans = new ConcurrentHashMap<>();
+
+    protected final SegmentService segmentService;
+
+    protected AbstractSegmentInterceptor(SegmentService segmentService) {
+        this.segmentService = segmentService;
+    }
+
+    @Override
+    public Object intercept(MethodInvocationContext<Object, Object> context) {
+        Optional<P> compiled = plans.computeIfAbsent(context.getExecutableMethod(), method -> safelyCompile(context));
+        if (!compiled.isPresent()) {
+            return context.proceed();
+        }
+
+        P plan = compiled.get();
+        Object result = context.proceed();
+        Object[] parameters = context.getParameterValues();
+
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, error) -> {
+                if (error == null) {
+                    safelySend(plan, parameters, value);
+                }
+            });
+            return result;
+        }
+
+        safelySend(plan, parameters, result);
+
+        return result;
+    }
+
+    protected abstract P compile(MethodInvocationContext<Object, Object> context);
+
+    protected abstract void send(P plan, Object[] parameters, Object result);
+
+    private Optional<P> safelyCompile(MethodInvocationContext<Object, Object> context) {
+        try {
+            return Optional.of(compile(context));
+        } catch (RuntimeException e) {
+            // tracking must never break the intercepted method
+            LOGGER.error("Method {} will not be tracked because its Segment annotation is invalid", context.getExecutableMethod(), e);
+            return Optional.empty();
+        }
+    }
+
+    private void safelySend(P plan, Object[] parameters, Object result) {
+        try {
+            send(plan, parameters, result);
+        } catch (RuntimeException e) {
+            // tracking must never break the intercepted method
+            LOGGER.warn("Exception sending the message to Segment", e);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.interceptor;
+
+import com.agorapulse.micronaut.segment.builder.MessageBuilder;
+import io.micronaut.core.type.Argument;
+import io.micronaut.core.util.StringUtils;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Compiled accessors for a single intercepted method.
+ */
+final class MessagePlan {
+
+    private final String name;
+    private final ValueAccessor userId;
+    private final ValueAccessor anonymousId;
+    private final ValueAccessor[] values;
+
+    private MessagePlan(String name, ValueAccessor userId, ValueAccessor anonymousId, ValueAccessor[] values) {
+        this.name = name;
+        this.userId = userId;
+        this.anonymousId = anonymousId;
+        this.values = values;
+    }
+
+    static MessagePlan compile(String name, String userId, String anonymousId, String[] values, Argument<?>[] arguments) {
+        if (StringUtils.isEmpty(userId) && StringUtils.isEmpty(anonymousId)) {
+            throw new IllegalArgumentException("Either userId or anonymousId must be specified for the Segment annotation");
+        }
+
+        ValueAccessor[] accessors = new ValueAccessor[values.length];
+        for (int i = 0; i < values.length; i++) {
+            accessors[i] = ValueAccessor.compile(values[i], arguments);
+        }
+
+        return new MessagePlan(
+            name,
+            StringUtils.isEmpty(userId) ? null : ValueAccessor.compile(userId, arguments),
+            StringUtils.isEmpty(anonymousId) ? null : ValueAccessor.compile(anonymousId, arguments),
+            accessors
+        );
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String readUserId(Object[] parameters, Object result) {
+        return userId == null ? null : toString(userId.read(parameters, result));
+    }
+
+    void apply(MessageBuilder<?> builder, Object[] parameters, Object result, BiConsumer<String, Object> valueConsumer) {
+        if (anonymousId != null) {
+            builder.anonymousId(toString(anonymousId.read(parameters, result)));
+        }
+        for (ValueAccessor accessor : values) {
+            valueConsumer.accept(accessor.getKey(), accessor.read(parameters, result));
+        }
+    }
+
+    private static String toString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+}
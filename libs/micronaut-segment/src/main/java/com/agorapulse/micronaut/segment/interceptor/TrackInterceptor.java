@@ -0,0 +1,53 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.interceptor;
+
+import com.agorapulse.micronaut.segment.SegmentService;
+import com.agorapulse.micronaut.segment.annotation.Track;
+import io.micronaut.aop.InterceptorBean;
+import io.micronaut.aop.MethodInvocationContext;
+import jakarta.inject.Singleton;
+
+/**
+ * Tracks the events for methods annotated with {@link Track}.
+ */
+@Singleton
+@InterceptorBean(Track.class)
+public class TrackInterceptor extends AbstractSegmentInterceptor<MessagePlan> {
+
+    public TrackInterceptor(SegmentService segmentService) {
+        super(segmentService);
+    }
+
+    @Override
+    protected MessagePlan compile(MethodInvocationContext<Object, Object> context) {
+        return MessagePlan.compile(
+            context.stringValue(Track.class).orElseThrow(() -> new IllegalArgumentException("Event name is required for @Track annotation")),
+            context.stringValue(Track.class, "userId").orElse(null),
+            context.stringValue(Track.class, "anonymousId").orElse(null),
+            context.stringValues(Track.class, "properties"),
+            context.getArguments()
+        );
+    }
+
+    @Override
+    protected void send(MessagePlan plan, Object[] parameters, Object result) {
+        segmentService.track(plan.readUserId(parameters, result), plan.getName(), b -> plan.apply(b, parameters, result, b::properties));
+    }
+
+}
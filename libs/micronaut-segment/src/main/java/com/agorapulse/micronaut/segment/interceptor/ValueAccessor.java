@@ -0,0 +1,144 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.interceptor;
+
+import io.micronaut.core.beans.BeanIntrospection;
+import io.micronaut.core.beans.BeanIntrospector;
+import io.micronaut.core.beans.BeanProperty;
+import io.micronaut.core.type.Argument;
+
+import java.util.Optional;
+
+/**
+ * Reads a value from the method arguments or the result using the compile-time bean introspection.
+ */
+final class ValueAccessor {
+
+    static final String RESULT = "result";
+
+    private static final int RESULT_INDEX = -1;
+
+    private final String key;
+    private final int index;
+    private final PropertyReader[] readers;
+
+    private ValueAccessor(String key, int index, PropertyReader[] readers) {
+        this.key = key;
+        this.index = index;
+        this.readers = readers;
+    }
+
+    static ValueAccessor compile(String expression, Argument<?>[] arguments) {
+        String key = expression;
+        String path = expression;
+
+        int equals = expression.indexOf('=');
+        if (equals > 0) {
+            key = expression.substring(0, equals).trim();
+            path = expression.substring(equals + 1).trim();
+        }
+
+        String[] segments = path.split("\\.");
+
+        if (equals < 0) {
+            key = segments[segments.length - 1];
+        }
+
+        int index = RESULT_INDEX;
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i].getName().equals(segments[0])) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == RESULT_INDEX && !RESULT.equals(segments[0])) {
+            throw new IllegalArgumentException("There is no argument named '" + segments[0] + "' available for path '" + path + "'");
+        }
+
+        PropertyReader[] readers = new PropertyReader[segments.length - 1];
+        for (int i = 1; i < segments.length; i++) {
+            readers[i - 1] = new PropertyReader(segments[i]);
+        }
+
+        return new ValueAccessor(key, index, readers);
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    Object read(Object[] parameters, Object result) {
+        Object current = index == RESULT_INDEX ? result : parameters[index];
+        for (PropertyReader reader : readers) {
+            if (current == null) {
+                return null;
+            }
+            current = reader.read(current);
+        }
+        return current;
+    }
+
+    private static final class PropertyReader {
+
+        private final String name;
+
+        // single entry cache as the type is almost always the same for the given path
+        private volatile CachedProperty cached;
+
+        PropertyReader(String name) {
+            this.name = name;
+        }
+
+        Object read(Object bean) {
+            CachedProperty property = cached;
+            if (property == null || property.type != bean.getClass()) {
+                property = new CachedProperty(bean.getClass(), name);
+                cached = property;
+            }
+            return property.read(bean);
+        }
+
+    }
+
+    private static final class CachedProperty {
+
+        private final Class<?> type;
+        private final BeanProperty<Object, Object> property;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CachedProperty(Class<?> type, String name) {
+            this.type = type;
+
+            Optional<BeanIntrospection<Object>> introspection = BeanIntrospector.SHARED.findIntrospection((Class) type);
+            if (!introspection.isPresent()) {
+                throw new IllegalArgumentException("Type " + type.getName() + " is not introspected. Annotate it with @Introspected to read property '" + name + "'");
+            }
+
+            this.property = introspection.get().getProperty(name).orElseThrow(() ->
+                new IllegalArgumentException("Type " + type.getName() + " does not have property '" + name + "'")
+            );
+        }
+
+        Object read(Object bean) {
+            return property.get(bean);
+        }
+
+    }
+
+}
@@ -0,0 +1,421 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.plan;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Validator compiled from a subset of the JSON Schema.
+ *
+ * Supported keywords are <code>type</code>, <code>enum</code>, <code>const</code>, <code>minimum</code>,
+ * <code>maximum</code>, <code>exclusiveMinimum</code>, <code>exclusiveMaximum</code>, <code>minLength</code>,
+ * <code>maxLength</code>, <code>pattern</code>, <code>format</code> (<code>date-time</code> and <code>date</code>),
+ * <code>properties</code>, <code>required</code>, <code>additionalProperties</code>, <code>items</code>,
+ * <code>minItems</code> and <code>maxItems</code>. The other keywords such as <code>description</code> are ignored.
+ *
+ * Everything which can be prepared ahead such as the patterns, the enumerated values, the nested validators
+ * and the paths used in the descriptions of the violations is resolved during the compilation so the validation
+ * itself only walks the values. The list of the violations is only created once the first violation is found.
+ */
+final class SchemaValidator {
+
+    private static final int STRING = 1;
+    private static final int INTEGER = 1 << 1;
+    private static final int NUMBER = 1 << 2;
+    private static final int BOOLEAN = 1 << 3;
+    private static final int OBJECT = 1 << 4;
+    private static final int ARRAY = 1 << 5;
+    private static final int NULL = 1 << 6;
+
+    private static final int FORMAT_NONE = 0;
+    private static final int FORMAT_DATE = 1;
+    private static final int FORMAT_DATE_TIME = 2;
+
+    private static final int DATE_LENGTH = 10;
+    private static final int MAX_FRACTION_DIGITS = 9;
+
+    private static final String[] TYPE_NAMES = {"string", "integer", "number", "boolean", "object", "array", "null"};
+
+    private final String path;
+    private final int types;
+    private final Set<Object> allowed;
+    private final double minimum;
+    private final double maximum;
+    private final boolean exclusiveMinimum;
+    private final boolean exclusiveMaximum;
+    private final int minLength;
+    private final int maxLength;
+    private final Pattern pattern;
+    private final int format;
+    private final Map<String, SchemaValidator> properties;
+    private final String[] required;
+    private final boolean additionalAllowed;
+    private final SchemaValidator additional;
+    private final SchemaValidator items;
+    private final int minItems;
+    private final int maxItems;
+
+    private SchemaValidator(Map<?, ?> schema, String path) {
+        this.path = path;
+        this.types = types(schema.get("type"), path);
+        this.allowed = allowed(schema);
+        this.minimum = number(schema, "minimum", "exclusiveMinimum", Double.NEGATIVE_INFINITY, path);
+        this.maximum = number(schema, "maximum", "exclusiveMaximum", Double.POSITIVE_INFINITY, path);
+        this.exclusiveMinimum = exclusive(schema, "minimum", "exclusiveMinimum");
+        this.exclusiveMaximum = exclusive(schema, "maximum", "exclusiveMaximum");
+        this.minLength = integer(schema, "minLength", 0, path);
+        this.maxLength = integer(schema, "maxLength", Integer.MAX_VALUE, path);
+        this.pattern = schema.get("pattern") == null ? null : Pattern.compile(schema.get("pattern").toString());
+        this.format = format(schema.get("format"));
+        this.minItems = integer(schema, "minItems", 0, path);
+        this.maxItems = integer(schema, "maxItems", Integer.MAX_VALUE, path);
+
+        Map<String, SchemaValidator> nested = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : map(schema.get("properties"), path + ".properties").entrySet()) {
+            String key = entry.getKey().toString();
+            nested.put(key, compile(map(entry.getValue(), path + "." + key), path + "." + key));
+        }
+        this.properties = nested.isEmpty() ? Collections.emptyMap() : nested;
+
+        Object requiredKeys = schema.get("required");
+        if (requiredKeys != null && !(requiredKeys instanceof Collection)) {
+            throw new IllegalArgumentException("The value of 'required' at " + path + " must be a list");
+        }
+        this.required = requiredKeys == null ? new String[0] : ((Collection<?>) requiredKeys).stream().map(Object::toString).toArray(String[]::new);
+
+        Object additionalProperties = schema.get("additionalProperties");
+        if (additionalProperties instanceof Map) {
+            this.additionalAllowed = true;
+            this.additional = compile((Map<?, ?>) additionalProperties, path + ".*");
+        } else {
+            this.additionalAllowed = additionalProperties == null || Boolean.parseBoolean(additionalProperties.toString());
+            this.additional = null;
+        }
+
+        Object itemsSchema = schema.get("items");
+        this.items = itemsSchema == null ? null : compile(map(itemsSchema, path + "[]"), path + "[]");
+    }
+
+    /**
+     * @param schema the JSON Schema definition
+     * @param path the path used in the descriptions of the violations and in the messages about the invalid definition
+     * @return the compiled validator
+     * @throws IllegalArgumentException if the definition is not valid
+     */
+    static SchemaValidator compile(Map<?, ?> schema, String path) {
+        return new SchemaValidator(schema, path);
+    }
+
+    /**
+     * @param value the value to validate
+     * @param violations the violations found so far, may be <code>null</code>
+     * @return the violations found so far including the violations of this value, <code>null</code> if there are none
+     */
+    List<String> validate(Object value, List<String> violations) {
+        int actual = typeOf(value);
+
+        if (types != 0 && (types & actual) == 0) {
+            return violation(violations, path + " must be " + describe(types) + " but was " + describe(actual));
+        }
+
+        if (allowed != null && !allowed.contains(value instanceof Number ? ((Number) value).doubleValue() : value)) {
+            violations = violation(violations, path + " must be one of " + allowed + " but was " + value);
+        }
+
+        if ((actual & NUMBER) != 0) {
+            return validateNumber(((Number) value).doubleValue(), violations);
+        }
+        if (actual == STRING) {
+            return validateString(value.toString(), violations);
+        }
+        if (actual == OBJECT) {
+            return validateObject((Map<?, ?>) value, violations);
+        }
+        if (actual == ARRAY) {
+            return validateArray(value, violations);
+        }
+        return violations;
+    }
+
+    private List<String> validateNumber(double value, List<String> violations) {
+        if (exclusiveMinimum ? value <= minimum : value < minimum) {
+            violations = violation(violations, path + " must be " + (exclusiveMinimum ? "greater than " : "at least ") + minimum + " but was " + value);
+        }
+        if (exclusiveMaximum ? value >= maximum : value > maximum) {
+            violations = violation(violations, path + " must be " + (exclusiveMaximum ? "less than " : "at most ") + maximum + " but was " + value);
+        }
+        return violations;
+    }
+
+    private List<String> validateString(String value, List<String> violations) {
+        if (value.length() < minLength) {
+            violations = violation(violations, path + " must have at least " + minLength + " characters but had " + value.length());
+        }
+        if (value.length() > maxLength) {
+            violations = violation(violations, path + " must have at most " + maxLength + " characters but had " + value.length());
+        }
+        if (pattern != null && !pattern.matcher(value).find()) {
+            violations = violation(violations, path + " must match " + pattern.pattern() + " but was " + value);
+        }
+        if (format == FORMAT_DATE && !(value.length() == DATE_LENGTH && isDate(value)) || format == FORMAT_DATE_TIME && !isDateTime(value)) {
+            violations = violation(violations, path + " must be a valid date but was " + value);
+        }
+        return violations;
+    }
+
+    private List<String> validateObject(Map<?, ?> value, List<String> violations) {
+        for (String key : required) {
+            if (value.get(key) == null) {
+                violations = violation(violations, path + "." + key + " is required");
+            }
+        }
+
+        if (properties.isEmpty() && additionalAllowed && additional == null) {
+            return violations;
+        }
+
+        for (Map.Entry<?, ?> entry : value.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            SchemaValidator validator = properties.get(key);
+            if (validator == null) {
+                if (!additionalAllowed) {
+                    violations = violation(violations, path + "." + key + " is not allowed");
+                    continue;
+                }
+                validator = additional;
+            }
+            if (validator != null && entry.getValue() != null) {
+                violations = validator.validate(entry.getValue(), violations);
+            }
+        }
+        return violations;
+    }
+
+    private List<String> validateArray(Object value, List<String> violations) {
+        Collection<?> collection = value instanceof Collection ? (Collection<?>) value : Arrays.asList((Object[]) value);
+        if (collection.size() < minItems) {
+            violations = violation(violations, path + " must have at least " + minItems + " items but had " + collection.size());
+        }
+        if (collection.size() > maxItems) {
+            violations = violation(violations, path + " must have at most " + maxItems + " items but had " + collection.size());
+        }
+        if (items == null) {
+            return violations;
+        }
+        for (Object item : collection) {
+            violations = items.validate(item, violations);
+        }
+        return violations;
+    }
+
+    private static List<String> violation(List<String> violations, String violation) {
+        List<String> result = violations == null ? new ArrayList<>() : violations;
+        result.add(violation);
+        return result;
+    }
+
+    private static int typeOf(Object value) {
+        if (value == null) {
+            return NULL;
+        }
+        if (value instanceof String) {
+            return STRING;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte || value instanceof BigInteger) {
+            return INTEGER | NUMBER;
+        }
+        if (value instanceof Number) {
+            return isIntegral((Number) value) ? INTEGER | NUMBER : NUMBER;
+        }
+        if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        if (value instanceof Map) {
+            return OBJECT;
+        }
+        if (value instanceof Collection || value instanceof Object[]) {
+            return ARRAY;
+        }
+        // the other values are serialized as strings
+        return STRING;
+    }
+
+    private static boolean isIntegral(Number value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).stripTrailingZeros().scale() <= 0;
+        }
+        double number = value.doubleValue();
+        return !Double.isInfinite(number) && number == Math.rint(number);
+    }
+
+    private static String describe(int types) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            // integers are also numbers, the number type is enough to describe them
+            if ((types & (1 << i)) != 0 && !(i == 1 && (types & NUMBER) != 0)) {
+                if (description.length() > 0) {
+                    description.append(" or ");
+                }
+                description.append(TYPE_NAMES[i]);
+            }
+        }
+        return description.toString();
+    }
+
+    private static int types(Object type, String path) {
+        if (type == null) {
+            return 0;
+        }
+        int result = 0;
+        for (Object name : type instanceof Collection ? (Collection<?>) type : Collections.singletonList(type)) {
+            int index = Arrays.asList(TYPE_NAMES).indexOf(name.toString());
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown type '" + name + "' at " + path);
+            }
+            result |= 1 << index;
+        }
+        if ((result & NUMBER) != 0) {
+            // every integer is also a number
+            result |= INTEGER;
+        }
+        return result;
+    }
+
+    private static Set<Object> allowed(Map<?, ?> schema) {
+        Object values = schema.containsKey("const") ? Collections.singletonList(schema.get("const")) : schema.get("enum");
+        if (values == null) {
+            return null;
+        }
+        Set<Object> result = new LinkedHashSet<>();
+        for (Object value : values instanceof Collection ? (Collection<?>) values : Collections.singletonList(values)) {
+            // the numbers are compared by their value regardless of the type produced by the parser
+            result.add(value instanceof Number ? ((Number) value).doubleValue() : value);
+        }
+        return result;
+    }
+
+    private static double number(Map<?, ?> schema, String inclusive, String exclusive, double defaultValue, String path) {
+        Object value = schema.get(exclusive) instanceof Number ? schema.get(exclusive) : schema.get(inclusive);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("The value of '" + inclusive + "' at " + path + " must be a number");
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    private static boolean exclusive(Map<?, ?> schema, String inclusive, String exclusive) {
+        Object value = schema.get(exclusive);
+        // both the numeric form and the older boolean form of the exclusive limits are supported
+        return value instanceof Number || value != null && schema.get(inclusive) != null && Boolean.parseBoolean(value.toString());
+    }
+
+    private static int integer(Map<?, ?> schema, String keyword, int defaultValue, String path) {
+        Object value = schema.get(keyword);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("The value of '" + keyword + "' at " + path + " must be a number");
+        }
+        return ((Number) value).intValue();
+    }
+
+    private static int format(Object format) {
+        if ("date-time".equals(format)) {
+            return FORMAT_DATE_TIME;
+        }
+        if ("date".equals(format)) {
+            return FORMAT_DATE;
+        }
+        return FORMAT_NONE;
+    }
+
+    // only the shape of the ISO-8601 values produced by the value converter is checked, which is much cheaper than parsing them
+
+    private static boolean isDate(String value) {
+        // yyyy-MM-dd
+        return value.length() >= DATE_LENGTH && digits(value, 0, 4) && value.charAt(4) == '-' && digits(value, 5, 2) && value.charAt(7) == '-' && digits(value, 8, 2);
+    }
+
+    private static boolean isDateTime(String value) {
+        // yyyy-MM-ddTHH:mm[:ss[.SSSSSSSSS]](Z|+HH:mm|-HH:mm)
+        int length = value.length();
+        if (!isDate(value) || length < 17 || value.charAt(10) != 'T' || !digits(value, 11, 2) || value.charAt(13) != ':' || !digits(value, 14, 2)) {
+            return false;
+        }
+
+        int i = 16;
+        if (i < length && value.charAt(i) == ':') {
+            if (!digits(value, i + 1, 2)) {
+                return false;
+            }
+            i += 3;
+            if (i < length && value.charAt(i) == '.') {
+                int start = ++i;
+                while (i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+                    i++;
+                }
+                if (i == start || i - start > MAX_FRACTION_DIGITS) {
+                    return false;
+                }
+            }
+        }
+
+        if (i == length - 1) {
+            return value.charAt(i) == 'Z';
+        }
+        char sign = i < length ? value.charAt(i) : 0;
+        return i == length - 6 && (sign == '+' || sign == '-') && digits(value, i + 1, 2) && value.charAt(i + 3) == ':' && digits(value, i + 4, 2);
+    }
+
+    private static boolean digits(String value, int from, int count) {
+        if (value.length() < from + count) {
+            return false;
+        }
+        for (int i = from; i < from + count; i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<?, ?> map(Object value, String path) {
+        if (value == null) {
+            return Collections.emptyMap();
+        }
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("The definition at " + path + " must be an object");
+        }
+        return (Map<?, ?>) value;
+    }
+
+}
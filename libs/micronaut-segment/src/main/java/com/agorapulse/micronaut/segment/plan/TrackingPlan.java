@@ -0,0 +1,231 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.plan;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.micronaut.core.io.ResourceResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracking plan compiled into the validators of the properties and traits of the individual messages.
+ *
+ * The plan is a JSON or YAML document with the following optional sections, each containing a JSON Schema
+ * of the properties or traits:
+ * <ul>
+ *     <li><code>events</code> - the schemas of the track messages by the name of the event</li>
+ *     <li><code>pages</code> - the schemas of the page messages by the name of the page</li>
+ *     <li><code>screens</code> - the schemas of the screen messages by the name of the screen</li>
+ *     <li><code>identify</code> - the schema of the traits of the identify messages</li>
+ *     <li><code>group</code> - the schema of the traits of the group messages</li>
+ * </ul>
+ *
+ * See {@link SchemaValidator} for the supported subset of the JSON Schema.
+ */
+public class TrackingPlan {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrackingPlan.class);
+
+    private final Map<String, SchemaValidator> events;
+    private final Map<String, SchemaValidator> pages;
+    private final Map<String, SchemaValidator> screens;
+    private final SchemaValidator identify;
+    private final SchemaValidator group;
+    private final TrackingPlanPolicy policy;
+    private final boolean allowUnplanned;
+    private final LongAdder violated = new LongAdder();
+
+    /**
+     * @param definition the parsed tracking plan
+     * @param policy the policy applied to the messages violating the plan
+     * @param allowUnplanned whether the events, pages and screens missing in the plan are allowed
+     * @throws IllegalArgumentException if the plan is not valid
+     */
+    public TrackingPlan(Map<String, ?> definition, TrackingPlanPolicy policy, boolean allowUnplanned) {
+        this.events = compileAll(definition.get("events"), "events");
+        this.pages = compileAll(definition.get("pages"), "pages");
+        this.screens = compileAll(definition.get("screens"), "screens");
+        this.identify = compile(definition.get("identify"), "identify", "traits");
+        this.group = compile(definition.get("group"), "group", "traits");
+        this.policy = policy;
+        this.allowUnplanned = allowUnplanned;
+    }
+
+    /**
+     * Loads and compiles the tracking plan from the configured location.
+     *
+     * @param configuration the configuration of the tracking plan
+     * @param resolver the resolver of the location
+     * @return the compiled tracking plan
+     * @throws IllegalStateException if the plan does not exist or cannot be read
+     * @throws IllegalArgumentException if the plan is not valid
+     */
+    public static TrackingPlan load(SegmentConfiguration.TrackingPlanConfiguration configuration, ResourceResolver resolver) {
+        String location = configuration.getLocation();
+        InputStream stream = resolver.getResourceAsStream(location)
+            .orElseThrow(() -> new IllegalStateException("Tracking plan not found at " + location));
+
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            TrackingPlan plan = new TrackingPlan(parse(location, reader), configuration.getPolicy(), configuration.isAllowUnplanned());
+            LOGGER.info("Loaded tracking plan from {} with {} events, {} pages and {} screens", location, plan.events.size(), plan.pages.size(), plan.screens.size());
+            return plan;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Exception reading tracking plan from " + location, e);
+        }
+    }
+
+    /**
+     * @param location the location of the plan, the plans ending with <code>.yml</code> or <code>.yaml</code> are read as YAML
+     * @param reader the reader of the plan
+     * @return the parsed plan
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> parse(String location, Reader reader) {
+        Object parsed;
+        try {
+            // the YAML parser is available in every application configured with YAML files
+            parsed = location.endsWith(".yml") || location.endsWith(".yaml") ? new Yaml().load(reader) : new Gson().fromJson(reader, Map.class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Tracking plan at " + location + " is not a valid JSON", e);
+        }
+        if (!(parsed instanceof Map)) {
+            throw new IllegalArgumentException("Tracking plan at " + location + " must be an object");
+        }
+        return (Map<String, Object>) parsed;
+    }
+
+    /**
+     * @param type the type of the message, e.g. <code>track</code> or <code>identify</code>
+     * @param name the name of the event, page or screen, ignored for the other messages
+     * @param values the properties or traits of the message
+     * @return the descriptions of the violations, empty if the message follows the plan
+     */
+    public List<String> validate(String type, String name, Map<String, Object> values) {
+        switch (type) {
+            case "track":
+                return validate(events, "Event", name, values);
+            case "page":
+                return validate(pages, "Page", name, values);
+            case "screen":
+                return validate(screens, "Screen", name, values);
+            case "identify":
+                return validate(identify, values);
+            case "group":
+                return validate(group, values);
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Validates the message and applies the policy.
+     *
+     * @param type the type of the message, e.g. <code>track</code> or <code>identify</code>
+     * @param name the name of the event, page or screen, ignored for the other messages
+     * @param values the properties or traits of the message
+     * @return <code>true</code> if the message should be sent
+     * @throws TrackingPlanViolationException if the message violates the plan and the policy is {@link TrackingPlanPolicy#FAIL}
+     */
+    public boolean accept(String type, String name, Map<String, Object> values) {
+        List<String> violations = validate(type, name, values);
+        if (violations.isEmpty()) {
+            return true;
+        }
+
+        violated.increment();
+        String message = name == null ? type : type + " '" + name + "'";
+
+        switch (policy) {
+            case FAIL:
+                throw new TrackingPlanViolationException(type, name, violations);
+            case REJECT:
+                LOGGER.warn("Message {} violates the tracking plan and it will not be sent: {}", message, violations);
+                return false;
+            default:
+                LOGGER.warn("Message {} violates the tracking plan: {}", message, violations);
+                return true;
+        }
+    }
+
+    /**
+     * @return the number of the messages which violated the plan
+     */
+    public long getViolated() {
+        return violated.sum();
+    }
+
+    private List<String> validate(Map<String, SchemaValidator> validators, String kind, String name, Map<String, Object> values) {
+        SchemaValidator validator = validators.get(name);
+        if (validator == null && !allowUnplanned) {
+            return Collections.singletonList(kind + " '" + name + "' is not in the tracking plan");
+        }
+        return validate(validator, values);
+    }
+
+    private static List<String> validate(SchemaValidator validator, Map<String, Object> values) {
+        if (validator == null) {
+            return Collections.emptyList();
+        }
+        List<String> violations = validator.validate(values, null);
+        return violations == null ? Collections.emptyList() : violations;
+    }
+
+    private static Map<String, SchemaValidator> compileAll(Object definitions, String section) {
+        if (definitions == null) {
+            return Collections.emptyMap();
+        }
+        if (!(definitions instanceof Map)) {
+            throw new IllegalArgumentException("The section '" + section + "' of the tracking plan must be an object");
+        }
+        Map<String, SchemaValidator> validators = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) definitions).entrySet()) {
+            validators.put(entry.getKey().toString(), compile(entry.getValue(), section + "." + entry.getKey(), "properties"));
+        }
+        return validators;
+    }
+
+    private static SchemaValidator compile(Object definition, String section, String root) {
+        if (definition == null) {
+            return null;
+        }
+        if (!(definition instanceof Map)) {
+            throw new IllegalArgumentException("The definition of '" + section + "' in the tracking plan must be an object");
+        }
+        try {
+            return SchemaValidator.compile((Map<?, ?>) definition, root);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid definition of '" + section + "' in the tracking plan: " + e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.plan;
+
+import jakarta.validation.ValidationException;
+
+import java.util.List;
+
+/**
+ * Thrown by the segment service when the message violates the tracking plan and the policy is {@link TrackingPlanPolicy#FAIL}.
+ */
+public class TrackingPlanViolationException extends ValidationException {
+
+    private final String type;
+    private final String name;
+    private final List<String> violations;
+
+    public TrackingPlanViolationException(String type, String name, List<String> violations) {
+        super("Message " + type + (name == null ? "" : " '" + name + "'") + " violates the tracking plan: " + violations);
+        this.type = type;
+        this.name = name;
+        this.violations = List.copyOf(violations);
+    }
+
+    /**
+     * @return the type of the message, e.g. <code>track</code> or <code>identify</code>
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the name of the event, page or screen or <code>null</code> for the messages without the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the descriptions of the violations
+     */
+    public List<String> getViolations() {
+        return violations;
+    }
+
+}
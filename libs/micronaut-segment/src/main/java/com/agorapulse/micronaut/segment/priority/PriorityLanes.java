@@ -0,0 +1,292 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.priority;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.segment.analytics.Analytics;
+import com.segment.analytics.messages.MessageBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Separate queues for the messages of different priorities in front of {@link Analytics#enqueue(MessageBuilder)}.
+ *
+ * The library uploads the messages in the order they were enqueued so the important messages would wait behind a burst
+ * of the bulk traffic. The lanes only hand over the messages to the library while the number of the messages in flight
+ * is below the budget. The lanes are drained using the smooth weighted round-robin so the high priority messages go first
+ * while the lower priorities still make progress. When the lanes are full, the newest message of the lowest priority
+ * lane is shed to make room for the more important one.
+ *
+ * The message transformers and interceptors run on the dispatcher thread.
+ */
+public class PriorityLanes implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PriorityLanes.class);
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long JOIN_MILLIS = 1000;
+
+    private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+
+    private final Consumer<MessageBuilder<?, ?>> enqueue;
+    private final LongSupplier inFlight;
+    private final int maxInFlight;
+    private final int capacity;
+    private final Map<String, MessagePriority> types = new HashMap<>();
+    private final Map<String, MessagePriority> events = new HashMap<>();
+    private final ArrayDeque<MessageBuilder<?, ?>>[] lanes;
+    private final int[] weights;
+    private final int[] credits;
+    private final LongAdder[] dropped;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+    private final Thread dispatcher;
+
+    private int size;
+    private volatile boolean closed;
+
+    @SuppressWarnings("unchecked")
+    public PriorityLanes(
+        Consumer<MessageBuilder<?, ?>> enqueue,
+        LongSupplier inFlight,
+        SegmentConfiguration.PriorityConfiguration configuration,
+        ThreadFactory threadFactory
+    ) {
+        this.enqueue = enqueue;
+        this.inFlight = inFlight;
+        this.maxInFlight = Math.max(1, configuration.getMaxInFlight());
+        this.capacity = Math.max(1, configuration.getCapacity());
+
+        configuration.getLowTypes().forEach(type -> types.put(type, MessagePriority.LOW));
+        configuration.getHighTypes().forEach(type -> types.put(type, MessagePriority.HIGH));
+        configuration.getLowEvents().forEach(event -> events.put(event, MessagePriority.LOW));
+        configuration.getHighEvents().forEach(event -> events.put(event, MessagePriority.HIGH));
+
+        this.lanes = new ArrayDeque[PRIORITIES.length];
+        this.weights = new int[PRIORITIES.length];
+        this.credits = new int[PRIORITIES.length];
+        this.dropped = new LongAdder[PRIORITIES.length];
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+            dropped[i] = new LongAdder();
+        }
+
+        weights[MessagePriority.HIGH.ordinal()] = Math.max(1, configuration.getHighWeight());
+        weights[MessagePriority.NORMAL.ordinal()] = Math.max(1, configuration.getNormalWeight());
+        weights[MessagePriority.LOW.ordinal()] = Math.max(1, configuration.getLowWeight());
+
+        this.dispatcher = threadFactory.newThread(this::run);
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * The event name takes precedence over the message type.
+     *
+     * @param type the type of the message such as <code>track</code>
+     * @param name the name of the event, page or screen, may be <code>null</code>
+     * @return the priority of the message
+     */
+    public MessagePriority getPriority(String type, String name) {
+        if (name != null) {
+            MessagePriority priority = events.get(name);
+            if (priority != null) {
+                return priority;
+            }
+        }
+        return types.getOrDefault(type, MessagePriority.NORMAL);
+    }
+
+    /**
+     * @param priority the priority of the message
+     * @param message the message to be enqueued
+     * @return <code>false</code> if the message was dropped because the lanes are full of the more important messages
+     */
+    public boolean offer(MessagePriority priority, MessageBuilder<?, ?> message) {
+        if (closed) {
+            enqueue.accept(message);
+            return true;
+        }
+
+        boolean wasEmpty;
+        lock.lock();
+        try {
+            if (size >= capacity && !shed(priority)) {
+                dropped[priority.ordinal()].increment();
+                LOGGER.debug("Message with {} priority dropped as the lanes are full", priority);
+                return false;
+            }
+            lanes[priority.ordinal()].addLast(message);
+            wasEmpty = size++ == 0;
+        } finally {
+            lock.unlock();
+        }
+
+        if (wasEmpty) {
+            LockSupport.unpark(dispatcher);
+        }
+        return true;
+    }
+
+    /**
+     * Moves all the pending messages into the library queue regardless of the in-flight budget.
+     */
+    public void drain() {
+        deliveryLock.lock();
+        try {
+            MessageBuilder<?, ?> message;
+            while ((message = poll()) != null) {
+                deliver(message);
+            }
+        } finally {
+            deliveryLock.unlock();
+        }
+    }
+
+    /**
+     * @param priority the priority of the lane
+     * @return the number of the messages waiting in the lane
+     */
+    public int size(MessagePriority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority the priority of the lane
+     * @return the number of the messages of given priority which were shed or dropped
+     */
+    public long getDropped(MessagePriority priority) {
+        return dropped[priority.ordinal()].sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(JOIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    private void run() {
+        while (!closed) {
+            int delivered = 0;
+            if (deliveryLock.tryLock()) {
+                try {
+                    MessageBuilder<?, ?> message;
+                    while (!closed && inFlight.getAsLong() < maxInFlight && (message = poll()) != null) {
+                        deliver(message);
+                        delivered++;
+                    }
+                } finally {
+                    deliveryLock.unlock();
+                }
+            }
+
+            if (delivered == 0) {
+                if (isEmpty()) {
+                    // woken up by the first message offered to the empty lanes or by close
+                    LockSupport.park(this);
+                } else {
+                    // the in-flight budget is not signalled, it is checked periodically while the messages wait
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        lock.lock();
+        try {
+            return size == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deliver(MessageBuilder<?, ?> message) {
+        try {
+            enqueue.accept(message);
+        } catch (RuntimeException e) {
+            LOGGER.error("Exception moving the message into the Segment queue", e);
+        }
+    }
+
+    private MessageBuilder<?, ?> poll() {
+        lock.lock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+
+            int total = 0;
+            int selected = -1;
+            for (int i = 0; i < lanes.length; i++) {
+                if (lanes[i].isEmpty()) {
+                    // the idle lanes do not accumulate any credit
+                    credits[i] = 0;
+                    continue;
+                }
+                credits[i] += weights[i];
+                total += weights[i];
+                if (selected < 0 || credits[i] > credits[selected]) {
+                    selected = i;
+                }
+            }
+
+            credits[selected] -= total;
+            size--;
+            return lanes[selected].pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean shed(MessagePriority priority) {
+        for (int i = lanes.length - 1; i > priority.ordinal(); i--) {
+            if (!lanes[i].isEmpty()) {
+                lanes[i].pollLast();
+                dropped[i].increment();
+                size--;
+                LOGGER.debug("Message with {} priority shed in favour of the message with {} priority", PRIORITIES[i], priority);
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
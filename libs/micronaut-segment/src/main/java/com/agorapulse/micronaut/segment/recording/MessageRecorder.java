@@ -0,0 +1,97 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.recording;
+
+import com.segment.analytics.MessageInterceptor;
+import com.segment.analytics.messages.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recent messages in the fixed-size lock-free ring buffer.
+ *
+ * Recording the message only claims the next slot and overwrites the oldest message so the memory stays bounded
+ * regardless of the traffic. The snapshots are best effort, the messages recorded concurrently with taking
+ * the snapshot might not be included yet.
+ */
+public class MessageRecorder implements MessageInterceptor {
+
+    private final AtomicReferenceArray<Message> slots;
+    private final int capacity;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile long clearedAt;
+
+    public MessageRecorder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive but was " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public Message intercept(Message message) {
+        record(message);
+        return message;
+    }
+
+    public void record(Message message) {
+        long position = sequence.getAndIncrement();
+        slots.set((int) (position % capacity), message);
+    }
+
+    /**
+     * @return the recorded messages from the oldest to the most recent one
+     */
+    public List<Message> snapshot() {
+        long end = sequence.get();
+        long start = Math.max(clearedAt, end - capacity);
+
+        List<Message> messages = new ArrayList<>((int) Math.max(0, end - start));
+        for (long position = start; position < end; position++) {
+            Message message = slots.get((int) (position % capacity));
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Forgets all the messages recorded so far.
+     */
+    public void clear() {
+        clearedAt = sequence.get();
+    }
+
+    /**
+     * @return the number of all the messages recorded since the start, including the ones already overwritten
+     */
+    public long getRecordedCount() {
+        return sequence.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+}
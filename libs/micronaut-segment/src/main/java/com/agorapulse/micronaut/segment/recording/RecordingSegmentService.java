@@ -0,0 +1,190 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.recording;
+
+import com.agorapulse.micronaut.segment.SegmentService;
+import com.agorapulse.micronaut.segment.builder.MessageBuilderWithProperties;
+import com.agorapulse.micronaut.segment.builder.MessageBuilderWithTraits;
+import com.agorapulse.micronaut.segment.builder.SimpleMessageBuilder;
+import com.segment.analytics.messages.Message;
+import com.segment.analytics.messages.TrackMessage;
+import io.micronaut.core.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Segment service keeping the most recent messages in the memory so they can be inspected in the tests,
+ * load tests or canary deployments.
+ *
+ * The messages are built by the delegate the same way as the messages sent to Segment, including the tracking plan,
+ * the size limit, the coalescing and the rollup. When the API key is configured, the messages are recorded by the last
+ * message interceptor so the recorded messages are exactly the ones being uploaded, they are only dropped afterwards
+ * if the pass through is disabled. Without the API key, the delegate records the built messages directly without
+ * running the message transformers and interceptors.
+ */
+public class RecordingSegmentService implements SegmentService {
+
+    private final SegmentService delegate;
+    private final MessageRecorder recorder;
+    private final boolean passThrough;
+
+    /**
+     * @param delegate    the service building the messages which are recorded by the recorder
+     * @param recorder    the recorder holding the messages
+     * @param passThrough whether the delegate also sends the messages to Segment
+     */
+    public RecordingSegmentService(SegmentService delegate, MessageRecorder recorder, boolean passThrough) {
+        this.delegate = delegate;
+        this.recorder = recorder;
+        this.passThrough = passThrough;
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public void alias(String from, String to, Consumer<SimpleMessageBuilder> builder) {
+        delegate.alias(from, to, builder);
+    }
+
+    @Override
+    public void group(String userId, String groupId, Consumer<MessageBuilderWithTraits> builder) {
+        delegate.group(userId, groupId, builder);
+    }
+
+    @Override
+    public void identify(String userId, Consumer<MessageBuilderWithTraits> builder) {
+        delegate.identify(userId, builder);
+    }
+
+    @Override
+    public void page(String userId, String name, Consumer<MessageBuilderWithProperties> builder) {
+        delegate.page(userId, name, builder);
+    }
+
+    @Override
+    public void screen(String userId, String name, Consumer<MessageBuilderWithProperties> builder) {
+        delegate.screen(userId, name, builder);
+    }
+
+    @Override
+    public void track(String userId, String event, Consumer<MessageBuilderWithProperties> builder) {
+        delegate.track(userId, event, builder);
+    }
+
+    /**
+     * @return the recorded messages from the oldest to the most recent one
+     */
+    public List<Message> getMessages() {
+        return recorder.snapshot();
+    }
+
+    /**
+     * @param type the type of the messages
+     * @return the recorded messages of given type from the oldest to the most recent one
+     */
+    public List<Message> getMessages(Message.Type type) {
+        return find(message -> message.type() == type);
+    }
+
+    /**
+     * @param type the class of the messages, e.g. <code>IdentifyMessage</code>
+     * @return the recorded messages of given class from the oldest to the most recent one
+     */
+    public <M extends Message> List<M> getMessages(Class<M> type) {
+        List<M> messages = new ArrayList<>();
+        for (Message message : recorder.snapshot()) {
+            if (type.isInstance(message)) {
+                messages.add(type.cast(message));
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * @param event the name of the event
+     * @return the recorded track messages of given event from the oldest to the most recent one
+     */
+    public List<TrackMessage> getEvents(String event) {
+        List<TrackMessage> messages = new ArrayList<>();
+        for (TrackMessage message : getMessages(TrackMessage.class)) {
+            if (event.equals(message.event())) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * @param userId the ID of the user or the anonymous ID
+     * @return the recorded messages of given user from the oldest to the most recent one
+     */
+    public List<Message> getMessagesForUser(String userId) {
+        return find(message -> userId.equals(message.userId()) || userId.equals(message.anonymousId()));
+    }
+
+    /**
+     * @return the most recent message or <code>null</code> if there is none
+     */
+    public @Nullable Message getLastMessage() {
+        List<Message> messages = recorder.snapshot();
+        return messages.isEmpty() ? null : messages.get(messages.size() - 1);
+    }
+
+    /**
+     * @return the number of all the messages recorded since the start, including the ones no longer kept in the memory
+     */
+    public long getRecordedCount() {
+        return recorder.getRecordedCount();
+    }
+
+    /**
+     * Forgets all the messages recorded so far.
+     */
+    public void clear() {
+        recorder.clear();
+    }
+
+    /**
+     * @return whether the messages are also sent to Segment
+     */
+    public boolean isPassThrough() {
+        return passThrough;
+    }
+
+    private List<Message> find(Predicate<Message> predicate) {
+        List<Message> snapshot = recorder.snapshot();
+        if (snapshot.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Message> messages = new ArrayList<>();
+        for (Message message : snapshot) {
+            if (predicate.test(message)) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+}
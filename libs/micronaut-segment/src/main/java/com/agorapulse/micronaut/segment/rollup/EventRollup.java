@@ -0,0 +1,372 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.rollup;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.util.MessageClock;
+import com.agorapulse.micronaut.segment.util.MessageIdGenerator;
+import com.segment.analytics.messages.MessageBuilder;
+import com.segment.analytics.messages.TrackMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Counts the occurrences of the configured events locally and sends a single aggregated track message per interval.
+ *
+ * The occurrences are counted per user, event and the values of the selected properties. The aggregated message
+ * has the same name as the event and carries the values of the selected properties, the <code>count</code> of the occurrences
+ * and the <code>firstTimestamp</code> and <code>lastTimestamp</code> of the occurrences within the interval. The context
+ * and the integrations are copied from the first occurrence counted by the key.
+ *
+ * The counters are {@link LongAdder} instances so the threads counting the same event rarely compete with each other.
+ * Each interval is counted into a new window which is swapped on flush, so the count and the timestamps of the
+ * aggregated message always come from the same occurrences. The counters which stayed idle for the whole interval
+ * are removed.
+ */
+public class EventRollup implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventRollup.class);
+
+    private static final long JOIN_MILLIS = 1000;
+
+    private final BiConsumer<String, MessageBuilder<?, ?>> target;
+    private final Set<String> events;
+    private final List<String> properties;
+    private final int maxKeys;
+    private final long intervalNanos;
+    private final Map<Key, Counter> counters = new ConcurrentHashMap<>();
+    private final LongAdder counted = new LongAdder();
+    private final MessageClock clock;
+    private final MessageIdGenerator idGenerator;
+    private final Thread flusher;
+
+    private volatile boolean closed;
+
+    /**
+     * @param configuration the configuration of the rollup
+     * @param target the consumer of the event name and the aggregated message
+     * @param clock the clock providing the time of the flush
+     * @param idGenerator the generator of the IDs of the aggregated messages
+     * @param threadFactory the factory of the thread sending the aggregated messages
+     */
+    public EventRollup(
+        SegmentConfiguration.RollupConfiguration configuration,
+        BiConsumer<String, MessageBuilder<?, ?>> target,
+        MessageClock clock,
+        MessageIdGenerator idGenerator,
+        ThreadFactory threadFactory
+    ) {
+        this.target = target;
+        this.clock = clock;
+        this.idGenerator = idGenerator;
+        this.events = new HashSet<>(configuration.getEvents());
+        this.properties = configuration.getProperties();
+        this.maxKeys = Math.max(1, configuration.getMaxKeys());
+        this.intervalNanos = configuration.getInterval().toNanos();
+
+        this.flusher = threadFactory.newThread(this::run);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * @param event the name of the event
+     * @return <code>true</code> if the event is counted instead of being sent
+     */
+    public boolean isRolledUp(String event) {
+        return events.contains(event);
+    }
+
+    /**
+     * @param message the occurrence of the event
+     * @return <code>true</code> if the occurrence was counted, <code>false</code> if the message must be sent
+     */
+    public boolean add(TrackMessage message) {
+        if (closed) {
+            return false;
+        }
+
+        Key key = new Key(message.userId(), message.anonymousId(), message.event(), values(message.properties()));
+        long timestamp = message.timestamp() == null ? clock.currentTimeMillis() : message.timestamp().getTime();
+
+        while (true) {
+            Counter counter = counters.get(key);
+            if (counter == null) {
+                if (counters.size() >= maxKeys) {
+                    return false;
+                }
+                counter = counters.computeIfAbsent(key, k -> new Counter(k, message));
+            }
+            if (counter.increment(timestamp)) {
+                counted.increment();
+                if (closed) {
+                    // the final flush might have missed the occurrence, sent at most once as the window is swapped
+                    flush();
+                }
+                return true;
+            }
+            // the counter has just been removed as idle, use a new one
+        }
+    }
+
+    /**
+     * Sends the aggregated messages for all the events counted since the last flush.
+     */
+    public void flush() {
+        for (Counter counter : counters.values()) {
+            Window window = counter.swap(new Window());
+            if (window.count.sum() > 0) {
+                emit(counter, window);
+            } else {
+                retire(counter);
+            }
+        }
+    }
+
+    /**
+     * @return the number of the distinct counters
+     */
+    public int getKeys() {
+        return counters.size();
+    }
+
+    /**
+     * @return the number of the occurrences counted instead of being sent
+     */
+    public long getCounted() {
+        return counted.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(JOIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void run() {
+        long next = System.nanoTime() + intervalNanos;
+        while (!closed) {
+            long remaining = next - System.nanoTime();
+            if (remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+                continue;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LOGGER.error("Exception sending the aggregated events", e);
+            }
+            next += intervalNanos;
+        }
+    }
+
+    private void retire(Counter counter) {
+        Window leftover = counter.swap(Window.RETIRED);
+        counters.remove(counter.key, counter);
+
+        if (leftover != Window.RETIRED && leftover.count.sum() > 0) {
+            emit(counter, leftover);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emit(Counter counter, Window window) {
+        long count = window.count.sum();
+        long first = window.first.get();
+        long last = window.last.get();
+
+        Map<String, Object> aggregated = new LinkedHashMap<>();
+        for (int i = 0; i < properties.size(); i++) {
+            if (counter.key.values[i] != null) {
+                aggregated.put(properties.get(i), counter.key.values[i]);
+            }
+        }
+        aggregated.put("count", count);
+        aggregated.put("firstTimestamp", Instant.ofEpochMilli(first).toString());
+        aggregated.put("lastTimestamp", Instant.ofEpochMilli(last).toString());
+
+        try {
+            TrackMessage.Builder builder = TrackMessage.builder(counter.key.event)
+                .messageId(idGenerator.generate(clock.currentTimeMillis()))
+                .properties(aggregated)
+                .timestamp(new Date(last));
+            if (counter.key.userId != null) {
+                builder.userId(counter.key.userId);
+            }
+            if (counter.key.anonymousId != null) {
+                builder.anonymousId(counter.key.anonymousId);
+            }
+            if (counter.first.context() != null) {
+                builder.context(counter.first.context());
+            }
+            if (counter.first.integrations() != null) {
+                counter.first.integrations().forEach((key, value) -> {
+                    if (value instanceof Boolean) {
+                        builder.enableIntegration(key, (Boolean) value);
+                    } else if (value instanceof Map) {
+                        builder.integrationOptions(key, (Map<String, Object>) value);
+                    }
+                });
+            }
+            target.accept(counter.key.event, builder);
+        } catch (RuntimeException e) {
+            LOGGER.error("Exception sending {} aggregated occurrences of event {}", count, counter.key.event, e);
+        }
+    }
+
+    private Object[] values(Map<String, ?> messageProperties) {
+        Object[] values = new Object[properties.size()];
+        if (messageProperties != null) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = messageProperties.get(properties.get(i));
+            }
+        }
+        return values;
+    }
+
+    private static final class Key {
+
+        private final String userId;
+        private final String anonymousId;
+        private final String event;
+        private final Object[] values;
+        private final int hash;
+
+        Key(String userId, String anonymousId, String event, Object[] values) {
+            this.userId = userId;
+            this.anonymousId = anonymousId;
+            this.event = event;
+            this.values = values;
+            this.hash = Objects.hash(userId, anonymousId, event, Arrays.hashCode(values));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                && Objects.equals(event, key.event)
+                && Objects.equals(userId, key.userId)
+                && Objects.equals(anonymousId, key.anonymousId)
+                && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    private static final class Counter {
+
+        private final Key key;
+        private final TrackMessage first;
+        private final AtomicReference<Window> window = new AtomicReference<>(new Window());
+
+        Counter(Key key, TrackMessage first) {
+            this.key = key;
+            this.first = first;
+        }
+
+        boolean increment(long timestamp) {
+            while (true) {
+                Window current = window.get();
+                if (current == Window.RETIRED) {
+                    return false;
+                }
+                current.writers.increment();
+                try {
+                    if (window.get() != current) {
+                        // swapped in the meantime, count into the next window
+                        continue;
+                    }
+                    current.count.increment();
+                    // plain reads first so the timestamps are only written when they change
+                    if (timestamp < current.first.get()) {
+                        current.first.accumulateAndGet(timestamp, Math::min);
+                    }
+                    if (timestamp > current.last.get()) {
+                        current.last.accumulateAndGet(timestamp, Math::max);
+                    }
+                    return true;
+                } finally {
+                    current.writers.decrement();
+                }
+            }
+        }
+
+        Window swap(Window next) {
+            Window previous;
+            do {
+                previous = window.get();
+                if (previous == Window.RETIRED) {
+                    // already retired by a concurrent flush
+                    return previous;
+                }
+            } while (!window.compareAndSet(previous, next));
+
+            // let the threads which have not noticed the swap yet finish so the window is complete
+            while (previous.writers.sum() > 0) {
+                Thread.onSpinWait();
+            }
+            return previous;
+        }
+
+    }
+
+    private static final class Window {
+
+        private static final Window RETIRED = new Window();
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder writers = new LongAdder();
+        private final AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong last = new AtomicLong(Long.MIN_VALUE);
+
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.sink;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the batches as gzipped newline-delimited JSON into the rotating files.
+ *
+ * The batches are handed over to the single writer thread so the upload is only blocked when the writer falls behind
+ * by more than the queue capacity. The files are rotated when the data written exceed the maximal size or the rotation interval.
+ */
+public class NdjsonFileSink implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NdjsonFileSink.class);
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+    private static final String EXTENSION = ".ndjson.gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DRAIN_BATCHES = 256;
+    private static final long POLL_MILLIS = 100;
+    private static final long JOIN_MILLIS = 10_000;
+    private static final byte NEW_LINE = '\n';
+    private static final byte[] POISON = new byte[0];
+
+    private final SegmentConfiguration.SinkConfiguration configuration;
+    private final Path directory;
+    private final BlockingQueue<byte[]> queue;
+    private final Thread writer;
+
+    private FileChannel channel;
+    private OutputStream out;
+    private Path file;
+    private long openedAt;
+    private long written;
+    private int sequence;
+
+    private volatile boolean closed;
+
+    public NdjsonFileSink(SegmentConfiguration.SinkConfiguration configuration, ThreadFactory threadFactory) {
+        this.configuration = configuration;
+        this.directory = Paths.get(configuration.getDirectory());
+        this.queue = new ArrayBlockingQueue<>(configuration.getQueueCapacity());
+        this.writer = threadFactory.newThread(this::run);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Hands the batch over to the writer thread, waits if the writer falls behind.
+     *
+     * @param batch the serialized batch
+     */
+    public void write(byte[] batch) {
+        if (closed) {
+            LOGGER.warn("Batch of {} bytes not written as the sink is already closed", batch.length);
+            return;
+        }
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while writing the batch of {} bytes to the sink", batch.length);
+        }
+    }
+
+    /**
+     * @return the file being currently written
+     */
+    public synchronized Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(POISON);
+            writer.join(JOIN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<byte[]> batches = new ArrayList<>(DRAIN_BATCHES);
+        boolean running = true;
+
+        while (running) {
+            try {
+                byte[] first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batches.add(first);
+                    queue.drainTo(batches, DRAIN_BATCHES - 1);
+                }
+
+                for (byte[] batch : batches) {
+                    if (batch == POISON) {
+                        running = false;
+                    } else {
+                        append(batch);
+                    }
+                }
+
+                if (!batches.isEmpty() && configuration.getFsync() == FsyncPolicy.ALWAYS) {
+                    sync();
+                }
+                batches.clear();
+
+                if (running && isExpired()) {
+                    closeFile();
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Exception writing {} batches to the sink file {}", batches.size(), file, e);
+                batches.clear();
+                closeFileQuietly();
+            }
+        }
+
+        closeFileQuietly();
+    }
+
+    private void append(byte[] batch) throws IOException {
+        if (out == null || written >= configuration.getMaxFileBytes()) {
+            closeFile();
+            openFile();
+        }
+        out.write(batch);
+        out.write(NEW_LINE);
+        written += batch.length + 1;
+    }
+
+    private synchronized void openFile() throws IOException {
+        Files.createDirectories(directory);
+
+        long now = System.currentTimeMillis();
+        file = directory.resolve("segment-" + FILE_TIMESTAMP.format(Instant.ofEpochMilli(now)) + "-" + (sequence++) + EXTENSION);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        out = new GZIPOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), BUFFER_SIZE, true) {
+            {
+                def.setLevel(validLevel(configuration.getCompressionLevel()));
+            }
+        };
+        openedAt = now;
+        written = 0;
+    }
+
+    private boolean isExpired() {
+        return out != null && System.currentTimeMillis() - openedAt >= configuration.getRotateInterval().toMillis();
+    }
+
+    private void sync() throws IOException {
+        if (out != null) {
+            // sync flush makes the data written so far readable even if the file is never finished
+            out.flush();
+            channel.force(false);
+        }
+    }
+
+    private synchronized void closeFile() throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+            if (configuration.getFsync() != FsyncPolicy.NONE) {
+                channel.force(true);
+            }
+            out.close();
+        } finally {
+            out = null;
+            channel = null;
+        }
+    }
+
+    private void closeFileQuietly() {
+        try {
+            closeFile();
+        } catch (IOException e) {
+            LOGGER.error("Exception closing the sink file {}", file, e);
+        }
+    }
+
+    private static int validLevel(int level) {
+        return Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.sink;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.client.ClientSupport;
+import com.agorapulse.micronaut.segment.client.SegmentClientDecorator;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Writes a copy of every batch created by the library into the local {@link NdjsonFileSink}, optionally instead of uploading it.
+ *
+ * The sink is the outermost decorator so it sees the batches exactly as they were created by the library. In the copy mode,
+ * the batch is written only once the upload succeeds, so the batches retried by the library are written just once.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+@Requires(property = "segment.sink.enabled", value = StringUtils.TRUE)
+public class NdjsonSinkClientDecorator implements SegmentClientDecorator, AutoCloseable {
+
+    public static final int ORDER = 500;
+
+    private final SinkMode mode;
+    private final NdjsonFileSink sink;
+
+    public NdjsonSinkClientDecorator(SegmentConfiguration configuration, @Named("segment") ThreadFactory threadFactory) {
+        this.mode = configuration.getSink().getMode();
+        this.sink = new NdjsonFileSink(configuration.getSink(), threadFactory);
+    }
+
+    @Override
+    public Client decorate(Client client) {
+        return request -> execute(client, request);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    public NdjsonFileSink getSink() {
+        return sink;
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        sink.close();
+    }
+
+    private Response execute(Client client, Request request) throws IOException {
+        byte[] body = ClientSupport.readBody(request.getBody());
+
+        if (mode == SinkMode.REPLACE) {
+            sink.write(body);
+            return ClientSupport.accepted(request, "Written to the sink");
+        }
+
+        Response response = client.execute(ClientSupport.withBody(request, body));
+        if (ClientSupport.isSuccessful(response.getStatus())) {
+            sink.write(body);
+        }
+        return response;
+    }
+
+}
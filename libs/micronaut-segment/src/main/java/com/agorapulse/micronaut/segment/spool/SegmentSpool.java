@@ -0,0 +1,81 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.spool;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.client.SpillBuffer;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Writes the batches which could not be uploaded into the spool directory, one batch per line.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+@Requires(property = "segment.spool.enabled", value = StringUtils.TRUE)
+public class SegmentSpool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentSpool.class);
+
+    private static final String EXTENSION = ".ndjson";
+    private static final byte NEW_LINE = '\n';
+
+    private final Path directory;
+
+    public SegmentSpool(SegmentConfiguration configuration) {
+        this.directory = Paths.get(configuration.getSpool().getDirectory());
+    }
+
+    /**
+     * @param batches the serialized batches
+     * @return the file containing the batches
+     * @throws IOException if the batches cannot be written
+     */
+    public Path write(Collection<SpillBuffer.SpilledBatch> batches) throws IOException {
+        Files.createDirectories(directory);
+
+        Path file = directory.resolve("segment-" + System.currentTimeMillis() + "-" + UUID.randomUUID() + EXTENSION);
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (SpillBuffer.SpilledBatch batch : batches) {
+                out.write(batch.getBody());
+                out.write(NEW_LINE);
+            }
+        }
+
+        LOGGER.info("{} batches written to the spool file {}", batches.size(), file);
+
+        return file;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+}
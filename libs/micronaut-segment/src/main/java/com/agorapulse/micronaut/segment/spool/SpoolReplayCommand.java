@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.spool;
+
+import io.micronaut.context.ApplicationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Command line entry point replaying the spooled files given as the arguments or the configured spool directory.
+ *
+ * The application configuration is used so the same API key, endpoint and client are used as by the application.
+ */
+public final class SpoolReplayCommand {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolReplayCommand.class);
+
+    private SpoolReplayCommand() { }
+
+    public static void main(String[] args) throws IOException {
+        SpoolReplayResult result;
+
+        try (ApplicationContext context = ApplicationContext.run()) {
+            SpoolReplayer replayer = context.getBean(SpoolReplayer.class);
+            if (args.length == 0) {
+                result = replayer.replay();
+            } else {
+                result = replayer.replay(Arrays.stream(args).map(Paths::get).collect(Collectors.toList()));
+            }
+        }
+
+        if (!result.isSuccessful()) {
+            LOGGER.error("Spool replay stopped, run the command again to resume: {}", result.getFailure());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.spool;
+
+import java.time.Duration;
+
+/**
+ * Summary of the spool replay.
+ */
+public class SpoolReplayResult {
+
+    private final int files;
+    private final long messages;
+    private final long duplicates;
+    private final long batches;
+    private final long bytes;
+    private final Duration duration;
+    private final String failure;
+
+    SpoolReplayResult(int files, long messages, long duplicates, long batches, long bytes, Duration duration, String failure) {
+        this.files = files;
+        this.messages = messages;
+        this.duplicates = duplicates;
+        this.batches = batches;
+        this.bytes = bytes;
+        this.duration = duration;
+        this.failure = failure;
+    }
+
+    /**
+     * @return the number of the files fully replayed
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the number of the messages sent
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return the number of the messages skipped because the message with the same ID has already been sent
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the number of messages sent per second
+     */
+    public double getThroughput() {
+        long millis = Math.max(1, duration.toMillis());
+        return messages * 1000.0 / millis;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    /**
+     * @return the reason why the replay stopped or <code>null</code> if it was successful
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "%d messages in %d batches (%d bytes) sent from %d files in %d ms, %.1f messages/s, %d duplicates skipped%s",
+            messages, batches, bytes, files, duration.toMillis(), getThroughput(), duplicates, failure == null ? "" : ", stopped: " + failure
+        );
+    }
+
+}
@@ -0,0 +1,361 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.spool;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.SegmentStatistics;
+import com.agorapulse.micronaut.segment.client.ClientSupport;
+import com.agorapulse.micronaut.segment.client.ConnectionPrewarmer;
+import com.agorapulse.micronaut.segment.client.ResilientClientDecorator;
+import com.agorapulse.micronaut.segment.client.SegmentClientDecorator;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import io.micronaut.context.annotation.Requires;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resends the spooled batches through the configured Segment client.
+ *
+ * The client is decorated by the same {@link SegmentClientDecorator}s as the client used by the library, so the replayed batches
+ * are split, partitioned, traced, written to the sink and counted by the statistics. Only the {@link ResilientClientDecorator}
+ * is skipped because the spilled batches would be reported as accepted and the checkpoint would move past the batches
+ * which are only kept in the memory. The failed upload stops the replay instead so it can be resumed later.
+ *
+ * The messages are re-batched up to the maximal batch size and uploaded in parallel, limited by the configured rate.
+ * The messages with the same ID are sent only once, only the most recent message IDs are remembered so the older duplicates
+ * are left to the deduplication by the message ID done by Segment itself. The number of the spooled lines already sent is stored in the checkpoint file
+ * after each round of uploads so the replay can be resumed. Fully replayed files are renamed with <code>.done</code> suffix.
+ */
+@Singleton
+@Requires(beans = SegmentConfiguration.class)
+public class SpoolReplayer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolReplayer.class);
+
+    private static final String IMPORT_PATH = "/v1/import";
+    private static final String EXTENSION = ".ndjson";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String DONE_SUFFIX = ".done";
+
+    private static final String BATCH = "batch";
+    private static final String SENT_AT = "sentAt";
+    private static final String MESSAGE_ID = "messageId";
+
+    // brackets and the sentAt timestamp added around the messages
+    private static final int ENVELOPE_BYTES = 64;
+
+    // the spooled duplicates come from the same outage so they are close to each other
+    private static final int MAX_SEEN = 100_000;
+
+    private final Gson gson = new Gson();
+    private final Client client;
+    private final SegmentConfiguration.SpoolConfiguration configuration;
+    private final int maxBatchBytes;
+    private final String url;
+    private final List<Header> headers;
+
+    public SpoolReplayer(
+        SegmentConfiguration configuration,
+        @Named("segment") Client client,
+        SegmentStatistics statistics,
+        List<SegmentClientDecorator> decorators
+    ) {
+        List<SegmentClientDecorator> replayDecorators = new ArrayList<>(decorators);
+        replayDecorators.removeIf(ResilientClientDecorator.class::isInstance);
+        this.client = SegmentClientDecorator.decorateAll(statistics.monitor(client), replayDecorators);
+        this.configuration = configuration.getSpool();
+        this.maxBatchBytes = configuration.getMessageSize().getMaxBatchBytes();
+
+        String endpoint = configuration.getEndpoint() == null ? ConnectionPrewarmer.DEFAULT_ENDPOINT : configuration.getEndpoint();
+        this.url = endpoint.replaceAll("/+$", "") + IMPORT_PATH;
+
+        // the decorated client is called below the retrofit adapter of the library which adds the authorization otherwise
+        String credentials = Base64.getEncoder().encodeToString((configuration.getApiKey() + ":").getBytes(StandardCharsets.UTF_8));
+        this.headers = Arrays.asList(new Header("Authorization", "Basic " + credentials), new Header("Content-Type", ClientSupport.JSON));
+    }
+
+    /**
+     * Replays all the spooled files in the configured spool directory.
+     *
+     * @return the summary of the replay
+     * @throws IOException if the spool directory cannot be read
+     */
+    public SpoolReplayResult replay() throws IOException {
+        return replay(List.of(Paths.get(configuration.getDirectory())));
+    }
+
+    /**
+     * @param paths the spooled files or the directories containing them
+     * @return the summary of the replay
+     * @throws IOException if the files cannot be read
+     */
+    public SpoolReplayResult replay(List<Path> paths) throws IOException {
+        Replay replay = new Replay();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, configuration.getReplayParallelism()));
+        try {
+            for (Path file : files(paths)) {
+                if (!replay.replay(file, executor)) {
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        SpoolReplayResult result = replay.result();
+        LOGGER.info("Spool replay finished: {}", result);
+        return result;
+    }
+
+    private static List<Path> files(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    files.addAll(children.filter(f -> f.getFileName().toString().endsWith(EXTENSION)).sorted().collect(Collectors.toList()));
+                }
+            } else if (Files.exists(path)) {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    private final class Replay {
+
+        private final long started = System.nanoTime();
+        private final Set<String> seen = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_SEEN;
+            }
+
+        });
+        private final RateLimiter limiter = new RateLimiter(configuration.getReplayRate());
+
+        private int files;
+        private long messages;
+        private long duplicates;
+        private long batches;
+        private long bytes;
+        private String failure;
+
+        boolean replay(Path file, ExecutorService executor) throws IOException {
+            Path checkpointFile = file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+            long checkpoint = readCheckpoint(checkpointFile);
+
+            List<JsonArray> round = new ArrayList<>();
+            JsonArray current = new JsonArray();
+            int currentBytes = 0;
+            long line = 0;
+
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String text;
+                while ((text = reader.readLine()) != null) {
+                    line++;
+                    if (text.isEmpty()) {
+                        continue;
+                    }
+                    if (line <= checkpoint) {
+                        // already sent, only remember the IDs to skip the duplicates
+                        for (JsonElement message : messages(file, line, text)) {
+                            String messageId = messageId(message);
+                            if (messageId != null) {
+                                seen.add(messageId);
+                            }
+                        }
+                        continue;
+                    }
+
+                    for (JsonElement message : messages(file, line, text)) {
+                        String messageId = messageId(message);
+                        if (messageId != null && !seen.add(messageId)) {
+                            duplicates++;
+                            continue;
+                        }
+
+                        int size = gson.toJson(message).getBytes(StandardCharsets.UTF_8).length + 1;
+                        if (currentBytes + size + ENVELOPE_BYTES > maxBatchBytes && current.size() > 0) {
+                            round.add(current);
+                            current = new JsonArray();
+                            currentBytes = 0;
+                        }
+                        current.add(message);
+                        currentBytes += size;
+                    }
+
+                    if (round.size() + (current.size() > 0 ? 1 : 0) >= configuration.getReplayParallelism()) {
+                        // rounds end at the line boundary so the checkpoint is always consistent
+                        if (current.size() > 0) {
+                            round.add(current);
+                            current = new JsonArray();
+                            currentBytes = 0;
+                        }
+                        if (!upload(round, executor)) {
+                            return false;
+                        }
+                        writeCheckpoint(checkpointFile, line);
+                        round.clear();
+                    }
+                }
+            }
+
+            if (current.size() > 0) {
+                round.add(current);
+            }
+            if (!upload(round, executor)) {
+                return false;
+            }
+
+            Files.move(file, file.resolveSibling(file.getFileName() + DONE_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(checkpointFile);
+            files++;
+
+            return true;
+        }
+
+        private boolean upload(List<JsonArray> round, ExecutorService executor) throws IOException {
+            if (round.isEmpty()) {
+                return true;
+            }
+
+            List<Future<Response>> responses = new ArrayList<>(round.size());
+            List<Integer> sizes = new ArrayList<>(round.size());
+
+            try {
+                for (JsonArray batch : round) {
+                    limiter.acquire(batch.size());
+                    byte[] body = body(batch);
+                    sizes.add(body.length);
+                    Request request = new Request("POST", url, headers, new TypedByteArray(ClientSupport.JSON, body));
+                    responses.add(executor.submit(() -> client.execute(request)));
+                }
+
+                for (int i = 0; i < responses.size(); i++) {
+                    Response response = responses.get(i).get();
+                    if (!ClientSupport.isSuccessful(response.getStatus())) {
+                        failure = "Segment responded with status " + response.getStatus();
+                        return false;
+                    }
+                    messages += round.get(i).size();
+                    bytes += sizes.get(i);
+                    batches++;
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = "Interrupted";
+                return false;
+            } catch (ExecutionException e) {
+                failure = "Exception uploading the batch: " + e.getCause();
+                LOGGER.warn("Exception uploading the spooled batch", e.getCause());
+                return false;
+            }
+        }
+
+        private byte[] body(JsonArray messages) {
+            JsonObject batch = new JsonObject();
+            batch.add(BATCH, messages);
+            // Segment corrects the timestamps by the difference between sentAt and the time the batch is received
+            batch.addProperty(SENT_AT, Instant.now().toString());
+            return gson.toJson(batch).getBytes(StandardCharsets.UTF_8);
+        }
+
+        private JsonArray messages(Path file, long line, String text) {
+            try {
+                JsonObject batch = gson.fromJson(text, JsonObject.class);
+                if (batch != null && batch.has(BATCH) && batch.get(BATCH).isJsonArray()) {
+                    return batch.getAsJsonArray(BATCH);
+                }
+            } catch (JsonParseException e) {
+                LOGGER.warn("Line {} of the spooled file {} cannot be parsed and it will be skipped", line, file, e);
+                return new JsonArray();
+            }
+            LOGGER.warn("Line {} of the spooled file {} does not contain any batch and it will be skipped", line, file);
+            return new JsonArray();
+        }
+
+        SpoolReplayResult result() {
+            return new SpoolReplayResult(files, messages, duplicates, batches, bytes, Duration.ofNanos(System.nanoTime() - started), failure);
+        }
+
+    }
+
+    private static String messageId(JsonElement message) {
+        if (!message.isJsonObject()) {
+            return null;
+        }
+        JsonElement id = message.getAsJsonObject().get(MESSAGE_ID);
+        return id != null && id.isJsonPrimitive() ? id.getAsString() : null;
+    }
+
+    private static long readCheckpoint(Path checkpointFile) throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid checkpoint file {}, the whole file will be replayed", checkpointFile);
+            return 0;
+        }
+    }
+
+    private static void writeCheckpoint(Path checkpointFile, long line) throws IOException {
+        Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(temporary, Long.toString(line).getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
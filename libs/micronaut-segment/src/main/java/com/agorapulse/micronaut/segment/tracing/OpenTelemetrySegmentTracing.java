@@ -0,0 +1,204 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.tracing;
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration;
+import com.agorapulse.micronaut.segment.client.ClientSupport;
+import com.agorapulse.micronaut.segment.client.SegmentClientDecorator;
+import com.segment.analytics.MessageInterceptor;
+import com.segment.analytics.messages.Message;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.core.util.StringUtils;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import jakarta.inject.Singleton;
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Traces the enqueued messages, the flushes and the batch uploads using OpenTelemetry.
+ *
+ * The enqueue spans are only created within the sampled traces so the analytics never start new traces on their own.
+ * The upload span is linked to the spans which enqueued the messages in the batch. The span contexts waiting for the upload
+ * are kept in a concurrent map, so the calling threads and the upload thread do not share any lock. Once there are more
+ * than <code>segment.tracing.max-pending-links</code> of them, a single thread sweeps the map and evicts the contexts which
+ * were already there during the previous sweep, so the messages which are never uploaded, such as the rejected, rolled up
+ * or coalesced ones, do not stop the linking.
+ */
+@Singleton
+@Requires(classes = OpenTelemetry.class)
+@Requires(beans = {SegmentConfiguration.class, OpenTelemetry.class})
+@Requires(property = "segment.tracing.enabled", value = StringUtils.TRUE)
+public class OpenTelemetrySegmentTracing implements SegmentTracing, MessageInterceptor, SegmentClientDecorator {
+
+    public static final int ORDER = 400;
+
+    private static final String INSTRUMENTATION_NAME = "com.agorapulse.micronaut.segment";
+
+    private final Tracer tracer;
+    private final int maxLinks;
+    private final int maxPending;
+    private final Map<String, PendingLink> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    // only written by the sweeping thread
+    private volatile int generation;
+
+    public OpenTelemetrySegmentTracing(OpenTelemetry openTelemetry, SegmentConfiguration configuration) {
+        this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+        this.maxLinks = configuration.getTracing().getMaxLinks();
+        this.maxPending = configuration.getTracing().getMaxPendingLinks();
+    }
+
+    @Override
+    @Nullable
+    public Scope start(String operation, @Nullable String name) {
+        Span parent = Span.current();
+        if (!parent.getSpanContext().isSampled()) {
+            return null;
+        }
+
+        SpanBuilder builder = tracer.spanBuilder("segment." + operation).setSpanKind(SpanKind.INTERNAL);
+        if (name != null) {
+            builder.setAttribute("segment.name", name);
+        }
+
+        Span span = builder.startSpan();
+        io.opentelemetry.context.Scope scope = span.makeCurrent();
+
+        return new Scope() {
+
+            @Override
+            public void enqueued(String messageId) {
+                if (messageId != null) {
+                    pending.put(messageId, new PendingLink(span.getSpanContext(), generation));
+                    evictIfFull();
+                }
+            }
+
+            @Override
+            public void error(Throwable throwable) {
+                span.recordException(throwable);
+                span.setStatus(StatusCode.ERROR);
+            }
+
+            @Override
+            public void close() {
+                scope.close();
+                span.end();
+            }
+
+        };
+    }
+
+    @Override
+    public Message intercept(Message message) {
+        // the messages enqueued directly to the library, the ones sent by the service are already linked by the scope
+        SpanContext context = Span.current().getSpanContext();
+        if (context.isSampled() && message.messageId() != null) {
+            pending.putIfAbsent(message.messageId(), new PendingLink(context, generation));
+            evictIfFull();
+        }
+        return message;
+    }
+
+    @Override
+    public Client decorate(Client client) {
+        return request -> upload(client, request);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    private Response upload(Client client, Request request) throws IOException {
+        byte[] body = ClientSupport.readBody(request.getBody());
+        List<String> messageIds = ClientSupport.messageIds(body);
+
+        SpanBuilder builder = tracer.spanBuilder("segment.upload")
+            .setNoParent()
+            .setSpanKind(SpanKind.CLIENT)
+            .setAttribute("segment.batch.size", messageIds.size())
+            .setAttribute("segment.batch.bytes", body.length);
+
+        Set<SpanContext> links = new HashSet<>();
+        for (String messageId : messageIds) {
+            PendingLink link = pending.remove(messageId);
+            if (link != null && links.size() < maxLinks && links.add(link.context)) {
+                builder.addLink(link.context);
+            }
+        }
+
+        Span span = builder.startSpan();
+        try (io.opentelemetry.context.Scope ignored = span.makeCurrent()) {
+            Response response = client.execute(ClientSupport.withBody(request, body));
+            span.setAttribute("http.response.status_code", response.getStatus());
+            if (!ClientSupport.isSuccessful(response.getStatus())) {
+                span.setStatus(StatusCode.ERROR);
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private void evictIfFull() {
+        if (pending.size() <= maxPending || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int previous = generation++;
+            pending.values().removeIf(link -> link.generation < previous);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static final class PendingLink {
+
+        private final SpanContext context;
+        private final int generation;
+
+        PendingLink(SpanContext context, int generation) {
+            this.context = context;
+            this.generation = generation;
+        }
+
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.tracing;
+
+import io.micronaut.core.annotation.Nullable;
+
+/**
+ * Traces the operations of {@link com.agorapulse.micronaut.segment.DefaultSegmentService}.
+ */
+public interface SegmentTracing {
+
+    /**
+     * Started span of the operation.
+     */
+    interface Scope extends AutoCloseable {
+
+        void error(Throwable throwable);
+
+        /**
+         * Called in the thread which started the operation before the message is handed over to another thread.
+         *
+         * @param messageId the ID of the message enqueued within the scope
+         */
+        default void enqueued(String messageId) {
+            // nothing to remember by default
+        }
+
+        @Override
+        void close();
+
+    }
+
+    /**
+     * @param operation the name of the operation such as <code>track</code> or <code>flush</code>
+     * @param name the name of the event, the page or the screen if any
+     * @return the scope which must be closed when the operation finishes or <code>null</code> if the operation is not traced
+     */
+    @Nullable
+    Scope start(String operation, @Nullable String name);
+
+}
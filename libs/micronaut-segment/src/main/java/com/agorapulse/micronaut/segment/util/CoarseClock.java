@@ -0,0 +1,63 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The clock which only reads the system time once per the configured resolution in a background thread.
+ *
+ * The calling threads only read the volatile field so the clock is cheap even on the platforms where reading
+ * the system time requires a system call.
+ */
+public class CoarseClock implements MessageClock, AutoCloseable {
+
+    private final long resolutionNanos;
+    private final Thread ticker;
+
+    private volatile long now = System.currentTimeMillis();
+    private volatile boolean closed;
+
+    public CoarseClock(Duration resolution) {
+        this.resolutionNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), resolution.toNanos());
+        this.ticker = new Thread(this::tick, "SegmentClock");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(ticker);
+    }
+
+    private void tick() {
+        while (!closed) {
+            now = System.currentTimeMillis();
+            LockSupport.parkNanos(this, resolutionNanos);
+        }
+    }
+
+}
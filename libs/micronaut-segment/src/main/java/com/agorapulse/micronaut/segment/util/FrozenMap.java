@@ -0,0 +1,163 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the properties or traits which can be shared by any number of messages without copying.
+ *
+ * The snapshot is taken once when the map is frozen. The <code>null</code> values are removed, the values are converted
+ * by the {@link ValueConverter} and the nested maps are frozen as well, so the builders can reference the snapshot
+ * directly. The nested frozen maps are shared instead of being copied again. Use {@link #with(Object, Object)} to derive
+ * a new snapshot with one more entry.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class FrozenMap<K, V> extends AbstractMap<K, V> {
+
+    private static final FrozenMap<?, ?> EMPTY = new FrozenMap<>(Collections.emptyMap());
+
+    private final Map<K, V> entries;
+
+    // racy single check is fine as the size is always computed the same way
+    private int estimatedSize = -1;
+
+    // the last scrubber which found nothing to scrub, racy as well as the scrubber is immutable
+    private Scrubber scrubbedBy;
+
+    private FrozenMap(Map<K, V> entries) {
+        this.entries = entries;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> FrozenMap<K, V> empty() {
+        return (FrozenMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @param map the map to freeze
+     * @return the map itself if it is already frozen or its frozen snapshot
+     */
+    public static <K, V> FrozenMap<K, V> of(Map<K, V> map) {
+        return of(map, ValueConverter.DEFAULT);
+    }
+
+    /**
+     * @param map       the map to freeze
+     * @param converter the converter for the values, e.g. the one with the custom converters from the application context
+     * @return the map itself if it is already frozen or its frozen snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> FrozenMap<K, V> of(Map<K, V> map, ValueConverter converter) {
+        if (map instanceof FrozenMap) {
+            return (FrozenMap<K, V>) map;
+        }
+        if (map == null || map.isEmpty()) {
+            return empty();
+        }
+
+        Map<K, V> entries = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            V value = (V) freeze(entry.getValue(), converter);
+            if (value != null) {
+                entries.put(entry.getKey(), value);
+            }
+        }
+        return new FrozenMap<>(entries);
+    }
+
+    /**
+     * @param key   the key of the new entry
+     * @param value the value of the new entry, the entry is removed if <code>null</code>
+     * @return new snapshot with given entry, sharing the values with this snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public FrozenMap<K, V> with(K key, V value) {
+        Map<K, V> copy = new LinkedHashMap<>(entries);
+        V frozen = (V) freeze(value, ValueConverter.DEFAULT);
+        if (frozen == null) {
+            copy.remove(key);
+        } else {
+            copy.put(key, frozen);
+        }
+        return new FrozenMap<>(copy);
+    }
+
+    @Override
+    public V get(Object key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return Collections.unmodifiableMap(entries).entrySet();
+    }
+
+    /**
+     * @return the estimated size of the map serialized into JSON in bytes, computed only once
+     */
+    public int getEstimatedSize() {
+        int size = estimatedSize;
+        if (size < 0) {
+            size = MessageSize.estimateEntries(this) + 2;
+            estimatedSize = size;
+        }
+        return size;
+    }
+
+    boolean isScrubbedBy(Scrubber scrubber) {
+        return scrubbedBy == scrubber;
+    }
+
+    void markScrubbedBy(Scrubber scrubber) {
+        scrubbedBy = scrubber;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object freeze(Object value, ValueConverter converter) {
+        if (value instanceof FrozenMap) {
+            return value;
+        }
+        if (value instanceof Map) {
+            // frozen directly instead of being converted into a copy first
+            return of((Map<Object, Object>) value, converter);
+        }
+        Object converted = converter.convert(value);
+        if (converted instanceof Map && !(converted instanceof FrozenMap)) {
+            return of((Map<Object, Object>) converted, converter);
+        }
+        return converted;
+    }
+
+}
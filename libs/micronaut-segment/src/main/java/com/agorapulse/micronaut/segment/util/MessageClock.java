@@ -0,0 +1,38 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+/**
+ * Source of the timestamps of the messages which do not declare any timestamp explicitly.
+ *
+ * Replace the bean of this type to control the time, e.g. in the tests.
+ */
+@FunctionalInterface
+public interface MessageClock {
+
+    /**
+     * The clock reading {@link System#currentTimeMillis()}.
+     */
+    MessageClock SYSTEM = System::currentTimeMillis;
+
+    /**
+     * @return the current time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+
+}
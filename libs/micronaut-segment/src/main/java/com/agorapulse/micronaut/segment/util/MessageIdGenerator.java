@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+import java.util.UUID;
+
+/**
+ * Generates the IDs of the messages which do not declare any ID explicitly.
+ *
+ * Replace the bean of this type to use a custom generator. The IDs must be unique as Segment uses them
+ * to deduplicate the messages.
+ */
+@FunctionalInterface
+public interface MessageIdGenerator {
+
+    /**
+     * The generator of the time-ordered UUIDs version 7.
+     */
+    MessageIdGenerator DEFAULT = new UuidV7Generator();
+
+    /**
+     * The generator of the random UUIDs as generated by the library, using {@link java.security.SecureRandom}.
+     */
+    MessageIdGenerator RANDOM = timestamp -> UUID.randomUUID().toString();
+
+    /**
+     * @param timestamp the current time in milliseconds since the epoch
+     * @return new unique ID of the message
+     */
+    String generate(long timestamp);
+
+}
@@ -0,0 +1,134 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+import java.time.temporal.TemporalAccessor;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Estimates the size of the values serialized into JSON in bytes without actually serializing them.
+ */
+public class MessageSize {
+
+    private static final int NULL_SIZE = 4;
+    private static final int DATE_SIZE = 26;
+    private static final int ASCII_LIMIT = 0x80;
+    private static final int TWO_BYTES_LIMIT = 0x800;
+    private static final int CONTROL_LIMIT = 0x20;
+    private static final int THREE_BYTES = 3;
+
+    private MessageSize() { }
+
+    /**
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @return estimated size of <code>"key":value,</code>
+     */
+    public static int entry(Object key, Object value) {
+        return string(String.valueOf(key)) + 2 + estimate(value);
+    }
+
+    public static int estimate(Object value) {
+        if (value == null) {
+            return NULL_SIZE;
+        }
+        if (value instanceof CharSequence) {
+            return string((CharSequence) value);
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return digits(((Number) value).longValue());
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString().length();
+        }
+        if (value instanceof FrozenMap) {
+            return ((FrozenMap<?, ?>) value).getEstimatedSize();
+        }
+        if (value instanceof Map) {
+            return estimateEntries((Map<?, ?>) value) + 2;
+        }
+        if (value instanceof Collection) {
+            int size = 2;
+            for (Object item : (Collection<?>) value) {
+                size += estimate(item) + 1;
+            }
+            return size;
+        }
+        if (value instanceof Object[]) {
+            int size = 2;
+            for (Object item : (Object[]) value) {
+                size += estimate(item) + 1;
+            }
+            return size;
+        }
+        if (value instanceof Date || value instanceof TemporalAccessor) {
+            return DATE_SIZE;
+        }
+        return string(value.toString());
+    }
+
+    /**
+     * @param map the map
+     * @return estimated size of all the entries of the map without the enclosing braces
+     */
+    public static int estimateEntries(Map<?, ?> map) {
+        int size = 0;
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            if (e.getValue() != null) {
+                size += entry(e.getKey(), e.getValue());
+            }
+        }
+        return size;
+    }
+
+    public static int string(CharSequence value) {
+        if (value == null) {
+            return 0;
+        }
+        int size = 2;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < CONTROL_LIMIT || c == '"' || c == '\\') {
+                size += 2;
+            } else if (c < ASCII_LIMIT) {
+                size++;
+            } else if (c < TWO_BYTES_LIMIT) {
+                size += 2;
+            } else {
+                size += THREE_BYTES;
+            }
+        }
+        return size;
+    }
+
+    private static int digits(long value) {
+        if (value == Long.MIN_VALUE) {
+            return Long.toString(value).length();
+        }
+        int size = value < 0 ? 2 : 1;
+        long remaining = Math.abs(value);
+        while (remaining >= 10) {
+            remaining /= 10;
+            size++;
+        }
+        return size;
+    }
+
+}
@@ -17,29 +17,131 @@
  */
 package com.agorapulse.micronaut.segment.util;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
+/**
+ * Removes the <code>null</code> values which are not accepted by the Segment library.
+ *
+ * The sensitive values are scrubbed by the {@link Scrubber} during the same traversal.
+ */
 public class SafeMap {
 
     private SafeMap() { }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * @param original the map which might contain <code>null</code> values, also in the nested maps
+     * @return the original map if it is frozen, the unmodifiable view if it does not contain any <code>null</code> values or a copy without them
+     */
     public static <K, V> Map<K, V> safe(Map<K, V> original) {
+        return safe(original, Scrubber.NONE);
+    }
+
+    /**
+     * @param original the map which might contain <code>null</code> values or sensitive values, also in the nested maps and collections
+     * @param scrubber the scrubber of the sensitive values
+     * @return the original map if it is frozen and there is nothing to scrub, the unmodifiable view if it does not contain any <code>null</code> values
+     *          or any values to be scrubbed or a copy without the <code>null</code> values and with the sensitive values scrubbed
+     */
+    public static <K, V> Map<K, V> safe(Map<K, V> original, Scrubber scrubber) {
         if (original == null) {
             return Collections.emptyMap();
         }
-        return original.entrySet()
-            .stream()
-            .filter(e -> e.getValue() != null)
-            .map(e -> {
-                if (e.getValue() instanceof Map) {
-                    e.setValue((V) safe((Map<?, ?>) e.getValue()));
+        Map<K, V> copy = copyIfChanged(original, scrubber);
+        if (copy == null) {
+            // the maps built by the builders are already safe so there is no need to copy them
+            return original instanceof FrozenMap ? original : Collections.unmodifiableMap(original);
+        }
+        return copy;
+    }
+
+    /**
+     * Walks the map once, scrubbing the values on the way, and only copies it once the first value changes.
+     *
+     * @return the copy or <code>null</code> if nothing has changed
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V> copyIfChanged(Map<K, V> original, Scrubber scrubber) {
+        FrozenMap<K, V> frozen = original instanceof FrozenMap ? (FrozenMap<K, V>) original : null;
+        if (frozen != null && (scrubber.isEmpty() || frozen.isScrubbedBy(scrubber))) {
+            // the frozen maps never contain null values and they are only checked once by the same scrubber
+            return null;
+        }
+
+        Map<K, V> copy = null;
+        int unchanged = 0;
+        for (Map.Entry<K, V> e : original.entrySet()) {
+            V value = e.getValue();
+            V safe = value == null ? null : (V) safeValue(scrubber.match(e.getKey()), value, scrubber);
+            if (copy == null) {
+                // the null values are removed so they always change the map
+                if (safe == value && value != null) {
+                    unchanged++;
+                    continue;
+                }
+                copy = copyOf(original, unchanged);
+            }
+            if (safe != null) {
+                copy.put(e.getKey(), safe);
+            }
+        }
+
+        if (copy == null && frozen != null) {
+            frozen.markScrubbedBy(scrubber);
+        }
+        return copy;
+    }
+
+    private static Object safeValue(long rules, Object value, Scrubber scrubber) {
+        Object scrubbed = rules == 0 ? value : scrubber.scrub(rules, value);
+        if (scrubbed instanceof Map) {
+            Map<?, ?> copy = copyIfChanged((Map<?, ?>) scrubbed, scrubber);
+            return copy == null ? scrubbed : copy;
+        }
+        if (scrubbed instanceof Collection) {
+            // the maps within the collections, such as the products of the order, are checked as well
+            List<Object> copy = copyIfChanged((Collection<?>) scrubbed, scrubber);
+            return copy == null ? scrubbed : copy;
+        }
+        return scrubbed;
+    }
+
+    private static List<Object> copyIfChanged(Collection<?> values, Scrubber scrubber) {
+        List<Object> copy = null;
+        int unchanged = 0;
+        for (Object item : values) {
+            Object safe = item == null ? null : safeValue(0, item, scrubber);
+            if (copy == null) {
+                if (safe == item) {
+                    unchanged++;
+                    continue;
+                }
+                copy = new ArrayList<>(values.size());
+                for (Object previous : values) {
+                    if (copy.size() == unchanged) {
+                        break;
+                    }
+                    copy.add(previous);
                 }
-                return e;
-            })
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            }
+            copy.add(safe);
+        }
+        return copy;
+    }
+
+    private static <K, V> Map<K, V> copyOf(Map<K, V> original, int entries) {
+        Map<K, V> copy = new LinkedHashMap<>(original.size() * 4 / 3 + 1);
+        for (Map.Entry<K, V> e : original.entrySet()) {
+            if (copy.size() == entries) {
+                break;
+            }
+            copy.put(e.getKey(), e.getValue());
+        }
+        return copy;
     }
 
 }
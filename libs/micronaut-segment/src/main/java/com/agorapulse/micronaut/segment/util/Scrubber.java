@@ -0,0 +1,229 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes the sensitive values such as emails, tokens or phone numbers from the maps passing through {@link SafeMap}.
+ *
+ * The rules are selected by the fragments of the key names. The fragments of all the rules are compiled into a single
+ * Aho-Corasick automaton so every key is matched against all the rules in one pass over its characters, ignoring
+ * the case of the ASCII letters. The values of the keys matching a redaction rule are replaced completely. The value
+ * patterns are only evaluated for the string values of the keys matching the pattern rule and the matches are replaced.
+ */
+public final class Scrubber {
+
+    public static final String DEFAULT_REPLACEMENT = "[REDACTED]";
+
+    /**
+     * The scrubber without any rules.
+     */
+    public static final Scrubber NONE = new Scrubber(Collections.emptyList(), Collections.emptyMap(), DEFAULT_REPLACEMENT);
+
+    private static final int ALPHABET = 128;
+    private static final int ALPHABET_BITS = 7;
+
+    private final int[] transitions;
+    private final long[] outputs;
+    private final long redacted;
+    private final Pattern[] patterns;
+    private final String replacement;
+    private final String quotedReplacement;
+    private final boolean empty;
+
+    /**
+     * @param keys the fragments of the key names whose values are replaced completely
+     * @param patterns the patterns of the sensitive parts of the values by the fragments of the key names
+     * @param replacement the replacement of the sensitive values
+     * @throws IllegalArgumentException if there are more than 64 rules or the fragments contain non-ASCII characters
+     */
+    public Scrubber(Collection<String> keys, Map<String, String> patterns, String replacement) {
+        List<String> fragments = new ArrayList<>(keys);
+        List<Pattern> compiled = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        patterns.forEach((fragment, pattern) -> {
+            fragments.add(fragment);
+            compiled.add(Pattern.compile(pattern));
+        });
+
+        if (fragments.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " scrubbing rules are supported but there were " + fragments.size());
+        }
+
+        this.patterns = compiled.toArray(new Pattern[0]);
+        this.redacted = keys.size() == Long.SIZE ? -1L : (1L << keys.size()) - 1;
+        this.replacement = replacement;
+        this.quotedReplacement = Matcher.quoteReplacement(replacement);
+        this.empty = fragments.isEmpty();
+
+        // the trie of the fragments, the missing transitions are marked with -1
+        List<int[]> trie = new ArrayList<>();
+        List<Long> matches = new ArrayList<>();
+        trie.add(newState());
+        matches.add(0L);
+
+        for (int rule = 0; rule < fragments.size(); rule++) {
+            String fragment = fragments.get(rule);
+            if (fragment.isEmpty()) {
+                throw new IllegalArgumentException("The scrubbing rule must not be empty");
+            }
+            int state = 0;
+            for (int i = 0; i < fragment.length(); i++) {
+                int c = lowerCase(fragment.charAt(i));
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("The scrubbing rule '" + fragment + "' must only contain ASCII characters");
+                }
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newState());
+                    matches.add(0L);
+                }
+                state = trie.get(state)[c];
+            }
+            matches.set(state, matches.get(state) | 1L << rule);
+        }
+
+        // the failure links turn the trie into the automaton with a transition for every character
+        int states = trie.size();
+        this.transitions = new int[states << ALPHABET_BITS];
+        this.outputs = new long[states];
+        int[] failures = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie.get(0)[c];
+            transitions[c] = Math.max(next, 0);
+            if (next > 0) {
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = matches.get(state) | outputs[failures[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie.get(state)[c];
+                if (next < 0) {
+                    transitions[state << ALPHABET_BITS | c] = transitions[failures[state] << ALPHABET_BITS | c];
+                } else {
+                    failures[next] = transitions[failures[state] << ALPHABET_BITS | c];
+                    transitions[state << ALPHABET_BITS | c] = next;
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if there are no rules
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @param key the key of the value
+     * @return the bit mask of the rules matching the key, zero if the key does not match any rule
+     */
+    public long match(Object key) {
+        if (empty || key == null) {
+            return 0;
+        }
+        String name = key.toString();
+        int state = 0;
+        long matched = 0;
+        for (int i = 0; i < name.length(); i++) {
+            int c = lowerCase(name.charAt(i));
+            if (c >= ALPHABET) {
+                // none of the fragments continues with the other characters
+                state = 0;
+                continue;
+            }
+            state = transitions[state << ALPHABET_BITS | c];
+            matched |= outputs[state];
+            if ((matched & redacted) != 0) {
+                // the value is going to be replaced completely so the other rules do not matter
+                return matched;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * @param rules the rules matching the key of the value as returned from {@link #match(Object)}
+     * @param value the value
+     * @return the replacement, the value with the sensitive parts replaced or the value itself if there was nothing to replace
+     */
+    public Object scrub(long rules, Object value) {
+        if (rules == 0) {
+            return value;
+        }
+        if ((rules & redacted) != 0) {
+            return replacement;
+        }
+        if (value instanceof CharSequence) {
+            return replace(rules, value.toString());
+        }
+        if (value instanceof Collection) {
+            // the nested collections are scrubbed as well, the maps are scrubbed by their own keys
+            List<?> values = value instanceof List ? (List<?>) value : new ArrayList<>((Collection<?>) value);
+            List<Object> scrubbed = null;
+            for (int i = 0; i < values.size(); i++) {
+                Object item = values.get(i);
+                Object replaced = item instanceof CharSequence || item instanceof Collection ? scrub(rules, item) : item;
+                if (replaced != item && scrubbed == null) {
+                    scrubbed = new ArrayList<>(values);
+                }
+                if (scrubbed != null) {
+                    scrubbed.set(i, replaced);
+                }
+            }
+            return scrubbed == null ? value : scrubbed;
+        }
+        return value;
+    }
+
+    private String replace(long rules, String value) {
+        String result = value;
+        for (long remaining = rules; remaining != 0; remaining &= remaining - 1) {
+            // the matcher returns the same string if there is no match
+            result = patterns[Long.numberOfTrailingZeros(remaining)].matcher(result).replaceAll(quotedReplacement);
+        }
+        return result;
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int lowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removal of the sensitive values from the context, properties and traits before the messages are sent.
+ *
+ * Like the recording, the scrubbing does not require the API key so the recorded messages are scrubbed as well.
+ */
+@ConfigurationProperties("segment.scrubbing")
+@Requires(property = "segment.scrubbing.enabled", value = StringUtils.TRUE)
+public class ScrubbingConfiguration {
+
+    private boolean enabled;
+
+    private List<String> keys = new ArrayList<>();
+
+    private Map<String, String> patterns = new LinkedHashMap<>();
+
+    private String replacement = Scrubber.DEFAULT_REPLACEMENT;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the fragments of the key names whose values are replaced completely, e.g. <code>password</code> or <code>token</code>
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(List<String> keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * @return the patterns of the sensitive parts of the string values by the fragments of the key names
+     */
+    public Map<String, String> getPatterns() {
+        return patterns;
+    }
+
+    public void setPatterns(Map<String, String> patterns) {
+        this.patterns = patterns;
+    }
+
+    /**
+     * @return the replacement of the sensitive values
+     */
+    public String getReplacement() {
+        return replacement;
+    }
+
+    public void setReplacement(String replacement) {
+        this.replacement = replacement;
+    }
+
+}
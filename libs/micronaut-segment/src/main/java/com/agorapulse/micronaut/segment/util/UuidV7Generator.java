@@ -0,0 +1,54 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the time-ordered UUIDs version 7 as defined by RFC 9562.
+ *
+ * The first 48 bits hold the timestamp in milliseconds followed by 74 random bits. The random bits come from
+ * {@link ThreadLocalRandom} so the calling threads never compete for the shared generator as they do with
+ * {@link UUID#randomUUID()}. The IDs only need to be unique, they are not used for any security purpose.
+ */
+public final class UuidV7Generator implements MessageIdGenerator {
+
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long RANDOM_A_MASK = 0x0FFFL;
+    private static final long RANDOM_B_MASK = 0x3FFFFFFFFFFFFFFFL;
+    private static final long TIMESTAMP_MASK = 0xFFFFFFFFFFFFL;
+
+    @Override
+    public String generate(long timestamp) {
+        return next(timestamp).toString();
+    }
+
+    /**
+     * @param timestamp the time in milliseconds since the epoch
+     * @return new UUID version 7 for given time
+     */
+    public UUID next(long timestamp) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (timestamp & TIMESTAMP_MASK) << 16 | VERSION | random.nextLong() & RANDOM_A_MASK;
+        long leastSigBits = VARIANT | random.nextLong() & RANDOM_B_MASK;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalAmount;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Converts the values of the properties, traits and context into the types which serialize into JSON deterministically
+ * and without the reflection.
+ *
+ * <ul>
+ *     <li>strings, numbers including <code>BigDecimal</code> and booleans are kept as they are</li>
+ *     <li>dates and <code>java.time</code> values become ISO-8601 strings</li>
+ *     <li>enums become their names</li>
+ *     <li>other character sequences and UUIDs become strings</li>
+ *     <li>maps, collections and arrays are converted recursively, the <code>null</code> values are removed from the maps</li>
+ *     <li>{@link FrozenMap} instances and the maps and collections already produced by the converter are kept as they are</li>
+ *     <li>other types are converted by the custom converters or kept as they are</li>
+ * </ul>
+ *
+ * The values produced by the custom converters are converted as well, up to {@link #MAX_CUSTOM_DEPTH} nested custom
+ * conversions, so converters referencing each other's types cannot loop forever. The values nested deeper are replaced
+ * by their string representation.
+ *
+ * The converter for each class is resolved only once and cached.
+ */
+public final class ValueConverter {
+
+    /**
+     * The converter without any custom conversions.
+     */
+    public static final ValueConverter DEFAULT = new ValueConverter(Collections.emptyMap());
+
+    /**
+     * The maximal number of the custom conversions nested in each other.
+     */
+    public static final int MAX_CUSTOM_DEPTH = 16;
+
+    private static final Conversion IDENTITY = (value, depth) -> value;
+
+    private final Map<Class<?>, Function<Object, Object>> custom;
+
+    private final ClassValue<Conversion> converters = new ClassValue<Conversion>() {
+        @Override
+        protected Conversion computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    /**
+     * @param custom the custom conversions by the source type, also used for the subclasses of the source type
+     */
+    public ValueConverter(Map<Class<?>, Function<Object, Object>> custom) {
+        this.custom = new LinkedHashMap<>(custom);
+    }
+
+    public Object convert(Object value) {
+        return convert(value, 0);
+    }
+
+    private Object convert(Object value, int depth) {
+        if (value == null) {
+            return null;
+        }
+        return converters.get(value.getClass()).apply(value, depth);
+    }
+
+    private Conversion resolve(Class<?> type) {
+        Function<Object, Object> customConverter = findCustom(type);
+        if (customConverter != null) {
+            // the custom converter might produce a map or a collection of the values which needs conversion as well
+            return (value, depth) -> {
+                if (depth >= MAX_CUSTOM_DEPTH) {
+                    return value.toString();
+                }
+                Object converted = customConverter.apply(value);
+                return converted == null || converted.getClass() == type ? converted : convert(converted, depth + 1);
+            };
+        }
+
+        if (type == String.class || type == Boolean.class || Number.class.isAssignableFrom(type)) {
+            return IDENTITY;
+        }
+        if (CharSequence.class.isAssignableFrom(type) || type == UUID.class || type == Character.class) {
+            return (value, depth) -> value.toString();
+        }
+        if (Enum.class.isAssignableFrom(type)) {
+            return (value, depth) -> ((Enum<?>) value).name();
+        }
+        if (Date.class.isAssignableFrom(type)) {
+            // java.sql.Date does not support toInstant()
+            return (value, depth) -> Instant.ofEpochMilli(((Date) value).getTime()).toString();
+        }
+        if (type == ZonedDateTime.class) {
+            // the default format appends the zone ID in brackets which is not valid ISO-8601
+            return (value, depth) -> DateTimeFormatter.ISO_OFFSET_DATE_TIME.format((ZonedDateTime) value);
+        }
+        if (TemporalAccessor.class.isAssignableFrom(type) || TemporalAmount.class.isAssignableFrom(type)) {
+            return (value, depth) -> value.toString();
+        }
+        if (type == FrozenMap.class || type == ConvertedMap.class || type == ConvertedList.class) {
+            // already converted, e.g. when frozen or when the values of one builder are passed to another one
+            return IDENTITY;
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return (value, depth) -> convertMap((Map<?, ?>) value, depth);
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return (value, depth) -> convertCollection((Collection<?>) value, depth);
+        }
+        if (type.isArray() && !type.getComponentType().isPrimitive()) {
+            return (value, depth) -> convertArray((Object[]) value, depth);
+        }
+        return IDENTITY;
+    }
+
+    private Function<Object, Object> findCustom(Class<?> type) {
+        if (custom.isEmpty()) {
+            return null;
+        }
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            Function<Object, Object> converter = custom.get(current);
+            if (converter != null) {
+                return converter;
+            }
+            for (Class<?> implemented : current.getInterfaces()) {
+                converter = findCustom(implemented);
+                if (converter != null) {
+                    return converter;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Map<Object, Object> convertMap(Map<?, ?> map, int depth) {
+        Map<Object, Object> converted = new ConvertedMap(map.size() * 4 / 3 + 1);
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (entry.getValue() != null) {
+                converted.put(entry.getKey(), convert(entry.getValue(), depth));
+            }
+        }
+        return converted;
+    }
+
+    private List<Object> convertCollection(Collection<?> collection, int depth) {
+        List<Object> converted = new ConvertedList(collection.size());
+        for (Object item : collection) {
+            converted.add(convert(item, depth));
+        }
+        return converted;
+    }
+
+    private List<Object> convertArray(Object[] array, int depth) {
+        List<Object> converted = new ConvertedList(array.length);
+        for (Object item : array) {
+            converted.add(convert(item, depth));
+        }
+        return converted;
+    }
+
+    // the depth is the number of the custom conversions the value is nested in
+    @FunctionalInterface
+    private interface Conversion {
+
+        Object apply(Object value, int depth);
+
+    }
+
+    // marks the copies made by the converter so they are not copied again when added to another builder
+    private static final class ConvertedMap extends LinkedHashMap<Object, Object> {
+
+        ConvertedMap(int capacity) {
+            super(capacity);
+        }
+
+    }
+
+    private static final class ConvertedList extends ArrayList<Object> {
+
+        ConvertedList(int capacity) {
+            super(capacity);
+        }
+
+    }
+
+}
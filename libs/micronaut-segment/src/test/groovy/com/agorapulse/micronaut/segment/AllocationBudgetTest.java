@@ -0,0 +1,177 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment;
+
+import com.segment.analytics.Analytics;
+import com.segment.analytics.messages.AliasMessage;
+import com.segment.analytics.messages.GroupMessage;
+import com.segment.analytics.messages.IdentifyMessage;
+import com.segment.analytics.messages.PageMessage;
+import com.segment.analytics.messages.ScreenMessage;
+import com.segment.analytics.messages.TrackMessage;
+import io.micronaut.context.ApplicationContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+/**
+ * Guards the number of bytes allocated by the calling thread for a single call of {@link SegmentService}.
+ *
+ * Each call is compared with the baseline enqueueing the equivalent message with a unique ID and the timestamp already set
+ * directly into a plain {@link Analytics} built without any interceptors or callbacks of this library, so the budgets
+ * only cover the allocations of this library and do not depend on the version of the Segment library. The budgets were obtained by running the same calls through the service code
+ * with the Segment message builders replaced by plain holders on JDK 17 (alias 376 bytes, the other builder calls
+ * 624 bytes and the map overloads 952 to 960 bytes) and rounding up with a headroom of about 25 %. When a change
+ * legitimately increases the allocations, update the budget using the value reported in the failure message.
+ */
+class AllocationBudgetTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 20_000;
+
+    private static final String USER_ID = "user-id";
+    private static final String GROUP_ID = "group-id";
+    private static final String EVENT = "Order Completed";
+    private static final String NAME = "Checkout";
+    private static final String CATEGORY = "Shop";
+
+    private static final Map<String, Object> PROPERTIES = Collections.singletonMap("category", CATEGORY);
+    private static final Map<String, Object> OPTIONS = Collections.singletonMap("language", "cs");
+    // generated upfront so the baseline does not pay for the unique message IDs
+    private static final String[] MESSAGE_IDS = new String[WARMUP + ITERATIONS];
+    private static final Date TIMESTAMP = new Date();
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static ApplicationContext context;
+    private static SegmentService service;
+    private static Analytics analytics;
+    private static InMemorySegmentClient client;
+    private static InMemorySegmentClient baselineClient;
+    private static int nextMessageId;
+
+    @BeforeAll
+    static void setupTest() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("segment.api-key", "some-api-key");
+        properties.put("segment.test.in-memory-client", true);
+
+        context = ApplicationContext.run(properties);
+        service = context.getBean(SegmentService.class);
+        client = context.getBean(InMemorySegmentClient.class);
+
+        baselineClient = new InMemorySegmentClient();
+        analytics = Analytics.builder("some-api-key").client(baselineClient).build();
+
+        for (int i = 0; i < MESSAGE_IDS.length; i++) {
+            MESSAGE_IDS[i] = "message-id-" + i;
+        }
+    }
+
+    @AfterAll
+    static void cleanupTest() {
+        analytics.shutdown();
+        context.close();
+    }
+
+    @TestFactory
+    Stream<DynamicTest> allocations_within_budget() {
+        return Stream.of(
+            budget("alias", 500,
+                () -> service.alias(GROUP_ID, USER_ID),
+                () -> analytics.enqueue(AliasMessage.builder(GROUP_ID).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("group", 800,
+                () -> service.group(USER_ID, GROUP_ID, b -> b.traits("category", CATEGORY)),
+                () -> analytics.enqueue(GroupMessage.builder(GROUP_ID).traits(PROPERTIES).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("identify", 800,
+                () -> service.identify(USER_ID, b -> b.traits("category", CATEGORY)),
+                () -> analytics.enqueue(IdentifyMessage.builder().traits(PROPERTIES).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("page", 800,
+                () -> service.page(USER_ID, NAME, b -> b.properties("category", CATEGORY)),
+                () -> analytics.enqueue(PageMessage.builder(NAME).properties(PROPERTIES).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("screen", 800,
+                () -> service.screen(USER_ID, NAME, b -> b.properties("category", CATEGORY)),
+                () -> analytics.enqueue(ScreenMessage.builder(NAME).properties(PROPERTIES).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("track", 800,
+                () -> service.track(USER_ID, EVENT, b -> b.properties("category", CATEGORY)),
+                () -> analytics.enqueue(TrackMessage.builder(EVENT).properties(PROPERTIES).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("group with map", 1_200,
+                () -> service.group(USER_ID, GROUP_ID, PROPERTIES, OPTIONS),
+                () -> analytics.enqueue(GroupMessage.builder(GROUP_ID).traits(PROPERTIES).context(OPTIONS).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("identify with map", 1_200,
+                () -> service.identify(USER_ID, PROPERTIES, new Date(), OPTIONS),
+                () -> analytics.enqueue(IdentifyMessage.builder().traits(PROPERTIES).context(OPTIONS).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("page with map", 1_200,
+                () -> service.page(USER_ID, NAME, CATEGORY, PROPERTIES, new Date(), OPTIONS),
+                () -> analytics.enqueue(PageMessage.builder(NAME).properties(PROPERTIES).context(OPTIONS).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("screen with map", 1_200,
+                () -> service.screen(USER_ID, NAME, CATEGORY, PROPERTIES, new Date(), OPTIONS),
+                () -> analytics.enqueue(ScreenMessage.builder(NAME).properties(PROPERTIES).context(OPTIONS).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP))),
+            budget("track with map", 1_200,
+                () -> service.track(USER_ID, EVENT, PROPERTIES, new Date(), OPTIONS),
+                () -> analytics.enqueue(TrackMessage.builder(EVENT).properties(PROPERTIES).context(OPTIONS).userId(USER_ID).messageId(messageId()).timestamp(TIMESTAMP)))
+        );
+    }
+
+    private static DynamicTest budget(String name, long maxBytes, Runnable call, Runnable baseline) {
+        return dynamicTest(name, () -> {
+            assumeTrue(THREADS.isThreadAllocatedMemorySupported(), "Thread allocation measurement is not supported");
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+
+            // the uploaded batches are not needed, keep the heap small
+            client.getBatches().clear();
+            baselineClient.getBatches().clear();
+
+            long library = allocatedPerCall(baseline);
+            long allocated = allocatedPerCall(call) - library;
+
+            assertTrue(allocated <= maxBytes, () -> name + " allocated " + allocated + " bytes per call over the " + library + " bytes allocated by the Segment library, the budget is " + maxBytes + " bytes");
+        });
+    }
+
+    private static long allocatedPerCall(Runnable call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+
+        long before = THREADS.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        long after = THREADS.getCurrentThreadAllocatedBytes();
+
+        return (after - before) / ITERATIONS;
+    }
+
+    private static String messageId() {
+        return MESSAGE_IDS[nextMessageId++ % MESSAGE_IDS.length];
+    }
+
+}
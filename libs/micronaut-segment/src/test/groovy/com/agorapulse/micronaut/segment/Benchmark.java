@@ -0,0 +1,138 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the average latency of the operations run concurrently by the given number of threads.
+ *
+ * Shared by the benchmarks run with <code>SEGMENT_BENCHMARK=true</code>. The benchmarks compare the candidate with
+ * the baseline measured in the same run, so the assertions do not depend on the speed of the machine.
+ */
+public final class Benchmark {
+
+    /**
+     * The factor by which the candidate may exceed the baseline due to the measurement noise.
+     */
+    public static final double NOISE = 1.1;
+
+    private static final int WARMUP_DIVISOR = 10;
+
+    private static final LongAdder BLACKHOLE = new LongAdder();
+
+    /**
+     * The operations measured by the benchmark.
+     */
+    @FunctionalInterface
+    public interface Loop {
+
+        /**
+         * @param thread the index of the thread running the operations, starting with zero
+         * @param operations the number of the operations to run
+         * @return any value computed from the results so the operations are not eliminated
+         */
+        long run(int thread, int operations) throws Exception;
+
+    }
+
+    private Benchmark() { }
+
+    /**
+     * @return <code>true</code> if the benchmarks should run
+     */
+    public static boolean isEnabled() {
+        String enabled = System.getenv("SEGMENT_BENCHMARK");
+        return enabled != null && !enabled.isEmpty();
+    }
+
+    /**
+     * Runs a tenth of the operations to warm up and then measures all of them.
+     *
+     * @param threads the number of the threads running the operations at once
+     * @param operations the total number of the operations split between the threads
+     * @param loop the operations
+     * @return the average latency of a single operation in nanoseconds as observed by the calling threads
+     */
+    public static double measure(int threads, int operations, Loop loop) throws InterruptedException {
+        run(threads, Math.max(threads, operations / WARMUP_DIVISOR), loop);
+        return run(threads, operations, loop);
+    }
+
+    /**
+     * Prints the results as a table.
+     *
+     * @param columns the names of the columns, the first one is the name of the row
+     * @param rows the results by the name of the row
+     */
+    public static void report(List<String> columns, Map<?, List<Double>> rows) {
+        StringBuilder table = new StringBuilder();
+        for (String column : columns) {
+            table.append(String.format("%16s", column));
+        }
+        rows.forEach((name, values) -> {
+            table.append(System.lineSeparator()).append(String.format("%16s", name));
+            for (Double value : values) {
+                table.append(String.format("%16.1f", value));
+            }
+        });
+        System.out.println(table);
+    }
+
+    private static double run(int threads, int operations, Loop loop) throws InterruptedException {
+        int perThread = Math.max(1, operations / threads);
+        LongAdder nanos = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Throwable> failures = new ArrayList<>();
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    long begin = System.nanoTime();
+                    long result = loop.run(thread, perThread);
+                    nanos.add(System.nanoTime() - begin);
+                    BLACKHOLE.add(result);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Benchmark failed", failures.get(0));
+        }
+
+        return nanos.sum() / (double) ((long) perThread * threads);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment;
+
+import com.agorapulse.micronaut.segment.client.ClientSupport;
+import io.micronaut.context.annotation.Replaces;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.util.StringUtils;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Segment client keeping the uploaded batches in memory instead of sending them over the network.
+ */
+@Singleton
+@Named("segment")
+@Requires(property = "segment.test.in-memory-client", value = StringUtils.TRUE)
+@Replaces(value = Client.class, factory = SegmentFactory.class, named = "segment")
+public class InMemorySegmentClient implements Client {
+
+    private final List<String> batches = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger messages = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private volatile boolean available = true;
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        requests.incrementAndGet();
+
+        byte[] body = ClientSupport.readBody(request.getBody());
+
+        if (!available) {
+            return new Response(request.getUrl(), 503, "Service Unavailable", Collections.emptyList(), new TypedString("{}"));
+        }
+
+        batches.add(new String(body, StandardCharsets.UTF_8));
+        messages.addAndGet(ClientSupport.countMessages(body));
+
+        return new Response(request.getUrl(), 200, "OK", Collections.emptyList(), new TypedString("{\"success\":true}"));
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    /**
+     * @return the successfully uploaded batches
+     */
+    public List<String> getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return the number of messages in the successfully uploaded batches
+     */
+    public int getMessages() {
+        return messages.get();
+    }
+
+    /**
+     * @return the number of all the requests including the failed ones
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment
+
+import com.agorapulse.micronaut.segment.client.BatchSplittingClient
+import com.google.gson.Gson
+import com.jakewharton.retrofit.Ok3Client
+import com.segment.analytics.Analytics
+import com.segment.analytics.messages.Message
+import com.segment.analytics.messages.MessageBuilder
+import com.segment.analytics.messages.TrackMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import okhttp3.OkHttpClient
+import retrofit.client.Request
+import retrofit.client.Response
+import retrofit.mime.TypedString
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+@CompileDynamic
+class MessageSizeSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final String EVENT = 'Large Event'
+    private static final String LARGE = 'x' * 40_000
+
+    @AutoCleanup ApplicationContext context
+    @AutoCleanup SegmentStubServer stub = new SegmentStubServer()
+
+    List<Message> queue = []
+
+    Analytics analytics = Mock {
+        enqueue(_ as MessageBuilder) >> { MessageBuilder builder ->
+            queue << builder.build()
+        }
+    }
+
+    void 'oversized messages are rejected by default'() {
+        given:
+            SegmentService service = createService([:])
+        when:
+            service.track(USER_ID, EVENT) {
+                it.properties('large', LARGE)
+            }
+            service.track(USER_ID, EVENT) {
+                it.properties('small', 'value')
+            }
+        then:
+            queue.size() == 1
+            (queue.first() as TrackMessage).properties() == [small: 'value']
+    }
+
+    void 'largest properties are removed with truncate policy'() {
+        given:
+            SegmentService service = createService('segment.message-size.policy': 'truncate')
+        when:
+            service.track(USER_ID, EVENT) {
+                it.properties('large', LARGE).properties('small', 'value')
+            }
+        then:
+            queue.size() == 1
+            (queue.first() as TrackMessage).properties() == [small: 'value']
+    }
+
+    void 'oversized batches are split'() {
+        given:
+            SegmentConfiguration.MessageSizeConfiguration configuration = new SegmentConfiguration.MessageSizeConfiguration(
+                maxBatchBytes: 1000,
+                maxMessageBytes: 500,
+            )
+            BatchSplittingClient client = new BatchSplittingClient(new Ok3Client(new OkHttpClient()), configuration)
+            Gson gson = new Gson()
+            List<Map<String, Object>> messages = (1..10).collect { [messageId: "message-$it".toString(), payload: 'y' * 150] }
+            messages << [messageId: 'oversized', payload: 'z' * 600]
+        when:
+            Response response = client.execute(new Request(
+                'POST',
+                "$stub.url/v1/import",
+                [],
+                new TypedString(gson.toJson([batch: messages, sentAt: '2026-10-19T10:00:00Z']))
+            ))
+            List<Map<String, Object>> batches = stub.bodies.collect { gson.fromJson(it, Map) }
+        then:
+            response.status == 200
+            batches.size() > 1
+            stub.bodies.every { it.bytes.length <= 1000 }
+            batches.every { it.sentAt == '2026-10-19T10:00:00Z' }
+            batches.collectMany { it.batch*.messageId } == (1..10).collect { "message-$it".toString() }
+    }
+
+    void 'splitting stops at the first failed batch'() {
+        given:
+            stub.respond(200).respond(503)
+            SegmentConfiguration.MessageSizeConfiguration configuration = new SegmentConfiguration.MessageSizeConfiguration(
+                maxBatchBytes: 1000,
+                maxMessageBytes: 500,
+            )
+            BatchSplittingClient client = new BatchSplittingClient(new Ok3Client(new OkHttpClient()), configuration)
+            List<Map<String, Object>> messages = (1..20).collect { [messageId: "message-$it".toString(), payload: 'y' * 150] }
+        when:
+            Response response = client.execute(new Request(
+                'POST',
+                "$stub.url/v1/import",
+                [],
+                new TypedString(new Gson().toJson([batch: messages]))
+            ))
+        then:
+            response.status == 503
+            stub.bodies.size() == 2
+    }
+
+    private SegmentService createService(Map<String, Object> properties) {
+        context = ApplicationContext.builder([('segment.api-key'): 'some-api-key'] + properties).build()
+        context.registerSingleton(Analytics, analytics)
+        context.start()
+        return context.getBean(SegmentService)
+    }
+
+}
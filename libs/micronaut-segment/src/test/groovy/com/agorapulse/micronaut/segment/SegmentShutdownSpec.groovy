@@ -0,0 +1,111 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment
+
+import com.segment.analytics.Analytics
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+@CompileDynamic
+class SegmentShutdownSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final int EVENTS = 100
+
+    @TempDir Path spool
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'queued messages are uploaded before the shutdown'() {
+        given:
+            ApplicationContext context = createContext([:])
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+            SegmentService service = context.getBean(SegmentService)
+        when:
+            EVENTS.times { service.track(USER_ID, "Event $it") }
+            context.close()
+        then:
+            client.messages == EVENTS
+    }
+
+    void 'spilled batches are uploaded before the shutdown'() {
+        given:
+            ApplicationContext context = createContext(
+                'segment.resilience.enabled': true,
+                'segment.resilience.max-attempts': 1,
+            )
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+            SegmentService service = context.getBean(SegmentService)
+            SegmentStatistics statistics = context.getBean(SegmentStatistics)
+            client.available = false
+        when:
+            EVENTS.times { service.track(USER_ID, "Event $it") }
+            context.getBean(Analytics).flush()
+        then:
+            conditions.eventually {
+                assert client.requests > 0
+                assert statistics.inFlight == 0
+            }
+            statistics.succeeded == EVENTS
+            statistics.delivered == 0
+
+        when:
+            client.available = true
+            context.close()
+        then:
+            client.messages == EVENTS
+            statistics.delivered == EVENTS
+    }
+
+    void 'batches which cannot be uploaded are written to the spool'() {
+        given:
+            ApplicationContext context = createContext(
+                'segment.resilience.enabled': true,
+                'segment.resilience.max-attempts': 1,
+                'segment.shutdown.drain-timeout': '200ms',
+                'segment.spool.enabled': true,
+                'segment.spool.directory': spool.toString(),
+            )
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+            SegmentService service = context.getBean(SegmentService)
+            client.available = false
+        when:
+            EVENTS.times { service.track(USER_ID, "Event $it") }
+            context.close()
+            List<Path> files = Files.list(spool).withCloseable { it.toList() }
+        then:
+            client.messages == 0
+            files.size() == 1
+            files.first().text.readLines().every { it.contains(USER_ID) }
+    }
+
+    private static ApplicationContext createContext(Map<String, Object> properties) {
+        return ApplicationContext.run([
+            'segment.api-key'                : 'some-api-key',
+            'segment.flush-interval'         : '1h',
+            'segment.test.in-memory-client'  : true,
+        ] + properties)
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Local stub of the Segment API which can inject the faults.
+ */
+public class SegmentStubServer implements AutoCloseable {
+
+    private static final byte[] SUCCESS = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+    private static final String HEAD = "HEAD";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private final HttpServer server;
+    private final String scheme;
+    private final Path keyStore;
+    private final Queue<StubResponse> responses = new ConcurrentLinkedQueue<>();
+    private final List<String> bodies = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    public SegmentStubServer() throws IOException {
+        this(HttpServer.create(new InetSocketAddress("localhost", 0), 0), "http", null);
+    }
+
+    private SegmentStubServer(HttpServer server, String scheme, Path keyStore) {
+        this.server = server;
+        this.scheme = scheme;
+        this.keyStore = keyStore;
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Creates the stub serving HTTPS with the self-signed certificate for <code>localhost</code>.
+     *
+     * @return the HTTPS stub
+     * @see #getKeyStore()
+     */
+    public static SegmentStubServer https() throws IOException, GeneralSecurityException, InterruptedException {
+        Path keyStore = Files.createTempDirectory("segment-stub").resolve("stub.p12");
+
+        Process keytool = new ProcessBuilder(Arrays.asList(
+            Paths.get(System.getProperty("java.home"), "bin", "keytool").toString(),
+            "-genkeypair",
+            "-alias", "stub",
+            "-keyalg", "EC",
+            "-groupname", "secp256r1",
+            "-dname", "CN=localhost",
+            "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+            "-validity", "1",
+            "-storetype", "PKCS12",
+            "-keystore", keyStore.toString(),
+            "-storepass", new String(PASSWORD),
+            "-keypass", new String(PASSWORD)
+        )).redirectErrorStream(true).start();
+
+        if (keytool.waitFor() != 0) {
+            throw new IllegalStateException("Cannot generate the certificate for the stub");
+        }
+
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStore)) {
+            store.load(in, PASSWORD);
+        }
+
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(store, PASSWORD);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), null, null);
+
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        return new SegmentStubServer(server, "https", keyStore);
+    }
+
+    public String getUrl() {
+        return scheme + "://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return the PKCS12 key store with the certificate of the HTTPS stub, protected by <code>changeit</code> password
+     */
+    public Path getKeyStore() {
+        return keyStore;
+    }
+
+    public SegmentStubServer respond(int status) {
+        return respond(status, Collections.emptyMap());
+    }
+
+    public SegmentStubServer respond(int status, Map<String, String> headers) {
+        responses.add(new StubResponse(status, headers));
+        return this;
+    }
+
+    /**
+     * @return bodies of all the requests received by the stub, including the failed ones
+     */
+    public List<String> getBodies() {
+        return bodies;
+    }
+
+    /**
+     * @return the methods and the paths of all the requests received by the stub, e.g. <code>POST /v1/import</code>
+     */
+    public List<String> getRequests() {
+        return requests;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        if (keyStore != null) {
+            try {
+                Files.deleteIfExists(keyStore);
+                Files.deleteIfExists(keyStore.getParent());
+            } catch (IOException ignored) {
+                // only a temporary file
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+
+        if (HEAD.equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            bodies.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        }
+
+        StubResponse response = responses.poll();
+        int status = response == null ? 200 : response.status;
+        if (response != null) {
+            response.headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        }
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, SUCCESS.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(SUCCESS);
+        }
+    }
+
+    private static final class StubResponse {
+
+        private final int status;
+        private final Map<String, String> headers;
+
+        StubResponse(int status, Map<String, String> headers) {
+            this.status = status;
+            this.headers = headers;
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client
+
+import com.agorapulse.micronaut.segment.SegmentService
+import com.agorapulse.micronaut.segment.SegmentStubServer
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import io.micronaut.inject.qualifiers.Qualifiers
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import javax.net.SocketFactory
+
+@CompileDynamic
+class HttpTransportSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+
+    @AutoCleanup SegmentStubServer stub = SegmentStubServer.https()
+    @AutoCleanup ApplicationContext context
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'http client is configured'() {
+        when:
+            createContext(
+                'segment.http.connect-timeout'     : '1s',
+                'segment.http.read-timeout'        : '2s',
+                'segment.http.write-timeout'       : '3s',
+                'segment.http.max-idle-connections': 2,
+                'segment.http.http2'               : false,
+            )
+            OkHttpClient client = httpClient()
+        then:
+            client.connectTimeoutMillis() == 1000
+            client.readTimeoutMillis() == 2000
+            client.writeTimeoutMillis() == 3000
+            client.protocols() == [Protocol.HTTP_1_1]
+            client.socketFactory() instanceof TcpNoDelaySocketFactory
+    }
+
+    void 'tcp no delay can be disabled'() {
+        when:
+            createContext('segment.http.tcp-no-delay': false)
+        then:
+            httpClient().socketFactory() == SocketFactory.default
+            httpClient().protocols() == [Protocol.HTTP_2, Protocol.HTTP_1_1]
+    }
+
+    void 'sockets are created with tcp no delay'() {
+        given:
+            SocketFactory factory = new TcpNoDelaySocketFactory(SocketFactory.default)
+        expect:
+            factory.createSocket().withCloseable { it.tcpNoDelay }
+    }
+
+    void 'connection is opened at the startup and reused by the upload'() {
+        given:
+            createContext('segment.http.prewarm': true)
+            OkHttpClient client = httpClient()
+        when:
+            context.getBean(SegmentService)
+        then:
+            conditions.eventually {
+                assert stub.requests == ['HEAD /']
+                assert client.connectionPool().connectionCount() == 1
+            }
+        when:
+            context.getBean(SegmentService).track(USER_ID, 'Event')
+            context.getBean(SegmentService).flush()
+        then:
+            conditions.eventually {
+                assert stub.requests == ['HEAD /', 'POST /v1/import']
+            }
+            client.connectionPool().connectionCount() == 1
+    }
+
+    void 'connection is not opened at the startup by default'() {
+        when:
+            createContext([:])
+            context.getBean(SegmentService)
+            Thread.sleep(100)
+        then:
+            stub.requests.empty
+            httpClient().connectionPool().connectionCount() == 0
+    }
+
+    private OkHttpClient httpClient() {
+        return context.getBean(OkHttpClient, Qualifiers.byName('segment'))
+    }
+
+    private void createContext(Map<String, Object> properties) {
+        context = ApplicationContext.run([
+            'segment.api-key'         : 'some-api-key',
+            'segment.endpoint'        : stub.url,
+            'segment.flush-interval'  : '1h',
+            'segment.test.trust-store': stub.keyStore.toString(),
+        ] + properties)
+    }
+
+}
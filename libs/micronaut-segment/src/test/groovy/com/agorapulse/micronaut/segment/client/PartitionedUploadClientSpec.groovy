@@ -0,0 +1,167 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration
+import com.google.gson.Gson
+import retrofit.client.Client
+import retrofit.client.Request
+import retrofit.client.Response
+import retrofit.mime.TypedString
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class PartitionedUploadClientSpec extends Specification {
+
+    private static final int PARALLELISM = 4
+
+    Gson gson = new Gson()
+    UploadSequencer sequencer = new UploadSequencer()
+    ExecutorService[] workers = (1..PARALLELISM).collect { Executors.newSingleThreadExecutor() } as ExecutorService[]
+
+    AtomicInteger inFlight = new AtomicInteger()
+    AtomicInteger maxInFlight = new AtomicInteger()
+    List<Map<String, Object>> uploaded = Collections.synchronizedList([])
+    int status = 200
+
+    Client delegate = { Request request ->
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max)
+        try {
+            Thread.sleep(50)
+            uploaded << gson.fromJson(new String(ClientSupport.readBody(request.body), 'UTF-8'), Map)
+            return new Response(request.url, status, 'OK', [], new TypedString('{"success":true}'))
+        } finally {
+            inFlight.decrementAndGet()
+        }
+    } as Client
+
+    PartitionedUploadClient client = new PartitionedUploadClient(delegate, workers, sequencer)
+
+    void cleanup() {
+        workers*.shutdown()
+    }
+
+    void 'messages of the same user are uploaded together in order'() {
+        given:
+            List<Map<String, Object>> messages = (1..100).collect { [messageId: "message-$it".toString(), userId: "user-${it % 10}".toString()] }
+        when:
+            Response response = client.execute(batch(messages))
+        then:
+            response.status == 200
+            uploaded.size() > 1
+            maxInFlight.get() > 1
+            uploaded.every { it.sentAt == '2026-10-19T10:00:00Z' }
+            uploaded.collectMany { it.batch }.size() == 100
+
+            uploaded.collectMany { it.batch*.userId.unique() }.size() == 10
+            uploaded.every { upload ->
+                upload.batch.groupBy { it.userId }.every { userId, userMessages ->
+                    userMessages*.messageId == messages.findAll { it.userId == userId }*.messageId
+                }
+            }
+    }
+
+    void 'anonymous users are partitioned by the anonymous id'() {
+        given:
+            List<Map<String, Object>> messages = (1..20).collect { [messageId: "message-$it".toString(), anonymousId: 'anonymous'] }
+        when:
+            client.execute(batch(messages))
+        then:
+            uploaded.size() == 1
+            uploaded.first().batch*.messageId == messages*.messageId
+    }
+
+    void 'failure of any partition is reported'() {
+        given:
+            status = 503
+        when:
+            Response response = client.execute(batch((1..10).collect { [messageId: "message-$it".toString(), userId: "user-$it".toString()] }))
+        then:
+            response.status == 503
+    }
+
+    void 'messages are copied into the partitions unchanged'() {
+        given:
+            List<Map<String, Object>> messages = (1..10).collect {
+                [messageId: "message-$it".toString(), userId: it % 2 ? "user-$it".toString() : it, properties: [total: 4.5, tags: ['a', null, true], nested: [empty: [:]]]]
+            }
+        when:
+            client.execute(batch(messages))
+        then:
+            uploaded.collectMany { it.batch }.sort { it.messageId } == gson.fromJson(gson.toJson(messages), List).sort { it.messageId }
+    }
+
+    void 'failed partition is retried on its own by the resilient client'() {
+        given:
+            SegmentConfiguration.ResilienceConfiguration resilience = new SegmentConfiguration.ResilienceConfiguration(
+                enabled: true,
+                maxAttempts: 3,
+                initialBackoff: Duration.ofMillis(1),
+                maxBackoff: Duration.ofMillis(50),
+                failureThreshold: 3,
+                openDuration: Duration.ofMillis(200),
+            )
+            AtomicInteger failures = new AtomicInteger(1)
+            Client failingOnce = { Request request ->
+                Map<String, Object> body = gson.fromJson(new String(ClientSupport.readBody(request.body), 'UTF-8'), Map)
+                if (body.batch*.userId.contains('user-1') && failures.getAndDecrement() > 0) {
+                    return new Response(request.url, 503, 'Service Unavailable', [], new TypedString('{}'))
+                }
+                uploaded << body
+                return new Response(request.url, 200, 'OK', [], new TypedString('{"success":true}'))
+            } as Client
+            ResilientClient resilient = new ResilientClient(failingOnce, resilience, new CircuitBreaker(3, Duration.ofMillis(200)), new SpillBuffer(1024))
+            PartitionedUploadClient partitioned = new PartitionedUploadClient(resilient, workers, sequencer)
+            List<Map<String, Object>> messages = (1..40).collect { [messageId: "message-$it".toString(), userId: "user-${it % 4}".toString()] }
+        when:
+            Response response = partitioned.execute(batch(messages))
+        then:
+            response.status == 200
+            failures.get() < 0
+            uploaded.collectMany { it.batch }*.messageId.sort() == messages*.messageId.sort()
+    }
+
+    void 'batches are handed over in the order they were created'() {
+        given:
+            List<Long> handedOver = Collections.synchronizedList([])
+            long first = sequencer.issue()
+            long second = sequencer.issue()
+        when:
+            Thread secondThread = Thread.start {
+                sequencer.enter(second)
+                sequencer.await()
+                handedOver << second
+                sequencer.exit(second)
+            }
+            Thread.sleep(50)
+            handedOver << first
+            sequencer.release(first)
+            secondThread.join(1000)
+        then:
+            handedOver == [first, second]
+    }
+
+    private static Request batch(List<Map<String, Object>> messages) {
+        return new Request('POST', 'http://localhost/v1/import', [], new TypedString(new Gson().toJson([batch: messages, sentAt: '2026-10-19T10:00:00Z'])))
+    }
+
+}
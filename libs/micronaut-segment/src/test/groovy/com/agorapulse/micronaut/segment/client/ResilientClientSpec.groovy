@@ -0,0 +1,130 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration
+import com.agorapulse.micronaut.segment.SegmentStubServer
+import com.jakewharton.retrofit.Ok3Client
+import okhttp3.OkHttpClient
+import retrofit.client.Request
+import retrofit.client.Response
+import retrofit.mime.TypedString
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.time.Duration
+
+class ResilientClientSpec extends Specification {
+
+    @AutoCleanup SegmentStubServer stub = new SegmentStubServer()
+
+    SegmentConfiguration.ResilienceConfiguration configuration = new SegmentConfiguration.ResilienceConfiguration(
+        enabled: true,
+        maxAttempts: 3,
+        initialBackoff: Duration.ofMillis(1),
+        maxBackoff: Duration.ofMillis(50),
+        failureThreshold: 3,
+        openDuration: Duration.ofMillis(200),
+    )
+
+    CircuitBreaker circuitBreaker = new CircuitBreaker(configuration.failureThreshold, configuration.openDuration)
+    SpillBuffer spillBuffer = new SpillBuffer(1024)
+
+    ResilientClient client = new ResilientClient(new Ok3Client(new OkHttpClient()), configuration, circuitBreaker, spillBuffer)
+
+    void 'retries server errors and rate limiting'() {
+        given:
+            stub.respond(503).respond(429, ['Retry-After': '0'])
+        when:
+            Response response = client.execute(batch('first'))
+        then:
+            response.status == 200
+            stub.bodies == ['first', 'first', 'first']
+            circuitBreaker.state == CircuitBreaker.State.CLOSED
+            spillBuffer.size() == 0
+    }
+
+    void 'client errors are not retried'() {
+        given:
+            stub.respond(400)
+        when:
+            Response response = client.execute(batch('invalid'))
+        then:
+            response.status == 400
+            stub.bodies == ['invalid']
+    }
+
+    void 'spills while the circuit is open and replays once it recovers'() {
+        given:
+            stub.respond(500).respond(500).respond(500)
+        when:
+            Response response = client.execute(batch('first'))
+        then:
+            response.status == 200
+            response.reason == 'Spilled'
+            circuitBreaker.state == CircuitBreaker.State.OPEN
+            spillBuffer.size() == 1
+
+        when:
+            client.execute(batch('second'))
+        then:
+            stub.bodies.size() == 3
+            spillBuffer.size() == 2
+
+        when:
+            Thread.sleep(configuration.openDuration.toMillis() + 50)
+            response = client.execute(batch('probe'))
+        then:
+            response.status == 200
+            circuitBreaker.state == CircuitBreaker.State.CLOSED
+            spillBuffer.size() == 0
+            stub.bodies.drop(3) == ['probe', 'first', 'second']
+    }
+
+    void 'replays the spilled batches without new uploads'() {
+        given:
+            stub.respond(500).respond(500).respond(500)
+            client.execute(batch('first'))
+        when:
+            client.recover()
+        then:
+            circuitBreaker.state == CircuitBreaker.State.OPEN
+            stub.bodies.size() == 3
+            spillBuffer.size() == 1
+
+        when:
+            Thread.sleep(configuration.openDuration.toMillis() + 50)
+            client.recover()
+        then:
+            circuitBreaker.state == CircuitBreaker.State.CLOSED
+            spillBuffer.size() == 0
+            stub.bodies.drop(3) == ['first']
+    }
+
+    void 'retry after header as a date'() {
+        expect:
+            ResilientClient.parseRetryAfter('10') == Duration.ofSeconds(10).toNanos()
+            ResilientClient.parseRetryAfter('Wed, 21 Oct 2015 07:28:00 GMT') == 0
+            ResilientClient.parseRetryAfter('soon') == -1
+    }
+
+    private Request batch(String body) {
+        return new Request('POST', "$stub.url/v1/import", [], new TypedString(body))
+    }
+
+}
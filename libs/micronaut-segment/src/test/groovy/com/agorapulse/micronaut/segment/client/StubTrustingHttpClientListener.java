@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.client;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.BeanCreatedEvent;
+import io.micronaut.context.event.BeanCreatedEventListener;
+import jakarta.inject.Singleton;
+import okhttp3.OkHttpClient;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Lets the HTTP client trust the self-signed certificate of the HTTPS stub.
+ */
+@Singleton
+@Requires(property = "segment.test.trust-store")
+public class StubTrustingHttpClientListener implements BeanCreatedEventListener<OkHttpClient> {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private final String trustStore;
+
+    public StubTrustingHttpClientListener(@Value("${segment.test.trust-store}") String trustStore) {
+        this.trustStore = trustStore;
+    }
+
+    @Override
+    public OkHttpClient onCreated(BeanCreatedEvent<OkHttpClient> event) {
+        try (InputStream in = Files.newInputStream(Paths.get(trustStore))) {
+            KeyStore store = KeyStore.getInstance("PKCS12");
+            store.load(in, PASSWORD);
+
+            TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagers.init(store);
+            X509TrustManager trustManager = (X509TrustManager) trustManagers.getTrustManagers()[0];
+
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new X509TrustManager[] {trustManager}, null);
+
+            return event.getBean().newBuilder().sslSocketFactory(sslContext.getSocketFactory(), trustManager).build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot load the trust store " + trustStore, e);
+        }
+    }
+
+}
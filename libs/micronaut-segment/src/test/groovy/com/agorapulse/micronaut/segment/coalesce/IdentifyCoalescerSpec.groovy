@@ -0,0 +1,145 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.coalesce
+
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.SegmentConfiguration
+import com.agorapulse.micronaut.segment.SegmentService
+import com.segment.analytics.messages.IdentifyMessage
+import com.segment.analytics.messages.MessageBuilder
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+
+@CompileDynamic
+class IdentifyCoalescerSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final String OTHER_USER_ID = 'other-user-id'
+
+    @AutoCleanup IdentifyCoalescer coalescer
+    @AutoCleanup ApplicationContext context
+
+    List<IdentifyMessage> emitted = new CopyOnWriteArrayList<>()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'traits are merged within the window keeping the latest values'() {
+        given:
+            coalescer = create(Duration.ofMillis(200), 100)
+        when:
+            coalescer.add(identify(USER_ID, [name: 'John', plan: 'free']))
+            coalescer.add(identify(USER_ID, [plan: 'pro']))
+            coalescer.add(identify(OTHER_USER_ID, [name: 'Jane']))
+            coalescer.add(identify(USER_ID, [email: 'john@example.com']))
+        then:
+            emitted.empty
+            coalescer.pendingUsers == 2
+            coalescer.coalesced == 2
+        and:
+            conditions.eventually {
+                emitted.size() == 2
+            }
+            emitted.find { it.userId() == USER_ID }.traits() == [name: 'John', plan: 'pro', email: 'john@example.com']
+            emitted.find { it.userId() == OTHER_USER_ID }.traits() == [name: 'Jane']
+            coalescer.pendingUsers == 0
+    }
+
+    void 'new window starts after the message is sent'() {
+        given:
+            coalescer = create(Duration.ofMillis(100), 100)
+        when:
+            coalescer.add(identify(USER_ID, [plan: 'free']))
+        then:
+            conditions.eventually {
+                emitted.size() == 1
+            }
+        when:
+            coalescer.add(identify(USER_ID, [plan: 'pro']))
+        then:
+            conditions.eventually {
+                emitted.size() == 2
+            }
+            emitted*.traits()*.plan == ['free', 'pro']
+    }
+
+    void 'pending messages are sent on flush'() {
+        given:
+            coalescer = create(Duration.ofHours(1), 100)
+        when:
+            coalescer.add(identify(USER_ID, [plan: 'free']))
+            coalescer.add(identify(USER_ID, [plan: 'pro']))
+            coalescer.flush()
+        then:
+            emitted.size() == 1
+            emitted.first().traits() == [plan: 'pro']
+    }
+
+    void 'messages of the users above the limit are sent immediately'() {
+        given:
+            coalescer = create(Duration.ofHours(1), 1)
+        when:
+            coalescer.add(identify(USER_ID, [plan: 'free']))
+            coalescer.add(identify(OTHER_USER_ID, [plan: 'pro']))
+        then:
+            emitted*.userId() == [OTHER_USER_ID]
+            coalescer.pendingUsers == 1
+    }
+
+    void 'identify calls are coalesced by the segment service'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.api-key': 'apikey',
+                'segment.flush-interval': '1h',
+                'segment.test.in-memory-client': true,
+                'segment.coalescing.enabled': true,
+                'segment.coalescing.window': '1h'
+            )
+            SegmentService service = context.getBean(SegmentService)
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+        when:
+            service.identify(USER_ID) { traits 'name', 'John' }
+            service.identify(USER_ID) { traits 'plan', 'pro' }
+            service.identify(USER_ID) { traits 'plan', 'enterprise' }
+            service.flush()
+        then:
+            conditions.eventually {
+                client.messages == 1
+            }
+            client.batches.first().contains('"name":"John"')
+            client.batches.first().contains('"plan":"enterprise"')
+    }
+
+    private IdentifyCoalescer create(Duration window, int maxUsers) {
+        return new IdentifyCoalescer(
+            new SegmentConfiguration.CoalescingConfiguration(window: window, maxUsers: maxUsers),
+            { MessageBuilder<?, ?> message -> emitted.add(message.build()) },
+            { Runnable runnable -> new Thread(runnable) }
+        )
+    }
+
+    private static IdentifyMessage identify(String userId, Map<String, Object> traits) {
+        return IdentifyMessage.builder().userId(userId).traits(traits).build()
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.flush
+
+import com.agorapulse.micronaut.segment.SegmentConfiguration
+import io.micronaut.context.BeanProvider
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.Executors
+
+class AdaptiveFlushControllerSpec extends Specification {
+
+    SegmentConfiguration configuration = new SegmentConfiguration(
+        adaptive: new SegmentConfiguration.AdaptiveConfiguration(
+            enabled: true,
+            targetLatency: Duration.ofSeconds(1),
+            maxBatchSize: 200,
+            maxBatchBytes: 100_000,
+            minInterval: Duration.ofMillis(500),
+            maxInterval: Duration.ofSeconds(10),
+        )
+    )
+
+    @AutoCleanup('close')
+    AdaptiveFlushController controller = new AdaptiveFlushController(configuration, Mock(BeanProvider), Executors.defaultThreadFactory())
+
+    void 'light traffic is flushed after the target latency'() {
+        when:
+            controller.adapt(0.5, 100, 1000)
+        then:
+            controller.intervalMillis == 1000
+            controller.batchSize == 100
+    }
+
+    void 'traffic of about one message per second is flushed after the target latency'() {
+        when:
+            controller.adapt(1, 100, 500)
+        then:
+            controller.batchSize == 200
+            controller.intervalMillis == 1000
+    }
+
+    void 'heavy traffic waits for the batch to fill up'() {
+        when:
+            controller.adapt(500, 100, 100)
+        then:
+            controller.batchSize == 200
+            controller.intervalMillis == 500
+    }
+
+    void 'target latency is bounded by the intervals'() {
+        when:
+            configuration.adaptive.targetLatency = Duration.ofMinutes(1)
+            controller.adapt(1, 100, 100)
+        then:
+            controller.intervalMillis == 10_000
+        when:
+            configuration.adaptive.targetLatency = Duration.ofMillis(100)
+            controller.adapt(1, 100, 100)
+        then:
+            controller.intervalMillis == 500
+    }
+
+    void 'heavy traffic is not flushed faster than it is uploaded'() {
+        when:
+            controller.adapt(500, 2000, 100)
+        then:
+            controller.intervalMillis == 2000
+    }
+
+    void 'upload latency does not delay the light traffic'() {
+        when:
+            controller.adapt(1, 2000, 1000)
+        then:
+            controller.intervalMillis == 1000
+    }
+
+    void 'batch envelope is not counted into the message size'() {
+        expect:
+            AdaptiveFlushController.estimateMessageBytes(AdaptiveFlushController.BATCH_ENVELOPE_BYTES + 500, 1) == 500
+            AdaptiveFlushController.estimateMessageBytes(AdaptiveFlushController.BATCH_ENVELOPE_BYTES + 1009, 10) == 100
+    }
+
+}
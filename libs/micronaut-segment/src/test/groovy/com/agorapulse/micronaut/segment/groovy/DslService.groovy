@@ -0,0 +1,62 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.groovy
+
+import com.agorapulse.micronaut.segment.SegmentService
+import groovy.transform.CompileStatic
+
+// tag::body[]
+@CompileStatic
+@SegmentDsl
+class DslService {
+
+    private final SegmentService segmentService
+
+    DslService(SegmentService segmentService) {
+        this.segmentService = segmentService
+    }
+
+    void checkout(String userId, String orderId, BigDecimal total) {
+        segmentService.track(userId, 'Order Completed') {
+            properties('orderId', orderId)
+            properties('total', total)
+        }
+    }
+
+    void register(String userId, Map<String, Object> attributes) {
+        segmentService.identify(userId) {
+            attributes.each { String key, Object value ->
+                traits(key, value)
+            }
+        }
+    }
+
+    void view(String userId, String section) {
+        segmentService.page(userId, 'Home') { builder ->
+            builder.properties('section', section)
+        }
+    }
+
+    void join(String userId, String groupId) {
+        segmentService.group(userId, groupId) {
+            it.traits('role', 'admin')
+        }
+    }
+
+}
+// end::body[]
@@ -0,0 +1,46 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.groovy
+
+import groovy.transform.CompileStatic
+
+@CompileStatic
+@SegmentDsl
+class OtherTrackerService {
+
+    final OtherTracker tracker = new OtherTracker()
+    final List<String> tracked = []
+
+    void checkout(String userId) {
+        tracker.track(userId, 'Order Completed') {
+            tracked << userId
+        }
+    }
+
+    static class OtherTracker {
+
+        final List<String> events = []
+
+        void track(String userId, String event, Closure<?> body) {
+            body.call()
+            events << event
+        }
+
+    }
+
+}
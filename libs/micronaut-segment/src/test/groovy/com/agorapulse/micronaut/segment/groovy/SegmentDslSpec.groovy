@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.groovy
+
+import com.agorapulse.micronaut.segment.SegmentService
+import com.segment.analytics.Analytics
+import com.segment.analytics.messages.GroupMessage
+import com.segment.analytics.messages.IdentifyMessage
+import com.segment.analytics.messages.Message
+import com.segment.analytics.messages.MessageBuilder
+import com.segment.analytics.messages.PageMessage
+import com.segment.analytics.messages.TrackMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+@CompileDynamic
+class SegmentDslSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+
+    @AutoCleanup ApplicationContext context
+
+    List<Message> queue = []
+
+    Analytics analytics = Mock {
+        enqueue(_ as MessageBuilder) >> { MessageBuilder builder ->
+            queue << builder.build()
+        }
+    }
+
+    DslService service
+
+    void setup() {
+        context = ApplicationContext.builder('segment.api-key': 'some-api-key').build()
+        context.registerSingleton(Analytics, analytics)
+        context.start()
+        service = new DslService(context.getBean(SegmentService))
+    }
+
+    void 'closures are compiled into builder calls'() {
+        when:
+            service.checkout(USER_ID, 'order-1', 42.0)
+            service.register(USER_ID, [plan: 'pro', seats: 5])
+            service.view(USER_ID, 'header')
+            service.join(USER_ID, 'group-id')
+        then:
+            queue.size() == 4
+            (queue[0] as TrackMessage).properties() == [orderId: 'order-1', total: 42.0]
+            (queue[1] as IdentifyMessage).traits() == [plan: 'pro', seats: 5]
+            (queue[2] as PageMessage).properties() == [section: 'header']
+            (queue[3] as GroupMessage).traits() == [role: 'admin']
+    }
+
+    void 'calls on other types than the segment service are left intact'() {
+        given:
+            OtherTrackerService other = new OtherTrackerService()
+        when:
+            other.checkout(USER_ID)
+        then:
+            other.tracked == [USER_ID]
+            other.tracker.events == ['Order Completed']
+            OtherTrackerService.declaredClasses*.simpleName.any { it.contains('checkout_closure') }
+    }
+
+    void 'builder closures are compiled as lambdas'() {
+        when:
+            List<String> innerClasses = DslService.declaredClasses*.simpleName
+        then:
+            !innerClasses.any { it.contains('checkout_closure') || it.contains('view_closure') || it.contains('join_closure') }
+            innerClasses.any { it.contains('checkout_lambda') }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.health
+
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.SegmentService
+import com.segment.analytics.Analytics
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import io.micronaut.health.HealthStatus
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+@CompileDynamic
+class SegmentHealthIndicatorSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+
+    @AutoCleanup ApplicationContext context
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'reports the uploaded messages'() {
+        given:
+            createContext([:])
+            SegmentHealthIndicator indicator = context.getBean(SegmentHealthIndicator)
+        when:
+            context.getBean(SegmentService).track(USER_ID, 'Event')
+            context.getBean(Analytics).flush()
+        then:
+            conditions.eventually {
+                Map<String, Object> details = indicator.healthInformation
+                assert indicator.healthStatus == HealthStatus.UP
+                assert details.inFlight == 0
+                assert details.lastSuccess
+                assert details.lastUploadMillis >= 0
+                assert details.consecutiveFailures == 0
+                assert !details.circuitOpen
+            }
+    }
+
+    void 'not ready when the messages wait longer than the maximal lag'() {
+        given:
+            createContext('segment.health.max-lag': '1ms')
+            SegmentHealthIndicator indicator = context.getBean(SegmentHealthIndicator)
+            context.getBean(InMemorySegmentClient).available = false
+        when:
+            context.getBean(SegmentService).track(USER_ID, 'Event')
+            Thread.sleep(10)
+            Map<String, Object> details = indicator.healthInformation
+        then:
+            indicator.healthStatus == HealthStatus.DOWN
+            details.inFlight == 1
+            details.lagMillis > 1
+    }
+
+    void 'lag is measured from the oldest message since the last upload'() {
+        given:
+            createContext('segment.health.max-lag': '200ms')
+            SegmentHealthIndicator indicator = context.getBean(SegmentHealthIndicator)
+            context.getBean(SegmentService).track(USER_ID, 'Event')
+            context.getBean(Analytics).flush()
+            conditions.eventually {
+                assert indicator.healthInformation.inFlight == 0
+            }
+        when:
+            Thread.sleep(300)
+            context.getBean(InMemorySegmentClient).available = false
+            context.getBean(SegmentService).track(USER_ID, 'Event')
+            Map<String, Object> details = indicator.healthInformation
+        then:
+            indicator.healthStatus == HealthStatus.UP
+            details.inFlight == 1
+            details.lagMillis < 200
+    }
+
+    void 'indicator can be disabled'() {
+        when:
+            createContext('segment.health.enabled': false)
+        then:
+            !context.containsBean(SegmentHealthIndicator)
+    }
+
+    private void createContext(Map<String, Object> properties) {
+        context = ApplicationContext.run([
+            'segment.api-key'              : 'some-api-key',
+            'segment.flush-interval'       : '1h',
+            'segment.test.in-memory-client': true,
+        ] + properties)
+    }
+
+}
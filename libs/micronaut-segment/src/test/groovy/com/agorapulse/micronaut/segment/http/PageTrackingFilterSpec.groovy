@@ -0,0 +1,116 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.http
+
+import com.agorapulse.micronaut.segment.recording.RecordingSegmentService
+import com.segment.analytics.messages.Message
+import com.segment.analytics.messages.PageMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import io.micronaut.http.HttpRequest
+import io.micronaut.http.client.BlockingHttpClient
+import io.micronaut.http.client.HttpClient
+import io.micronaut.runtime.server.EmbeddedServer
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+@CompileDynamic
+class PageTrackingFilterSpec extends Specification {
+
+    @AutoCleanup EmbeddedServer server
+    @AutoCleanup HttpClient httpClient
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'requests are tracked as pages named after the route template'() {
+        given:
+            BlockingHttpClient client = start(
+                'segment.page-tracking.attributes': ['tenant'],
+                'segment.page-tracking.user-id-attribute': 'user'
+            )
+            RecordingSegmentService recording = server.applicationContext.getBean(RecordingSegmentService)
+        when:
+            client.retrieve('/tracking/pages/1')
+            client.retrieve('/tracking/pages/2')
+        then:
+            conditions.eventually {
+                recording.getMessages(PageMessage).size() == 2
+            }
+            recording.getMessages(PageMessage)*.name() == ['/tracking/pages/{id}', '/tracking/pages/{id}']
+            recording.getMessages(PageMessage)*.userId() == ['user-1', 'user-2']
+            recording.getMessages(PageMessage).first().properties() == [method: 'GET', status: 200, tenant: 'acme']
+    }
+
+    void 'requests are tracked as screens with the anonymous id'() {
+        given:
+            BlockingHttpClient client = start(
+                'segment.page-tracking.type': 'screen',
+                'segment.page-tracking.anonymous-id-header': 'X-Anonymous-Id'
+            )
+            RecordingSegmentService recording = server.applicationContext.getBean(RecordingSegmentService)
+        when:
+            client.retrieve(HttpRequest.GET('/tracking/pages/1').header('X-Anonymous-Id', 'anonymous-id'))
+        then:
+            conditions.eventually {
+                recording.getMessages(Message.Type.screen).size() == 1
+            }
+            recording.lastMessage.anonymousId() == 'anonymous-id'
+            recording.lastMessage.name() == '/tracking/pages/{id}'
+    }
+
+    void 'excluded and anonymous requests are not tracked'() {
+        given:
+            BlockingHttpClient client = start(
+                'segment.page-tracking.excludes': ['/tracking/events/**'],
+                'segment.page-tracking.anonymous-id-header': 'X-Anonymous-Id'
+            )
+            RecordingSegmentService recording = server.applicationContext.getBean(RecordingSegmentService)
+        when:
+            client.retrieve(HttpRequest.GET('/tracking/events/1').header('X-Anonymous-Id', 'anonymous-id'))
+            client.retrieve('/tracking/pages/1')
+            client.retrieve(HttpRequest.GET('/tracking/pages/2').header('X-Anonymous-Id', 'anonymous-id'))
+        then:
+            conditions.eventually {
+                recording.getMessages(PageMessage).size() == 1
+            }
+            recording.getMessages(Message.Type.track).size() == 1
+            recording.getMessages(PageMessage).first().anonymousId() == 'anonymous-id'
+    }
+
+    void 'requests are not tracked by default'() {
+        when:
+            start('segment.page-tracking.enabled': false)
+        then:
+            !server.applicationContext.containsBean(PageTrackingFilter)
+    }
+
+    private BlockingHttpClient start(Map<String, Object> properties) {
+        server = ApplicationContext.run(EmbeddedServer, [
+            'segment.api-key'                   : 'apikey',
+            'segment.flush-interval'            : '1h',
+            'segment.test.in-memory-client'     : true,
+            'segment.test.tracking-controller'  : true,
+            'segment.recording.enabled'         : true,
+            'segment.page-tracking.enabled'     : true
+        ] + properties)
+        httpClient = server.applicationContext.createBean(HttpClient, server.URL)
+        return httpClient.toBlocking()
+    }
+
+}
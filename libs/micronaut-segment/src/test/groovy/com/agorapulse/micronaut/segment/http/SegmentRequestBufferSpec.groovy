@@ -0,0 +1,146 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.http
+
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.SegmentStatistics
+import com.segment.analytics.Analytics
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import io.micronaut.http.client.BlockingHttpClient
+import io.micronaut.http.client.HttpClient
+import io.micronaut.http.client.exceptions.HttpClientResponseException
+import io.micronaut.runtime.server.EmbeddedServer
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.RejectedExecutionException
+
+@CompileDynamic
+class SegmentRequestBufferSpec extends Specification {
+
+    @AutoCleanup EmbeddedServer server
+    @AutoCleanup HttpClient httpClient
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'messages are enqueued after the response is ready'() {
+        given:
+            BlockingHttpClient client = start()
+            SegmentStatistics statistics = server.applicationContext.getBean(SegmentStatistics)
+        when:
+            String enqueuedInHandler = client.retrieve('/tracking/events/5')
+        then:
+            enqueuedInHandler == '0'
+            conditions.eventually {
+                assert statistics.enqueued == 5
+            }
+        when:
+            server.applicationContext.getBean(Analytics).flush()
+        then:
+            conditions.eventually {
+                uploadedEvents() == (0..4).collect { "Event $it" }
+            }
+    }
+
+    void 'messages sent from the other threads are buffered'() {
+        given:
+            BlockingHttpClient client = start()
+            SegmentStatistics statistics = server.applicationContext.getBean(SegmentStatistics)
+        when:
+            String enqueuedInHandler = client.retrieve('/tracking/async/3')
+        then:
+            enqueuedInHandler == '0'
+            conditions.eventually {
+                assert statistics.enqueued == 3
+            }
+    }
+
+    void 'messages are enqueued when the request fails'() {
+        given:
+            BlockingHttpClient client = start()
+            SegmentStatistics statistics = server.applicationContext.getBean(SegmentStatistics)
+        when:
+            client.retrieve('/tracking/failure/2')
+        then:
+            thrown(HttpClientResponseException)
+            conditions.eventually {
+                assert statistics.enqueued == 2
+            }
+    }
+
+    void 'flushing the segment service enqueues the buffered messages'() {
+        given:
+            BlockingHttpClient client = start()
+        expect:
+            client.retrieve('/tracking/flushed/3') == '3'
+    }
+
+    void 'messages are dropped when the executor rejects the task'() {
+        given:
+            SegmentRequestBuffer buffer = new SegmentRequestBuffer(10)
+            List<String> enqueued = []
+            3.times { i -> buffer.add { enqueued << "Event $i" } }
+        when:
+            int dropped = buffer.flush { throw new RejectedExecutionException('Too many requests') }
+        then:
+            dropped == 3
+            enqueued.empty
+            !buffer.add { enqueued << 'Event 3' }
+    }
+
+    void 'messages above the limit are enqueued immediately'() {
+        given:
+            BlockingHttpClient client = start('segment.request-buffer.max-messages': 2)
+            SegmentStatistics statistics = server.applicationContext.getBean(SegmentStatistics)
+        when:
+            String enqueuedInHandler = client.retrieve('/tracking/events/5')
+        then:
+            enqueuedInHandler == '3'
+            conditions.eventually {
+                assert statistics.enqueued == 5
+            }
+    }
+
+    void 'messages are enqueued immediately by default'() {
+        given:
+            BlockingHttpClient client = start('segment.request-buffer.enabled': false)
+        expect:
+            !server.applicationContext.containsBean(SegmentRequestBufferFilter)
+            client.retrieve('/tracking/events/5') == '5'
+    }
+
+    private BlockingHttpClient start(Map<String, Object> properties = [:]) {
+        server = ApplicationContext.run(EmbeddedServer, [
+            'segment.api-key'                   : 'apikey',
+            'segment.flush-interval'            : '1h',
+            'segment.test.in-memory-client'     : true,
+            'segment.test.tracking-controller'  : true,
+            'segment.request-buffer.enabled'    : true
+        ] + properties)
+        httpClient = server.applicationContext.createBean(HttpClient, server.URL)
+        return httpClient.toBlocking()
+    }
+
+    private List<String> uploadedEvents() {
+        InMemorySegmentClient client = server.applicationContext.getBean(InMemorySegmentClient)
+        return client.batches.collectMany { batch -> (batch =~ /"event":"([^"]+)"/).collect { it[1] } }
+    }
+
+}
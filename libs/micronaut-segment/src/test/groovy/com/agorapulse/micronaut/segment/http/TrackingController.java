@@ -0,0 +1,89 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.http;
+
+import com.agorapulse.micronaut.segment.SegmentService;
+import com.agorapulse.micronaut.segment.SegmentStatistics;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.propagation.PropagatedContext;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Get;
+import io.micronaut.http.annotation.Produces;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tracks the events and reports the number of the messages enqueued before the response is returned.
+ */
+@Controller("/tracking")
+@Produces(MediaType.TEXT_PLAIN)
+@Requires(property = "segment.test.tracking-controller", value = StringUtils.TRUE)
+public class TrackingController {
+
+    private final SegmentService segmentService;
+    private final SegmentStatistics statistics;
+
+    public TrackingController(SegmentService segmentService, SegmentStatistics statistics) {
+        this.segmentService = segmentService;
+        this.statistics = statistics;
+    }
+
+    @Get("/events/{count}")
+    public String events(int count) {
+        track(count);
+        return String.valueOf(statistics.getEnqueued());
+    }
+
+    @Get("/async/{count}")
+    public CompletableFuture<String> async(int count) {
+        return CompletableFuture.supplyAsync(PropagatedContext.wrapCurrent(() -> {
+            track(count);
+            return String.valueOf(statistics.getEnqueued());
+        }));
+    }
+
+    @Get("/pages/{id}")
+    public String page(HttpRequest<?> request, String id) {
+        request.setAttribute("tenant", "acme");
+        request.setAttribute("user", "user-" + id);
+        return id;
+    }
+
+    @Get("/flushed/{count}")
+    public String flushed(int count) {
+        track(count);
+        segmentService.flush();
+        return String.valueOf(statistics.getEnqueued());
+    }
+
+    @Get("/failure/{count}")
+    public String failure(int count) {
+        track(count);
+        throw new IllegalStateException("Failed after tracking " + count + " events");
+    }
+
+    private void track(int count) {
+        for (int i = 0; i < count; i++) {
+            segmentService.track("user-" + i, "Event " + i);
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.ingest
+
+import com.agorapulse.micronaut.segment.Benchmark
+import com.agorapulse.micronaut.segment.SegmentService
+import groovy.transform.CompileStatic
+import io.micronaut.context.ApplicationContext
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Measures the enqueue latency with and without the ingestion queue. Run with <code>SEGMENT_BENCHMARK=true</code>.
+ */
+@Requires({ Benchmark.enabled })
+class IngestionBenchmarkSpec extends Specification {
+
+    private static final int OPERATIONS = 200_000
+    private static final List<Integer> THREADS = [1, 2, 4, 8, 16, 32, 64, 128, 256]
+    private static final int CONTENDED = 64
+
+    void 'enqueue latency under contention'() {
+        when:
+            Map<Integer, List<Double>> results = THREADS.collectEntries { int threads ->
+                [(threads): [measure(false, threads), measure(true, threads)]]
+            }
+            Benchmark.report(['threads', 'direct ns/op', 'striped ns/op'], results)
+        then:
+            results.findAll { it.key >= CONTENDED }.every { threads, latencies ->
+                latencies[1] <= latencies[0] * Benchmark.NOISE
+            }
+    }
+
+    private static double measure(boolean ingestion, int threads) {
+        ApplicationContext context = ApplicationContext.run(
+            'segment.api-key': 'some-api-key',
+            'segment.test.in-memory-client': true,
+            'segment.ingestion.enabled': ingestion,
+        )
+        try {
+            return measure(context.getBean(SegmentService), threads)
+        } finally {
+            context.close()
+        }
+    }
+
+    @CompileStatic
+    private static double measure(SegmentService service, int threads) {
+        return Benchmark.measure(threads, OPERATIONS) { int thread, int operations ->
+            String userId = "user-$thread"
+            for (int i = 0; i < operations; i++) {
+                service.track(userId, 'Benchmark')
+            }
+            return operations
+        }
+    }
+
+}
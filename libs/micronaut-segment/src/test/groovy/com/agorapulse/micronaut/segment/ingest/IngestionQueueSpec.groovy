@@ -0,0 +1,115 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.ingest
+
+import com.segment.analytics.Analytics
+import com.segment.analytics.messages.MessageBuilder
+import com.segment.analytics.messages.TrackMessage
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
+class IngestionQueueSpec extends Specification {
+
+    private static final int THREADS = 8
+    private static final int MESSAGES = 10_000
+
+    Queue<MessageBuilder> enqueued = new ConcurrentLinkedQueue<>()
+
+    Analytics analytics = Mock {
+        enqueue(_ as MessageBuilder) >> { MessageBuilder builder -> enqueued << builder }
+    }
+
+    @AutoCleanup IngestionQueue queue = new IngestionQueue(analytics, 4, 64, Executors.defaultThreadFactory())
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'messages from many threads are moved into the library queue in order'() {
+        given:
+            CountDownLatch start = new CountDownLatch(1)
+            List<Thread> producers = (1..THREADS).collect { int producer ->
+                Thread.start {
+                    start.await()
+                    MESSAGES.times { int i ->
+                        queue.offer(TrackMessage.builder("event-$i").userId("user-$producer"))
+                    }
+                }
+            }
+        when:
+            start.countDown()
+            producers*.join()
+            queue.drain()
+        then:
+            enqueued.size() == THREADS * MESSAGES
+            enqueued.collect { it.build() }.groupBy { it.userId() }.every { userId, messages ->
+                messages*.event() == (0..<MESSAGES).collect { "event-$it".toString() }
+            }
+    }
+
+    void 'drainer thread moves the messages without explicit drain'() {
+        when:
+            queue.offer(TrackMessage.builder('event').userId('user'))
+        then:
+            conditions.eventually {
+                assert enqueued.size() == 1
+            }
+    }
+
+    void 'idle drainer waits for the next message without polling'() {
+        given:
+            Thread drainer = null
+            queue.close()
+            queue = new IngestionQueue(analytics, 4, 64, { Runnable runnable -> drainer = new Thread(runnable) })
+        expect:
+            conditions.eventually {
+                assert drainer.state == Thread.State.WAITING
+            }
+        when:
+            queue.offer(TrackMessage.builder('event').userId('user'))
+        then:
+            conditions.eventually {
+                assert enqueued.size() == 1
+                assert drainer.state == Thread.State.WAITING
+            }
+    }
+
+    void 'messages are enqueued directly after the queue is closed'() {
+        when:
+            queue.close()
+            queue.offer(TrackMessage.builder('event').userId('user'))
+        then:
+            enqueued.size() == 1
+    }
+
+    void 'ring buffer rejects the messages when full'() {
+        given:
+            RingBuffer<Integer> buffer = new RingBuffer<>(4)
+            List<Integer> drained = []
+        expect:
+            (1..4).every { buffer.offer(it) }
+            !buffer.offer(5)
+            buffer.drain { drained << it } == 4
+            drained == [1, 2, 3, 4]
+            buffer.offer(6)
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.interceptor;
+
+// tag::body[]
+import com.agorapulse.micronaut.segment.annotation.Identify;
+import com.agorapulse.micronaut.segment.annotation.Track;
+import jakarta.inject.Singleton;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+@Singleton
+public class OrderService {
+
+    @Track(value = "Order Placed", userId = "customerId", properties = {"orderId=result.id", "result.total", "coupon"})
+    public Order placeOrder(String customerId, BigDecimal total, String coupon) {
+        return new Order("order-1", customerId, total);
+    }
+
+    @Track(value = "Order Shipped", userId = "order.customerId", properties = {"orderId=order.id"})
+    public CompletableFuture<Order> shipOrder(Order order) {
+        return CompletableFuture.completedFuture(order);
+    }
+
+    @Identify(userId = "customerId", traits = {"email", "name"})
+    public void updateCustomer(String customerId, String email, String name) {
+        // update the customer
+    }
+
+    @Track(value = "Order Cancelled", userId = "order.customerId")
+    public void cancelOrder(Order order) {
+        throw new IllegalStateException("Order cannot be cancelled");
+    }
+
+}
+// end::body[]
@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.interceptor
+
+import com.segment.analytics.Analytics
+import com.segment.analytics.messages.IdentifyMessage
+import com.segment.analytics.messages.Message
+import com.segment.analytics.messages.MessageBuilder
+import com.segment.analytics.messages.TrackMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+@CompileDynamic
+class TrackInterceptorSpec extends Specification {
+
+    private static final String CUSTOMER_ID = 'customer-id'
+
+    @AutoCleanup ApplicationContext context
+
+    List<Message> queue = []
+
+    Analytics analytics = Mock {
+        enqueue(_ as MessageBuilder) >> { MessageBuilder builder ->
+            queue << builder.build()
+        }
+    }
+
+    OrderService service
+
+    void setup() {
+        context = ApplicationContext.builder('segment.api-key': 'some-api-key').build()
+        context.registerSingleton(Analytics, analytics)
+        context.start()
+
+        service = context.getBean(OrderService)
+    }
+
+    void 'track event after the method returns'() {
+        when:
+            service.placeOrder(CUSTOMER_ID, 10.5, null)
+        then:
+            queue.size() == 1
+
+        when:
+            TrackMessage message = queue.first() as TrackMessage
+        then:
+            message.event() == 'Order Placed'
+            message.userId() == CUSTOMER_ID
+            message.properties() == [orderId: 'order-1', total: 10.5]
+    }
+
+    void 'track event after the future completes'() {
+        when:
+            service.shipOrder(new Order('order-2', CUSTOMER_ID, 1.0)).get()
+        then:
+            queue.size() == 1
+
+        when:
+            TrackMessage message = queue.first() as TrackMessage
+        then:
+            message.event() == 'Order Shipped'
+            message.userId() == CUSTOMER_ID
+            message.properties() == [orderId: 'order-2']
+    }
+
+    void 'identify user after the method returns'() {
+        when:
+            service.updateCustomer(CUSTOMER_ID, 'john@example.com', 'John')
+        then:
+            queue.size() == 1
+
+        when:
+            IdentifyMessage message = queue.first() as IdentifyMessage
+        then:
+            message.userId() == CUSTOMER_ID
+            message.traits() == [email: 'john@example.com', name: 'John']
+    }
+
+    void 'nothing is tracked if the method fails'() {
+        when:
+            service.cancelOrder(new Order('order-3', CUSTOMER_ID, 1.0))
+        then:
+            thrown(IllegalStateException)
+            queue.empty
+    }
+
+    void 'invalid annotation never breaks the method'() {
+        given:
+            MisconfiguredService misconfigured = context.getBean(MisconfiguredService)
+        expect:
+            misconfigured.archiveOrder(CUSTOMER_ID) == 'archived'
+            misconfigured.archiveOrder(CUSTOMER_ID) == 'archived'
+            queue.empty
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.plan
+
+import com.agorapulse.micronaut.segment.Benchmark
+import com.agorapulse.micronaut.segment.builder.DefaultMessageBuilderWithProperties
+import groovy.transform.CompileStatic
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Measures the cost of the tracking plan validation compared to building the message itself.
+ * Run with <code>SEGMENT_BENCHMARK=true</code>.
+ */
+@Requires({ Benchmark.enabled })
+class TrackingPlanBenchmarkSpec extends Specification {
+
+    private static final int OPERATIONS = 2_000_000
+    private static final String EVENT = 'Order Completed'
+
+    // the validation must cost less than a half of building the message
+    private static final double MAX_OVERHEAD = 1.5
+
+    void 'tracking plan validation overhead'() {
+        given:
+            TrackingPlan plan = new TrackingPlan(
+                TrackingPlan.parse('tracking-plan.json', new InputStreamReader(TrackingPlanBenchmarkSpec.getResourceAsStream('/tracking-plan.json'))),
+                TrackingPlanPolicy.FLAG,
+                true
+            )
+        when:
+            double build = measure(null)
+            double validate = measure(plan)
+            Benchmark.report(['', 'build ns/op', 'validate ns/op'], [track: [build, validate]])
+        then:
+            validate <= build * MAX_OVERHEAD
+    }
+
+    @CompileStatic
+    private static double measure(TrackingPlan plan) {
+        List<String> tags = ['first', 'mobile']
+        Map<String, Object> address = [city: 'Paris'] as Map<String, Object>
+
+        return Benchmark.measure(1, OPERATIONS) { int thread, int operations ->
+            long hash = 0
+            for (int i = 0; i < operations; i++) {
+                DefaultMessageBuilderWithProperties builder = new DefaultMessageBuilderWithProperties()
+                builder.userId('user-id')
+                builder.properties('total', i)
+                    .properties('currency', 'USD')
+                    .properties('quantity', 2)
+                    .properties('coupon', 'WELCOME10')
+                    .properties('completedAt', '2026-10-19T10:15:30.123Z')
+                    .properties('tags', tags)
+                    .properties('address', address)
+                if (plan != null && !plan.accept('track', EVENT, builder.getProperties())) {
+                    throw new IllegalStateException('Message should follow the plan')
+                }
+                hash += builder.buildTrackMessage(EVENT).build().hashCode()
+            }
+            return hash
+        }
+    }
+
+}
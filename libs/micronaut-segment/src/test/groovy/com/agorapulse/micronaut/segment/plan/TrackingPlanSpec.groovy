@@ -0,0 +1,169 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.plan
+
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.SegmentService
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+@CompileDynamic
+class TrackingPlanSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final String EVENT = 'Order Completed'
+
+    @AutoCleanup ApplicationContext context
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'valid properties conform to the plan'() {
+        given:
+            TrackingPlan plan = plan(TrackingPlanPolicy.FLAG, true)
+        expect:
+            plan.validate('track', EVENT, [
+                total      : 10.5,
+                currency   : 'USD',
+                quantity   : 2,
+                coupon     : 'WELCOME10',
+                completedAt: '2026-10-19T10:15:30.123Z',
+                tags       : ['first', 'mobile'],
+                address    : [city: 'Paris'],
+            ]).empty
+            plan.validate('track', EVENT, [total: 10, currency: 'EUR', quantity: 2.0]).empty
+            plan.validate('track', 'Unplanned Event', [anything: 'goes']).empty
+            plan.validate('identify', null, [email: 'vlad@example.com', name: 'Vlad']).empty
+            plan.validate('group', null, [:]).empty
+    }
+
+    void 'violations are described'() {
+        given:
+            TrackingPlan plan = plan(TrackingPlanPolicy.FLAG, true)
+        expect:
+            plan.validate('track', EVENT, properties) as Set == violations as Set
+        where:
+            properties                                           | violations
+            [:]                                                  | ['properties.total is required', 'properties.currency is required']
+            [total: 'ten', currency: 'USD']                      | ['properties.total must be number but was string']
+            [total: -1, currency: 'USD']                         | ['properties.total must be at least 0.0 but was -1.0']
+            [total: 1, currency: 'CZK']                          | ['properties.currency must be one of [USD, EUR] but was CZK']
+            [total: 1, currency: 'USD', quantity: 0]             | ['properties.quantity must be greater than 0.0 but was 0.0']
+            [total: 1, currency: 'USD', quantity: 1.5]           | ['properties.quantity must be integer but was number']
+            [total: 1, currency: 'USD', coupon: 'welcome']       | ['properties.coupon must match ^[A-Z0-9]+$ but was welcome']
+            [total: 1, currency: 'USD', completedAt: 'today']    | ['properties.completedAt must be a valid date but was today']
+            [total: 1, currency: 'USD', tags: ['a', 'b', 'c', 1]] | ['properties.tags must have at most 3 items but had 4', 'properties.tags[] must be string but was number']
+            [total: 1, currency: 'USD', address: [zip: '75001']] | ['properties.address.city is required']
+            [total: 1, currency: 'USD', discount: 5]             | ['properties.discount is not allowed']
+    }
+
+    void 'unplanned events can be disallowed'() {
+        given:
+            TrackingPlan plan = plan(TrackingPlanPolicy.FLAG, false)
+        expect:
+            plan.validate('track', 'Unplanned Event', [:]) == ["Event 'Unplanned Event' is not in the tracking plan"]
+            plan.validate('page', 'Pricing', [:]) == ["Page 'Pricing' is not in the tracking plan"]
+            plan.validate('page', 'Home', [section: 'hero']).empty
+            plan.validate('identify', null, [email: 'vlad@example.com']).empty
+    }
+
+    void 'policy decides what happens to the invalid messages'() {
+        expect:
+            plan(TrackingPlanPolicy.FLAG, true).accept('identify', null, [:])
+            !plan(TrackingPlanPolicy.REJECT, true).accept('identify', null, [:])
+        when:
+            TrackingPlan plan = plan(TrackingPlanPolicy.FAIL, true)
+            plan.accept('identify', null, [email: 'x'])
+        then:
+            TrackingPlanViolationException e = thrown(TrackingPlanViolationException)
+            e.type == 'identify'
+            e.name == null
+            e.violations == ['traits.email must have at least 3 characters but had 1']
+            plan.violated == 1
+    }
+
+    void 'plan can be written in YAML'() {
+        given:
+            TrackingPlan plan = new TrackingPlan(parse('tracking-plan.yml'), TrackingPlanPolicy.FLAG, true)
+        expect:
+            plan.validate('track', EVENT, [total: 1, currency: 'USD']).empty
+            plan.validate('track', EVENT, [total: 1]) == ['properties.currency is required']
+            plan.validate('group', null, [plan: 'enterprise']) == ['traits.plan must be one of [free, pro] but was enterprise']
+    }
+
+    void 'invalid plan is reported'() {
+        when:
+            new TrackingPlan([events: [(EVENT): [properties: [total: [type: 'money']]]]], TrackingPlanPolicy.FLAG, true)
+        then:
+            IllegalArgumentException e = thrown(IllegalArgumentException)
+            e.message == "Invalid definition of 'events.Order Completed' in the tracking plan: Unknown type 'money' at properties.total"
+    }
+
+    void 'segment service rejects the messages violating the plan'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.api-key': 'apikey',
+                'segment.flush-interval': '1h',
+                'segment.test.in-memory-client': true,
+                'segment.tracking-plan.enabled': true,
+                'segment.tracking-plan.policy': 'reject'
+            )
+            SegmentService service = context.getBean(SegmentService)
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+        when:
+            service.track(USER_ID, EVENT) { properties total: 10, currency: 'USD' }
+            service.track(USER_ID, EVENT) { properties total: 10, currency: 'CZK' }
+            service.identify(USER_ID) { traits email: 'vlad@example.com' }
+            service.identify(USER_ID) { traits name: 'Vlad' }
+            service.flush()
+        then:
+            conditions.eventually {
+                client.messages == 2
+            }
+            !client.batches.join().contains('CZK')
+            context.getBean(TrackingPlan).violated == 2
+    }
+
+    void 'segment service throws the violations to the caller'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.api-key': 'apikey',
+                'segment.test.in-memory-client': true,
+                'segment.tracking-plan.enabled': true,
+                'segment.tracking-plan.location': 'classpath:tracking-plan.yml',
+                'segment.tracking-plan.policy': 'fail'
+            )
+            SegmentService service = context.getBean(SegmentService)
+        when:
+            service.group(USER_ID, 'group-id') { traits plan: 'enterprise' }
+        then:
+            TrackingPlanViolationException e = thrown(TrackingPlanViolationException)
+            e.violations == ['traits.plan must be one of [free, pro] but was enterprise']
+    }
+
+    private static TrackingPlan plan(TrackingPlanPolicy policy, boolean allowUnplanned) {
+        return new TrackingPlan(parse('tracking-plan.json'), policy, allowUnplanned)
+    }
+
+    private static Map<String, Object> parse(String location) {
+        return TrackingPlan.parse(location, new InputStreamReader(TrackingPlanSpec.getResourceAsStream("/$location")))
+    }
+
+}
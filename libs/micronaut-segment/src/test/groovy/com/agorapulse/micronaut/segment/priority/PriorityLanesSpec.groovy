@@ -0,0 +1,168 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.priority
+
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.SegmentConfiguration
+import com.agorapulse.micronaut.segment.SegmentService
+import com.agorapulse.micronaut.segment.SegmentStatistics
+import com.segment.analytics.messages.MessageBuilder
+import com.segment.analytics.messages.TrackMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+
+@CompileDynamic
+class PriorityLanesSpec extends Specification {
+
+    @AutoCleanup PriorityLanes lanes
+    @AutoCleanup ApplicationContext context
+
+    AtomicLong inFlight = new AtomicLong()
+    List<String> delivered = new CopyOnWriteArrayList<>()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'priority is resolved from the event name and the message type'() {
+        given:
+            SegmentConfiguration.PriorityConfiguration configuration = new SegmentConfiguration.PriorityConfiguration(
+                lowTypes: ['page'],
+                highEvents: ['Order Completed'],
+                lowEvents: ['Page Scrolled']
+            )
+            lanes = create(configuration)
+        expect:
+            lanes.getPriority('identify', null) == MessagePriority.HIGH
+            lanes.getPriority('alias', null) == MessagePriority.HIGH
+            lanes.getPriority('track', 'Signed In') == MessagePriority.NORMAL
+            lanes.getPriority('track', 'Order Completed') == MessagePriority.HIGH
+            lanes.getPriority('track', 'Page Scrolled') == MessagePriority.LOW
+            lanes.getPriority('page', 'Home') == MessagePriority.LOW
+    }
+
+    void 'messages wait in the lanes while the in-flight budget is exhausted'() {
+        given:
+            inFlight.set(10)
+            lanes = create(new SegmentConfiguration.PriorityConfiguration(maxInFlight: 10))
+        when:
+            lanes.offer(MessagePriority.LOW, track('Low 1'))
+            lanes.offer(MessagePriority.NORMAL, track('Normal 1'))
+            lanes.offer(MessagePriority.HIGH, track('High 1'))
+            lanes.offer(MessagePriority.HIGH, track('High 2'))
+            sleep 50
+        then:
+            delivered.empty
+            lanes.size(MessagePriority.HIGH) == 2
+        when:
+            inFlight.set(0)
+        then:
+            conditions.eventually {
+                delivered == ['High 1', 'Normal 1', 'High 2', 'Low 1']
+            }
+    }
+
+    void 'lowest priority messages are shed first'() {
+        given:
+            inFlight.set(10)
+            lanes = create(new SegmentConfiguration.PriorityConfiguration(maxInFlight: 10, capacity: 3))
+        when:
+            lanes.offer(MessagePriority.LOW, track('Low 1'))
+            lanes.offer(MessagePriority.LOW, track('Low 2'))
+            lanes.offer(MessagePriority.NORMAL, track('Normal 1'))
+        and:
+            boolean high = lanes.offer(MessagePriority.HIGH, track('High 1'))
+            boolean normal = lanes.offer(MessagePriority.NORMAL, track('Normal 2'))
+            boolean low = lanes.offer(MessagePriority.LOW, track('Low 3'))
+        then:
+            high
+            normal
+            !low
+            lanes.getDropped(MessagePriority.LOW) == 3
+            lanes.size(MessagePriority.LOW) == 0
+        when:
+            lanes.drain()
+        then:
+            delivered == ['High 1', 'Normal 1', 'Normal 2']
+    }
+
+    void 'important messages overtake the bulk traffic'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.api-key': 'apikey',
+                'segment.flush-interval': '1h',
+                'segment.test.in-memory-client': true,
+                'segment.priority.enabled': true,
+                'segment.priority.max-in-flight': 2
+            )
+            SegmentService service = context.getBean(SegmentService)
+            SegmentStatistics statistics = context.getBean(SegmentStatistics)
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+        when:
+            5.times { service.track('user-id', "Event $it") }
+        then:
+            conditions.eventually {
+                statistics.enqueued == 2
+            }
+            context.getBean(PriorityLanes).size(MessagePriority.NORMAL) == 3
+        when:
+            service.identify('user-id')
+            service.flush()
+        then:
+            conditions.eventually {
+                client.messages == 6
+            }
+            (client.batches.join() =~ /"type":"(\w+)"/).collect { it[1] } == ['track', 'track', 'identify', 'track', 'track', 'track']
+    }
+
+    void 'idle dispatcher waits for the next message without polling'() {
+        given:
+            lanes = create(new SegmentConfiguration.PriorityConfiguration())
+        expect:
+            conditions.eventually {
+                assert dispatcher.state == Thread.State.WAITING
+            }
+        when:
+            lanes.offer(MessagePriority.NORMAL, track('Event'))
+        then:
+            conditions.eventually {
+                assert delivered == ['Event']
+                assert dispatcher.state == Thread.State.WAITING
+            }
+    }
+
+    private Thread dispatcher
+
+    private PriorityLanes create(SegmentConfiguration.PriorityConfiguration configuration) {
+        return new PriorityLanes(
+            { MessageBuilder<?, ?> message -> delivered.add(message.build().event()) },
+            inFlight::get,
+            configuration,
+            { Runnable runnable -> dispatcher = new Thread(runnable) }
+        )
+    }
+
+    private static TrackMessage.Builder track(String event) {
+        return TrackMessage.builder(event).userId('user-id')
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.recording
+
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.NoOpSegmentService
+import com.agorapulse.micronaut.segment.SegmentService
+import com.segment.analytics.Analytics
+import com.segment.analytics.messages.IdentifyMessage
+import com.segment.analytics.messages.Message
+import com.segment.analytics.messages.TrackMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+@CompileDynamic
+class RecordingSegmentServiceSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final String OTHER_USER_ID = 'other-user-id'
+
+    @AutoCleanup ApplicationContext context
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'records the messages without the api key'() {
+        given:
+            context = ApplicationContext.run('segment.recording.enabled': true)
+            RecordingSegmentService recording = context.getBean(RecordingSegmentService)
+        when:
+            SegmentService service = context.getBean(SegmentService)
+            service.identify(USER_ID) { traits 'email', 'user@example.com' }
+            service.track(USER_ID, 'Order Completed') { properties 'total', 42 }
+            service.track(OTHER_USER_ID, 'Order Completed')
+            service.page(USER_ID, 'Home')
+        then:
+            service.is(recording)
+            !recording.passThrough
+
+            recording.messages.size() == 4
+            recording.getMessages(Message.Type.track).size() == 2
+            recording.getMessages(IdentifyMessage).first().traits().email == 'user@example.com'
+            recording.getEvents('Order Completed')*.userId() == [USER_ID, OTHER_USER_ID]
+            recording.getEvents('Order Completed').first().properties().total == 42
+            recording.getMessagesForUser(USER_ID)*.type() == [Message.Type.identify, Message.Type.track, Message.Type.page]
+            recording.lastMessage.type() == Message.Type.page
+    }
+
+    void 'keeps only the most recent messages'() {
+        given:
+            context = ApplicationContext.run('segment.recording.enabled': true, 'segment.recording.capacity': 3)
+            RecordingSegmentService recording = context.getBean(RecordingSegmentService)
+        when:
+            5.times { recording.track(USER_ID, "Event $it") }
+        then:
+            recording.getMessages(TrackMessage)*.event() == ['Event 2', 'Event 3', 'Event 4']
+            recording.recordedCount == 5
+        when:
+            recording.clear()
+        then:
+            recording.messages.empty
+            recording.lastMessage == null
+        when:
+            recording.track(USER_ID, 'Event 5')
+        then:
+            recording.getMessages(TrackMessage)*.event() == ['Event 5']
+    }
+
+    void 'records the messages concurrently'() {
+        given:
+            int threads = 8
+            int messagesPerThread = 1000
+            context = ApplicationContext.run('segment.recording.enabled': true, 'segment.recording.capacity': 100)
+            RecordingSegmentService recording = context.getBean(RecordingSegmentService)
+            ExecutorService executor = Executors.newFixedThreadPool(threads)
+            CountDownLatch done = new CountDownLatch(threads)
+        when:
+            threads.times { int thread ->
+                executor.execute {
+                    messagesPerThread.times { recording.track("user-$thread", "Event $it") }
+                    done.countDown()
+                }
+            }
+            done.await()
+        then:
+            recording.recordedCount == threads * messagesPerThread
+            recording.messages.size() == 100
+        cleanup:
+            executor.shutdownNow()
+    }
+
+    void 'passes the messages through to segment'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.api-key'              : 'some-api-key',
+                'segment.flush-interval'       : '1h',
+                'segment.test.in-memory-client': true,
+                'segment.recording.enabled'    : true,
+            )
+            RecordingSegmentService recording = context.getBean(RecordingSegmentService)
+        when:
+            context.getBean(SegmentService).track(USER_ID, 'Event')
+            recording.flush()
+        then:
+            recording.passThrough
+            recording.getEvents('Event').size() == 1
+        and:
+            String messageId = recording.lastMessage.messageId()
+            conditions.eventually {
+                assert context.getBean(InMemorySegmentClient).batches.any { it.contains(messageId) }
+            }
+    }
+
+    void 'records without sending when pass through is disabled'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.api-key'               : 'some-api-key',
+                'segment.flush-interval'        : '1h',
+                'segment.test.in-memory-client' : true,
+                'segment.recording.enabled'     : true,
+                'segment.recording.pass-through': false,
+            )
+            RecordingSegmentService recording = context.getBean(RecordingSegmentService)
+        when:
+            recording.track(USER_ID, 'Event')
+            context.getBean(Analytics).flush()
+            Thread.sleep(100)
+        then:
+            recording.getEvents('Event').size() == 1
+            context.getBean(InMemorySegmentClient).batches.empty
+    }
+
+    void 'recording does not depend on the segment service bean'() {
+        given:
+            context = ApplicationContext.builder('segment.recording.enabled': true).build()
+            context.registerSingleton(SegmentService, new NoOpSegmentService())
+            context.start()
+        when:
+            RecordingSegmentService recording = context.getBean(RecordingSegmentService)
+            recording.track(USER_ID, 'Event')
+        then:
+            recording.getEvents('Event').size() == 1
+    }
+
+    void 'recording is disabled by default'() {
+        when:
+            context = ApplicationContext.run()
+        then:
+            !context.containsBean(RecordingSegmentService)
+            context.getBean(SegmentService) instanceof NoOpSegmentService
+    }
+
+}
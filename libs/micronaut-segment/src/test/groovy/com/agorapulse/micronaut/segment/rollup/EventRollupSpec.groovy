@@ -0,0 +1,194 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.rollup
+
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.SegmentConfiguration
+import com.agorapulse.micronaut.segment.SegmentService
+import com.agorapulse.micronaut.segment.util.MessageClock
+import com.agorapulse.micronaut.segment.util.MessageIdGenerator
+import com.segment.analytics.messages.MessageBuilder
+import com.segment.analytics.messages.TrackMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.CopyOnWriteArrayList
+
+@CompileDynamic
+class EventRollupSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final String OTHER_USER_ID = 'other-user-id'
+    private static final String EVENT = 'Message Sent'
+    private static final long TIMESTAMP = 1_700_000_000_000L
+
+    @AutoCleanup EventRollup rollup
+    @AutoCleanup ApplicationContext context
+
+    List<TrackMessage> emitted = new CopyOnWriteArrayList<>()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'occurrences are counted per user and selected properties'() {
+        given:
+            rollup = create(Duration.ofHours(1))
+        when:
+            3.times { rollup.add(track(USER_ID, TIMESTAMP + it, [channel: 'email', subject: "Subject $it"])) }
+            rollup.add(track(USER_ID, TIMESTAMP + 10, [channel: 'sms']))
+            rollup.add(track(OTHER_USER_ID, TIMESTAMP + 20, [channel: 'email']))
+        then:
+            rollup.keys == 3
+            rollup.counted == 5
+            emitted.empty
+        when:
+            rollup.flush()
+        then:
+            emitted.size() == 3
+            emitted.every { it.event() == EVENT }
+
+            TrackMessage email = emitted.find { it.userId() == USER_ID && it.properties().channel == 'email' }
+            email.properties() == [
+                channel       : 'email',
+                count         : 3L,
+                firstTimestamp: Instant.ofEpochMilli(TIMESTAMP).toString(),
+                lastTimestamp : Instant.ofEpochMilli(TIMESTAMP + 2).toString()
+            ]
+            email.timestamp().time == TIMESTAMP + 2
+
+            emitted.find { it.userId() == USER_ID && it.properties().channel == 'sms' }.properties().count == 1L
+            emitted.find { it.userId() == OTHER_USER_ID }.properties().count == 1L
+    }
+
+    void 'aggregated message keeps the context and the integrations of the first occurrence'() {
+        given:
+            rollup = create(Duration.ofHours(1))
+        when:
+            rollup.add(TrackMessage.builder(EVENT).userId(USER_ID).properties([channel: 'email']).context([ip: '10.0.0.1']).enableIntegration('Intercom', false).build())
+            rollup.add(TrackMessage.builder(EVENT).userId(USER_ID).properties([channel: 'email']).context([ip: '10.0.0.2']).build())
+            rollup.flush()
+        then:
+            emitted.size() == 1
+            emitted[0].context() == [ip: '10.0.0.1']
+            emitted[0].integrations() == [Intercom: false]
+            emitted[0].messageId() ==~ /[0-9a-f]{8}-[0-9a-f]{4}-7[0-9a-f]{3}-[0-9a-f]{4}-[0-9a-f]{12}/
+    }
+
+    void 'count and timestamps come from the same occurrences'() {
+        given:
+            rollup = create(Duration.ofMillis(1))
+        when:
+            List<Thread> threads = (1..4).collect {
+                Thread.start { 10_000.times { rollup.add(track(USER_ID, TIMESTAMP + it, [channel: 'email'])) } }
+            }
+            threads*.join()
+            rollup.close()
+        then:
+            emitted*.properties()*.count.sum() == 40_000L
+            emitted.every {
+                Instant first = Instant.parse(it.properties().firstTimestamp as String)
+                Instant last = Instant.parse(it.properties().lastTimestamp as String)
+                !first.isAfter(last) && it.timestamp().time == last.toEpochMilli()
+            }
+    }
+
+    void 'idle counters are removed'() {
+        given:
+            rollup = create(Duration.ofHours(1))
+        when:
+            rollup.add(track(USER_ID, TIMESTAMP, [channel: 'email']))
+            rollup.flush()
+        then:
+            emitted.size() == 1
+            rollup.keys == 1
+        when:
+            rollup.flush()
+        then:
+            emitted.size() == 1
+            rollup.keys == 0
+        when:
+            rollup.add(track(USER_ID, TIMESTAMP, [channel: 'email']))
+            rollup.flush()
+        then:
+            emitted.size() == 2
+    }
+
+    void 'aggregated messages are sent every interval'() {
+        given:
+            rollup = create(Duration.ofMillis(100))
+        when:
+            rollup.add(track(USER_ID, TIMESTAMP, [channel: 'email']))
+            rollup.add(track(USER_ID, TIMESTAMP, [channel: 'email']))
+        then:
+            conditions.eventually {
+                emitted*.properties()*.count == [2L]
+            }
+    }
+
+    void 'occurrences above the limit of counters are not counted'() {
+        given:
+            rollup = create(Duration.ofHours(1), 1)
+        expect:
+            rollup.add(track(USER_ID, TIMESTAMP, [channel: 'email']))
+            rollup.add(track(USER_ID, TIMESTAMP, [channel: 'email']))
+            !rollup.add(track(USER_ID, TIMESTAMP, [channel: 'sms']))
+    }
+
+    void 'configured events are aggregated by the segment service'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.api-key': 'apikey',
+                'segment.flush-interval': '1h',
+                'segment.test.in-memory-client': true,
+                'segment.rollup.enabled': true,
+                'segment.rollup.interval': '1h',
+                'segment.rollup.events': [EVENT],
+                'segment.rollup.properties': ['channel']
+            )
+            SegmentService service = context.getBean(SegmentService)
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+        when:
+            1000.times { service.track(USER_ID, EVENT) { properties 'channel', 'email' } }
+            service.track(USER_ID, 'Order Completed')
+            service.flush()
+        then:
+            conditions.eventually {
+                client.messages == 2
+            }
+            client.batches.join().contains('"count":1000')
+    }
+
+    private EventRollup create(Duration interval, int maxKeys = 100) {
+        return new EventRollup(
+            new SegmentConfiguration.RollupConfiguration(events: [EVENT], properties: ['channel'], interval: interval, maxKeys: maxKeys),
+            { String event, MessageBuilder<?, ?> message -> emitted.add(message.build()) },
+            MessageClock.SYSTEM,
+            MessageIdGenerator.DEFAULT,
+            { Runnable runnable -> new Thread(runnable) }
+        )
+    }
+
+    private static TrackMessage track(String userId, long timestamp, Map<String, Object> properties) {
+        return TrackMessage.builder(EVENT).userId(userId).timestamp(new Date(timestamp)).properties(properties).build()
+    }
+
+}
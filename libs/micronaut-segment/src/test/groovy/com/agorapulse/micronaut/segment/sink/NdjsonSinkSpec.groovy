@@ -0,0 +1,167 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.sink
+
+import com.agorapulse.micronaut.segment.Benchmark
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.SegmentConfiguration
+import com.agorapulse.micronaut.segment.SegmentService
+import com.google.gson.Gson
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import retrofit.client.Client
+import retrofit.client.Request
+import retrofit.client.Response
+import retrofit.mime.TypedString
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+
+@CompileDynamic
+class NdjsonSinkSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final int EVENTS = 100
+
+    @TempDir Path directory
+
+    Gson gson = new Gson()
+
+    void 'batches are copied to the sink and uploaded'() {
+        given:
+            ApplicationContext context = createContext([:])
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+        when:
+            EVENTS.times { context.getBean(SegmentService).track(USER_ID, "Event $it") }
+            context.close()
+        then:
+            client.messages == EVENTS
+            messages().size() == EVENTS
+    }
+
+    void 'batches are only written to the sink in replace mode'() {
+        given:
+            ApplicationContext context = createContext('segment.sink.mode': 'replace')
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+        when:
+            EVENTS.times { context.getBean(SegmentService).track(USER_ID, "Event $it") }
+            context.close()
+        then:
+            client.messages == 0
+            messages()*.event.toSorted() == (0..<EVENTS).collect { "Event $it".toString() }.toSorted()
+    }
+
+    void 'retried batches are written once'() {
+        given:
+            NdjsonSinkClientDecorator decorator = new NdjsonSinkClientDecorator(
+                new SegmentConfiguration(sink: new SegmentConfiguration.SinkConfiguration(directory: directory.toString())),
+                Executors.defaultThreadFactory()
+            )
+            List<Integer> statuses = [503, 200]
+            Client client = decorator.decorate { Request request ->
+                new Response(request.url, statuses.remove(0), 'Status', [], new TypedString('{}'))
+            }
+            Request request = new Request('POST', 'https://api.segment.io/v1/import', [], new TypedString(gson.toJson([batch: [
+                [messageId: 'message-1'],
+                [messageId: 'message-2'],
+            ]])))
+        when:
+            client.execute(request)
+            client.execute(request)
+            decorator.close()
+        then:
+            messages()*.messageId == ['message-1', 'message-2']
+    }
+
+    void 'files are rotated by size'() {
+        given:
+            NdjsonFileSink sink = new NdjsonFileSink(
+                new SegmentConfiguration.SinkConfiguration(directory: directory.toString(), maxFileBytes: 1, fsync: FsyncPolicy.ALWAYS),
+                Executors.defaultThreadFactory()
+            )
+        when:
+            3.times { sink.write(gson.toJson([batch: [[messageId: "message-$it".toString()]]]).getBytes(StandardCharsets.UTF_8)) }
+            sink.close()
+        then:
+            files().size() == 3
+            messages()*.messageId.toSorted() == ['message-0', 'message-1', 'message-2']
+    }
+
+    @Requires({ Benchmark.enabled })
+    void 'writing cost per event'() {
+        given:
+            int batches = 10_000
+            int messagesPerBatch = 100
+            Map<String, Object> body = [batch: (1..messagesPerBatch).collect {
+                [messageId: UUID.randomUUID().toString(), type: 'track', event: 'Order Completed', userId: USER_ID, properties: [total: it]]
+            }]
+            byte[] batch = gson.toJson(body).getBytes(StandardCharsets.UTF_8)
+            NdjsonFileSink sink = new NdjsonFileSink(
+                new SegmentConfiguration.SinkConfiguration(directory: directory.toString(), queueCapacity: batches * 2),
+                Executors.defaultThreadFactory()
+            )
+        when:
+            // the sink must cost less than serializing the batch which every upload does anyway
+            double serialize = Benchmark.measure(1, batches) { int thread, int operations ->
+                long length = 0
+                operations.times { length += gson.toJson(body).length() }
+                return length
+            }
+            double handOver = Benchmark.measure(1, batches) { int thread, int operations ->
+                operations.times { sink.write(batch) }
+                return operations
+            }
+            long start = System.nanoTime()
+            sink.close()
+            double drain = (System.nanoTime() - start) / (double) (batches * messagesPerBatch)
+            Benchmark.report(['', 'serialize ns', 'hand over ns', 'drain ns'], [
+                'per event': [serialize / messagesPerBatch, handOver / messagesPerBatch, drain],
+            ])
+        then:
+            handOver <= serialize * Benchmark.NOISE
+    }
+
+    private ApplicationContext createContext(Map<String, Object> properties) {
+        return ApplicationContext.run([
+            'segment.api-key'              : 'some-api-key',
+            'segment.flush-interval'       : '1h',
+            'segment.test.in-memory-client': true,
+            'segment.sink.enabled'         : true,
+            'segment.sink.directory'       : directory.toString(),
+        ] + properties)
+    }
+
+    private List<Path> files() {
+        return Files.list(directory).withCloseable { it.filter { it.toString().endsWith('.ndjson.gz') }.toList() }
+    }
+
+    private List<Map<String, Object>> messages() {
+        return files().collectMany { Path file ->
+            new GZIPInputStream(Files.newInputStream(file)).withReader('UTF-8') { reader ->
+                reader.readLines().collectMany { gson.fromJson(it, Map).batch }
+            }
+        }
+    }
+
+}
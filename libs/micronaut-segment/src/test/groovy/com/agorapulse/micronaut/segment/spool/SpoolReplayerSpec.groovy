@@ -0,0 +1,128 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.spool
+
+import com.agorapulse.micronaut.segment.SegmentStatistics
+import com.agorapulse.micronaut.segment.SegmentStubServer
+import com.google.gson.Gson
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+@CompileDynamic
+class SpoolReplayerSpec extends Specification {
+
+    private static final String OLD_SENT_AT = '2026-01-01T00:00:00Z'
+
+    @TempDir Path spool
+    @AutoCleanup SegmentStubServer stub = new SegmentStubServer()
+    @AutoCleanup ApplicationContext context
+
+    Gson gson = new Gson()
+
+    void 'spooled messages are replayed once in byte bounded batches'() {
+        given:
+            Path file = spoolFile('segment-1.ndjson', (1..10), (5..20))
+            SpoolReplayer replayer = createReplayer('segment.message-size.max-batch-bytes': 600)
+        when:
+            SpoolReplayResult result = replayer.replay()
+            List<Map<String, Object>> batches = stub.bodies.collect { gson.fromJson(it, Map) }
+        then:
+            result.successful
+            result.files == 1
+            result.messages == 20
+            result.duplicates == 6
+            result.batches == batches.size()
+            result.throughput > 0
+
+            batches.size() > 1
+            stub.bodies.every { it.bytes.length <= 600 }
+            batches.every { it.sentAt != OLD_SENT_AT }
+            batches.collectMany { it.batch*.messageId }.toSorted() == (1..20).collect { "message-$it".toString() }.toSorted()
+
+            !Files.exists(file)
+            Files.exists(spool.resolve('segment-1.ndjson.done'))
+    }
+
+    void 'replay can be resumed from the checkpoint'() {
+        given:
+            spoolFile('segment-1.ndjson', (1..2), (3..4), (5..6))
+            SpoolReplayer replayer = createReplayer('segment.spool.replay-parallelism': 1)
+            stub.respond(200).respond(500)
+        when:
+            SpoolReplayResult result = replayer.replay()
+        then:
+            !result.successful
+            result.messages == 2
+            spool.resolve('segment-1.ndjson.checkpoint').text == '1'
+
+        when:
+            result = replayer.replay()
+            List<Map<String, Object>> batches = stub.bodies.drop(2).collect { gson.fromJson(it, Map) }
+        then:
+            result.successful
+            result.messages == 4
+            batches.collectMany { it.batch*.messageId } == (3..6).collect { "message-$it".toString() }
+            !Files.exists(spool.resolve('segment-1.ndjson.checkpoint'))
+    }
+
+    void 'replayed batches are counted and the failures are not spilled'() {
+        given:
+            spoolFile('segment-1.ndjson', (1..2))
+            SpoolReplayer replayer = createReplayer('segment.resilience.enabled': true, 'segment.spool.replay-parallelism': 1)
+            // the resilient client would spill the batch and report it as accepted
+            stub.respond(500)
+        when:
+            SpoolReplayResult result = replayer.replay()
+        then:
+            !result.successful
+            stub.bodies.size() == 1
+            Files.exists(spool.resolve('segment-1.ndjson'))
+
+        when:
+            result = replayer.replay()
+        then:
+            result.successful
+            result.messages == 2
+            context.getBean(SegmentStatistics).delivered == 2
+    }
+
+    private SpoolReplayer createReplayer(Map<String, Object> properties) {
+        context = ApplicationContext.run([
+            'segment.api-key'                 : 'some-api-key',
+            'segment.endpoint'                : stub.url,
+            'segment.spool.directory'         : spool.toString(),
+            'segment.spool.replay-parallelism': 2,
+        ] + properties)
+        return context.getBean(SpoolReplayer)
+    }
+
+    private Path spoolFile(String name, Iterable<Integer>... lines) {
+        Path file = spool.resolve(name)
+        file.text = lines.collect { Iterable<Integer> ids ->
+            gson.toJson(batch: ids.collect { [messageId: "message-$it".toString(), type: 'track', event: 'Event', userId: 'user'] }, sentAt: OLD_SENT_AT)
+        }.join('\n') + '\n'
+        return file
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.tracing
+
+import com.agorapulse.micronaut.segment.SegmentService
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import io.opentelemetry.api.OpenTelemetry
+import io.opentelemetry.api.common.AttributeKey
+import io.opentelemetry.api.trace.Span
+import io.opentelemetry.api.trace.SpanKind
+import io.opentelemetry.context.Scope
+import io.opentelemetry.sdk.OpenTelemetrySdk
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter
+import io.opentelemetry.sdk.trace.SdkTracerProvider
+import io.opentelemetry.sdk.trace.data.SpanData
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+@CompileDynamic
+class OpenTelemetrySegmentTracingSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+
+    @AutoCleanup ApplicationContext context
+
+    InMemorySpanExporter exporter = InMemorySpanExporter.create()
+
+    OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(exporter)).build())
+        .build()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'upload span is linked to the request spans'() {
+        given:
+            SegmentService service = createService('segment.tracing.enabled': true)
+            Span request = openTelemetry.getTracer('test').spanBuilder('request').startSpan()
+        when:
+            Scope scope = request.makeCurrent()
+            try {
+                service.track(USER_ID, 'First Event')
+                service.track(USER_ID, 'Second Event')
+                service.flush()
+            } finally {
+                scope.close()
+                request.end()
+            }
+        then:
+            conditions.eventually {
+                assert exporter.finishedSpanItems.any { it.name == 'segment.upload' }
+            }
+
+        when:
+            List<SpanData> spans = exporter.finishedSpanItems
+            SpanData upload = spans.find { it.name == 'segment.upload' }
+            List<SpanData> enqueues = spans.findAll { it.name == 'segment.track' }
+        then:
+            enqueues.collect { it.attributes.get(AttributeKey.stringKey('segment.name')) }.sort() == ['First Event', 'Second Event']
+            enqueues.every { it.parentSpanId == request.spanContext.spanId }
+            spans.any { it.name == 'segment.flush' }
+
+            upload.kind == SpanKind.CLIENT
+            upload.attributes.get(AttributeKey.longKey('segment.batch.size')) == 2
+            upload.attributes.get(AttributeKey.longKey('http.response.status_code')) == 200
+            upload.links*.spanContext*.spanId.sort() == enqueues*.spanId.sort()
+    }
+
+    void 'upload span is linked to the request spans when the messages are enqueued by another thread'() {
+        given:
+            SegmentService service = createService('segment.tracing.enabled': true, 'segment.ingestion.enabled': true)
+            Span request = openTelemetry.getTracer('test').spanBuilder('request').startSpan()
+        when:
+            Scope scope = request.makeCurrent()
+            try {
+                service.track(USER_ID, 'Event')
+            } finally {
+                scope.close()
+                request.end()
+            }
+            service.flush()
+        then:
+            conditions.eventually {
+                assert exporter.finishedSpanItems.any { it.name == 'segment.upload' }
+            }
+
+        when:
+            List<SpanData> spans = exporter.finishedSpanItems
+            SpanData upload = spans.find { it.name == 'segment.upload' }
+            SpanData enqueue = spans.find { it.name == 'segment.track' }
+        then:
+            enqueue.parentSpanId == request.spanContext.spanId
+            upload.links*.spanContext*.spanId == [enqueue.spanId]
+    }
+
+    void 'nothing is traced outside of the sampled traces'() {
+        given:
+            SegmentService service = createService('segment.tracing.enabled': true)
+        when:
+            service.track(USER_ID, 'Event')
+        then:
+            exporter.finishedSpanItems.empty
+    }
+
+    void 'tracing is disabled by default'() {
+        when:
+            createService([:])
+        then:
+            !context.containsBean(SegmentTracing)
+    }
+
+    private SegmentService createService(Map<String, Object> properties) {
+        context = ApplicationContext.builder([
+            'segment.api-key'              : 'some-api-key',
+            'segment.flush-interval'       : '1h',
+            'segment.test.in-memory-client': true,
+        ] + properties).build()
+        context.registerSingleton(OpenTelemetry, openTelemetry)
+        context.start()
+        return context.getBean(SegmentService)
+    }
+
+}
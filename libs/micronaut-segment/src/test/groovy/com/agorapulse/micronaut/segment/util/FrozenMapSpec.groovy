@@ -0,0 +1,112 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util
+
+import com.agorapulse.micronaut.segment.builder.DefaultMessageBuilderWithProperties
+import com.agorapulse.micronaut.segment.builder.DefaultMessageBuilderWithTraits
+import groovy.transform.CompileDynamic
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+@CompileDynamic
+class FrozenMapSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+
+    void 'frozen map is a snapshot without null values'() {
+        given:
+            Map<String, Object> nested = [kept: 1, removed: null]
+            Map<String, Object> original = [nested: nested, unit: TimeUnit.DAYS, removed: null]
+        when:
+            FrozenMap<String, Object> frozen = FrozenMap.of(original)
+            nested.added = 2
+            original.added = 3
+        then:
+            frozen == [nested: [kept: 1], unit: 'DAYS']
+            frozen.nested instanceof FrozenMap
+            frozen.estimatedSize == MessageSize.estimate([nested: [kept: 1], unit: 'DAYS'])
+    }
+
+    void 'frozen map cannot be modified'() {
+        given:
+            FrozenMap<String, Object> frozen = FrozenMap.of([key: 'value'])
+        when:
+            frozen.put('other', 'value')
+        then:
+            thrown(UnsupportedOperationException)
+        when:
+            frozen.entrySet().first().value = 'changed'
+        then:
+            thrown(UnsupportedOperationException)
+    }
+
+    void 'frozen maps are shared'() {
+        given:
+            FrozenMap<String, Object> nested = FrozenMap.of([kept: 1])
+            FrozenMap<String, Object> frozen = FrozenMap.of([nested: nested])
+        expect:
+            FrozenMap.of(frozen).is(frozen)
+            frozen.nested.is(nested)
+            SafeMap.safe(frozen).is(frozen)
+            frozen.with('other', 2).nested.is(nested)
+            frozen.with('other', 2) == [nested: [kept: 1], other: 2]
+            frozen.with('nested', null).isEmpty()
+            frozen == [nested: [kept: 1]]
+    }
+
+    void 'builder references the frozen map until it is modified'() {
+        given:
+            FrozenMap<String, Object> properties = FrozenMap.of([category: 'VIP', total: 42])
+            DefaultMessageBuilderWithProperties shared = new DefaultMessageBuilderWithProperties()
+            DefaultMessageBuilderWithProperties modified = new DefaultMessageBuilderWithProperties()
+        when:
+            shared.userId(USER_ID).properties(properties)
+            modified.userId(USER_ID).properties(properties).properties('section', 'Header')
+        then:
+            shared.buildTrackMessage('Event').build().properties() == [category: 'VIP', total: 42]
+            modified.buildTrackMessage('Event').build().properties() == [category: 'VIP', total: 42, section: 'Header']
+            properties == [category: 'VIP', total: 42]
+        and:
+            shared.estimatedSize == new DefaultMessageBuilderWithProperties().userId(USER_ID).properties(category: 'VIP', total: 42).estimatedSize
+            modified.estimatedSize == new DefaultMessageBuilderWithProperties().userId(USER_ID).properties(category: 'VIP', total: 42, section: 'Header').estimatedSize
+    }
+
+    void 'builder copies the frozen map before truncating'() {
+        given:
+            FrozenMap<String, Object> traits = FrozenMap.of([small: 'x', large: 'x' * 1000])
+            DefaultMessageBuilderWithTraits builder = new DefaultMessageBuilderWithTraits().userId(USER_ID).traits(traits)
+        when:
+            List<String> removed = builder.truncate(500)
+        then:
+            removed == ['large']
+            builder.buildIdentifyMessage().build().traits() == [small: 'x']
+            traits.keySet() == ['small', 'large'] as Set
+    }
+
+    void 'safe map does not copy the maps without null values'() {
+        given:
+            Map<String, Object> safe = [key: 'value', nested: [other: 1]]
+            Map<String, Object> unsafe = [key: 'value', nested: [other: null]]
+        expect:
+            SafeMap.safe(safe) == safe
+            SafeMap.safe(unsafe) == [key: 'value', nested: [:]]
+            unsafe.nested.containsKey('other')
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util
+
+import com.agorapulse.micronaut.segment.Benchmark
+import groovy.transform.CompileStatic
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Compares the random UUIDs used by the library with the UUIDs version 7 under contention.
+ * Run with <code>SEGMENT_BENCHMARK=true</code>.
+ */
+@Requires({ Benchmark.enabled })
+class MessageIdBenchmarkSpec extends Specification {
+
+    private static final int OPERATIONS = 2_000_000
+    private static final List<Integer> THREADS = [1, 2, 4, 8, 16, 32, 64]
+    private static final int CONTENDED = 4
+
+    void 'message id generation under contention'() {
+        when:
+            Map<Integer, List<Double>> results = THREADS.collectEntries { int threads ->
+                [(threads): [measure(MessageIdGenerator.RANDOM, threads), measure(MessageIdGenerator.DEFAULT, threads)]]
+            }
+            Benchmark.report(['threads', 'random ns/op', 'uuid v7 ns/op'], results)
+        then:
+            results.findAll { it.key >= CONTENDED }.every { threads, latencies ->
+                latencies[1] <= latencies[0] * Benchmark.NOISE
+            }
+    }
+
+    @CompileStatic
+    private static double measure(MessageIdGenerator generator, int threads) {
+        return Benchmark.measure(threads, OPERATIONS) { int thread, int operations ->
+            long hash = 0
+            for (int i = 0; i < operations; i++) {
+                hash += generator.generate(MessageClock.SYSTEM.currentTimeMillis()).hashCode()
+            }
+            return hash
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util
+
+import com.agorapulse.micronaut.segment.builder.DefaultMessageBuilderWithProperties
+import com.segment.analytics.messages.TrackMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+
+@CompileDynamic
+class MessageIdGeneratorSpec extends Specification {
+
+    private static final long TIMESTAMP = 1_700_000_000_000L
+
+    @AutoCleanup ApplicationContext context
+    @AutoCleanup CoarseClock clock
+
+    void 'generates version 7 uuid with the timestamp'() {
+        when:
+            UUID uuid = UUID.fromString(new UuidV7Generator().generate(TIMESTAMP))
+        then:
+            uuid.version() == 7
+            uuid.variant() == 2
+            uuid.mostSignificantBits >>> 16 == TIMESTAMP
+    }
+
+    void 'uuids are ordered by time'() {
+        given:
+            UuidV7Generator generator = new UuidV7Generator()
+        expect:
+            generator.next(TIMESTAMP) < generator.next(TIMESTAMP + 1)
+            generator.generate(TIMESTAMP) < generator.generate(TIMESTAMP + 1)
+    }
+
+    void 'uuids are unique across threads'() {
+        given:
+            UuidV7Generator generator = new UuidV7Generator()
+            Set<String> ids = ConcurrentHashMap.newKeySet()
+        when:
+            (1..8).collect {
+                Thread.start {
+                    10_000.times { ids.add(generator.generate(TIMESTAMP)) }
+                }
+            }*.join()
+        then:
+            ids.size() == 80_000
+    }
+
+    void 'coarse clock follows the system time'() {
+        given:
+            clock = new CoarseClock(Duration.ofMillis(1))
+            long start = System.currentTimeMillis()
+        expect:
+            Math.abs(clock.currentTimeMillis() - start) < 1000
+            new PollingConditions(timeout: 5).eventually {
+                clock.currentTimeMillis() > start
+            }
+    }
+
+    void 'messages get the generated id and timestamp'() {
+        given:
+            MessageClock fixed = { TIMESTAMP } as MessageClock
+        when:
+            TrackMessage generated = new DefaultMessageBuilderWithProperties(ValueConverter.DEFAULT, fixed, MessageIdGenerator.DEFAULT, Scrubber.NONE)
+                .userId('user-id')
+                .buildTrackMessage('Order Completed')
+                .build()
+            TrackMessage custom = new DefaultMessageBuilderWithProperties(ValueConverter.DEFAULT, fixed, MessageIdGenerator.DEFAULT, Scrubber.NONE)
+                .userId('user-id')
+                .messageId('custom-id')
+                .buildTrackMessage('Order Completed')
+                .build()
+        then:
+            generated.timestamp().time == TIMESTAMP
+            UUID.fromString(generated.messageId()).version() == 7
+            custom.messageId() == 'custom-id'
+    }
+
+    void 'coarse clock is used when the resolution is set'() {
+        when:
+            context = ApplicationContext.run('segment.recording.enabled': true, 'segment.clock-resolution': '5ms')
+        then:
+            context.getBean(MessageClock) instanceof CoarseClock
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util;
+
+// tag::body[]
+import io.micronaut.core.convert.ConversionContext;
+import io.micronaut.core.convert.TypeConverter;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Converts the money into the map with the amount and the currency code.
+ *
+ * Only the converters named <code>segment</code> are used for the values of the messages.
+ */
+@Singleton
+@Named("segment")
+@SuppressWarnings("rawtypes")
+public class MoneyConverter implements TypeConverter<Money, Map> {
+
+    @Override
+    public Optional<Map> convert(Money money, Class<Map> targetType, ConversionContext context) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("amount", money.getAmount());
+        map.put("currency", money.getCurrency().getCurrencyCode());
+        return Optional.of(map);
+    }
+
+}
+// end::body[]
@@ -0,0 +1,185 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util
+
+import com.agorapulse.micronaut.segment.InMemorySegmentClient
+import com.agorapulse.micronaut.segment.SegmentService
+import com.agorapulse.micronaut.segment.recording.RecordingSegmentService
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+@CompileDynamic
+class ScrubberSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final String EMAIL = '[^@\\s]+@[^@\\s]+'
+    private static final String PHONE = '\\+?\\d[\\d -]{6,}\\d'
+
+    @AutoCleanup ApplicationContext context
+
+    Scrubber scrubber = new Scrubber(['password', 'token'], [email: EMAIL, phone: PHONE], Scrubber.DEFAULT_REPLACEMENT)
+
+    void 'keys are matched by all the rules at once ignoring the case'() {
+        expect:
+            Long.bitCount(scrubber.match(key)) == rules
+        where:
+            key                | rules
+            'password'         | 1
+            'userPassword'     | 1
+            'AUTH_TOKEN'       | 1
+            'email'            | 1
+            'contactEmails'    | 1
+            'phoneOrEmail'     | 2
+            'name'             | 0
+            'tok'              | 0
+            'émail'            | 0
+    }
+
+    void 'overlapping fragments are all matched'() {
+        given:
+            Scrubber overlapping = new Scrubber([], [he: 'x', she: 'y', hers: 'z'], '_')
+        expect:
+            overlapping.match('ushers') == 0b111
+            overlapping.match('sheep') == 0b011
+    }
+
+    void 'sensitive values are scrubbed while the map is made safe'() {
+        given:
+            Map<String, Object> properties = [
+                name    : 'Vlad',
+                password: 'secret',
+                email   : 'Contact me at vlad@example.com please',
+                phones  : ['+420 123 456 789', 'n/a'],
+                nested  : [apiToken: 'abc', count: 1],
+                removed : null,
+            ]
+        expect:
+            SafeMap.safe(properties, scrubber) == [
+                name    : 'Vlad',
+                password: '[REDACTED]',
+                email   : 'Contact me at [REDACTED] please',
+                phones  : ['[REDACTED]', 'n/a'],
+                nested  : [apiToken: '[REDACTED]', count: 1],
+            ]
+    }
+
+    void 'frozen maps are only copied if there is something to scrub'() {
+        given:
+            FrozenMap<String, Object> clean = FrozenMap.of([name: 'Vlad', nested: [count: 1]])
+            FrozenMap<String, Object> sensitive = FrozenMap.of([name: 'Vlad', nested: [token: 'abc']])
+        expect:
+            SafeMap.safe(clean, scrubber).is(clean)
+            SafeMap.safe(clean, scrubber).is(clean)
+            SafeMap.safe(sensitive, Scrubber.NONE).is(sensitive)
+            SafeMap.safe(sensitive, scrubber) == [name: 'Vlad', nested: [token: '[REDACTED]']]
+    }
+
+    void 'maps within collections are scrubbed'() {
+        given:
+            Map<String, Object> properties = [
+                products: [[sku: 'A-1', email: 'vlad@example.com'], [sku: 'B-2', token: 'abc', removed: null]],
+                emails  : [['vlad@example.com'], 'n/a'],
+                tags    : ['new', 'sale'],
+            ]
+        expect:
+            SafeMap.safe(properties, scrubber) == [
+                products: [[sku: 'A-1', email: '[REDACTED]'], [sku: 'B-2', token: '[REDACTED]']],
+                emails  : [['[REDACTED]'], 'n/a'],
+                tags    : ['new', 'sale'],
+            ]
+            SafeMap.safe([tags: properties.tags], scrubber).tags.is(properties.tags)
+    }
+
+    void 'frozen maps are not copied if the patterns find nothing'() {
+        given:
+            FrozenMap<String, Object> clean = FrozenMap.of([email: 'n/a', products: [[phone: 'unknown']]])
+            FrozenMap<String, Object> sensitive = FrozenMap.of([products: [[email: 'vlad@example.com']]])
+        expect:
+            SafeMap.safe(clean, scrubber).is(clean)
+            clean.isScrubbedBy(scrubber)
+            SafeMap.safe(sensitive, scrubber) == [products: [[email: '[REDACTED]']]]
+            !sensitive.isScrubbedBy(scrubber)
+    }
+
+    void 'recording without the api key scrubs the messages'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.recording.enabled': true,
+                'segment.scrubbing.enabled': true,
+                'segment.scrubbing.keys': ['password'],
+                'segment.scrubbing.patterns.email': EMAIL
+            )
+            RecordingSegmentService recording = context.getBean(RecordingSegmentService)
+        when:
+            recording.track(USER_ID, 'Signed Up') {
+                properties password: 'secret', contact: [email: 'vlad@example.com']
+            }
+        then:
+            recording.lastMessage.properties() == [password: '[REDACTED]', contact: [email: '[REDACTED]']]
+    }
+
+    void 'invalid rules are reported'() {
+        when:
+            new Scrubber(['pässword'], [:], Scrubber.DEFAULT_REPLACEMENT)
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            new Scrubber((1..65).collect { "key$it".toString() }, [:], Scrubber.DEFAULT_REPLACEMENT)
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    void 'segment service scrubs the context, properties and traits'() {
+        given:
+            context = ApplicationContext.run(
+                'segment.api-key': 'apikey',
+                'segment.flush-interval': '1h',
+                'segment.test.in-memory-client': true,
+                'segment.scrubbing.enabled': true,
+                'segment.scrubbing.keys': ['password', 'token'],
+                'segment.scrubbing.patterns.email': EMAIL,
+                'segment.scrubbing.replacement': '***'
+            )
+            SegmentService service = context.getBean(SegmentService)
+            InMemorySegmentClient client = context.getBean(InMemorySegmentClient)
+        when:
+            service.track(USER_ID, 'Signed Up') {
+                properties password: 'secret', plan: 'pro'
+                context 'accessToken', 'abc'
+            }
+            service.identify(USER_ID) {
+                traits email: 'vlad@example.com', name: 'Vlad'
+            }
+            service.flush()
+        then:
+            new PollingConditions(timeout: 5).eventually {
+                client.messages == 2
+            }
+            String batches = client.batches.join()
+            !batches.contains('secret')
+            !batches.contains('"abc"')
+            !batches.contains('vlad@example.com')
+            batches.contains('"password":"***"')
+            batches.contains('"email":"***"')
+            batches.contains('"plan":"pro"')
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2020-2026 Agorapulse.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.agorapulse.micronaut.segment.util
+
+import com.agorapulse.micronaut.segment.recording.RecordingSegmentService
+import com.segment.analytics.messages.IdentifyMessage
+import com.segment.analytics.messages.TrackMessage
+import groovy.transform.CompileDynamic
+import io.micronaut.context.ApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Duration
+import java.time.Instant
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.OffsetDateTime
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+import java.util.concurrent.TimeUnit
+import java.util.function.Function
+
+@CompileDynamic
+class ValueConverterSpec extends Specification {
+
+    private static final String USER_ID = 'user-id'
+    private static final Instant INSTANT = Instant.parse('2026-10-19T10:15:30.123Z')
+
+    @AutoCleanup ApplicationContext context
+
+    @Unroll
+    void 'convert #value'() {
+        expect:
+            ValueConverter.DEFAULT.convert(value) == expected
+        where:
+            value                                                                   | expected
+            null                                                                    | null
+            'text'                                                                  | 'text'
+            42                                                                      | 42
+            42L                                                                     | 42L
+            1.5d                                                                    | 1.5d
+            new BigDecimal('10.50')                                                 | new BigDecimal('10.50')
+            true                                                                    | true
+            "${'g'}string"                                                          | 'gstring'
+            new StringBuilder('builder')                                            | 'builder'
+            UUID.fromString('00000000-0000-0000-0000-000000000001')                 | '00000000-0000-0000-0000-000000000001'
+            TimeUnit.SECONDS                                                        | 'SECONDS'
+            Date.from(INSTANT)                                                      | '2026-10-19T10:15:30.123Z'
+            new java.sql.Date(INSTANT.toEpochMilli())                               | '2026-10-19T10:15:30.123Z'
+            INSTANT                                                                 | '2026-10-19T10:15:30.123Z'
+            LocalDate.of(2026, 10, 19)                                              | '2026-10-19'
+            LocalDateTime.of(2026, 10, 19, 10, 15)                                  | '2026-10-19T10:15'
+            OffsetDateTime.of(2026, 10, 19, 10, 15, 0, 0, ZoneOffset.ofHours(2))    | '2026-10-19T10:15+02:00'
+            ZonedDateTime.of(2026, 10, 19, 10, 15, 0, 0, ZoneId.of('Europe/Paris')) | '2026-10-19T10:15:00+02:00'
+            Duration.ofMinutes(5)                                                   | 'PT5M'
+            [unit: TimeUnit.DAYS, nested: [at: INSTANT]]                            | [unit: 'DAYS', nested: [at: '2026-10-19T10:15:30.123Z']]
+            [TimeUnit.DAYS, LocalDate.of(2026, 1, 1)] as Set                        | ['DAYS', '2026-01-01']
+            [TimeUnit.DAYS, 1] as Object[]                                          | ['DAYS', 1]
+    }
+
+    void 'converted values are not copied again'() {
+        given:
+            Object map = ValueConverter.DEFAULT.convert([nested: [at: INSTANT]])
+            Object list = ValueConverter.DEFAULT.convert([TimeUnit.DAYS] as Set)
+        expect:
+            ValueConverter.DEFAULT.convert(map).is(map)
+            ValueConverter.DEFAULT.convert(list).is(list)
+            ValueConverter.DEFAULT.convert([outer: map]).outer.is(map)
+    }
+
+    void 'values are converted by the builders'() {
+        given:
+            context = ApplicationContext.run('segment.recording.enabled': true)
+            RecordingSegmentService recording = context.getBean(RecordingSegmentService)
+        when:
+            recording.track(USER_ID, 'Order Completed') {
+                properties 'completedAt', INSTANT
+                properties 'unit', TimeUnit.DAYS
+                properties 'total', new Money(new BigDecimal('10.50'), Currency.getInstance('EUR'))
+                context 'day', LocalDate.of(2026, 10, 19)
+            }
+            recording.identify(USER_ID) {
+                traits 'plan', TimeUnit.HOURS
+            }
+        then:
+            TrackMessage track = recording.getMessages(TrackMessage).first()
+            track.properties().completedAt == '2026-10-19T10:15:30.123Z'
+            track.properties().unit == 'DAYS'
+            track.properties().total == [amount: new BigDecimal('10.50'), currency: 'EUR']
+            track.context().day == '2026-10-19'
+
+            recording.getMessages(IdentifyMessage).first().traits().plan == 'HOURS'
+    }
+
+    void 'custom converters are used for the subclasses'() {
+        given:
+            Money money = new Money(BigDecimal.ONE, Currency.getInstance('USD')) { }
+            Function<Object, Object> currency = { Money value -> value.currency.currencyCode } as Function<Object, Object>
+            ValueConverter converter = new ValueConverter([(Money): currency])
+        expect:
+            converter.convert(money) == 'USD'
+            converter.convert([money]) == ['USD']
+    }
+
+    void 'custom converters referencing each other are only nested up to the limit'() {
+        given:
+            Node parent = new Node(name: 'parent')
+            Node child = new Node(name: 'child', other: parent)
+            parent.other = child
+            Function<Object, Object> node = { Node value -> [name: value.name, other: value.other] } as Function<Object, Object>
+            ValueConverter converter = new ValueConverter([(Node): node])
+        when:
+            Object converted = converter.convert(parent)
+            int depth = 0
+            while (converted instanceof Map) {
+                converted = converted.other
+                depth++
+            }
+        then:
+            depth == ValueConverter.MAX_CUSTOM_DEPTH
+            converted == 'parent'
+    }
+
+    private static class Node {
+
+        String name
+        Node other
+
+        @Override
+        String toString() {
+            return name
+        }
+
+    }
+
+}